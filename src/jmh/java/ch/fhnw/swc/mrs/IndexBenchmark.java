@@ -0,0 +1,179 @@
+package ch.fhnw.swc.mrs;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The query patterns of the DAOs against PostgreSQL, without and with the indexes of {@link DBSetup}.
+ * The query plans are printed during setup. The tables are created in their own schema mrs_bench, which
+ * is dropped afterwards. The database is given with the system properties mrs.db.url, mrs.db.user and
+ * mrs.db.password and defaults to the one of DBSetup.
+ * <p>
+ * The scale is the number of movies; there is one user per ten movies. Nine out of ten movies are
+ * rented, each by its own rental.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+    private static final String AVAILABLE_PAGE =
+            "SELECT * FROM movies WHERE Rented = false AND MovieId > ? ORDER BY MovieId LIMIT 21";
+    private static final String TITLE_LIKE = "SELECT * FROM movies WHERE Title LIKE ?";
+    private static final String USERS_BY_NAME = "SELECT * FROM users WHERE Name = ?";
+    private static final String RENTALS_BY_USER = "SELECT * FROM rentals WHERE UserId = ?";
+
+    @Param({"100000"})
+    private int movies;
+
+    @Param({"false", "true"})
+    private boolean indexed;
+
+    private Connection conn;
+    private PreparedStatement availablePage;
+    private PreparedStatement titleLike;
+    private PreparedStatement usersByName;
+    private PreparedStatement rentalsByUser;
+    private int next;
+
+    /**
+     * Create and fill the tables, create the indexes if requested and print the query plans.
+     *
+     * @throws SQLException if the database cannot be set up.
+     */
+    @Setup
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(System.getProperty("mrs.db.url", "jdbc:postgresql:stqm"),
+                System.getProperty("mrs.db.user", "postgres"), System.getProperty("mrs.db.password", "1234"));
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS mrs_bench CASCADE");
+            statement.execute("CREATE SCHEMA mrs_bench");
+            statement.execute("SET search_path TO mrs_bench, public");
+            DBSetup.createTables(conn);
+            int users = Math.max(1, movies / 10);
+            statement.execute("INSERT INTO movies SELECT i, 'Movie ' || i, i % 10 <> 0, DATE '2000-01-01' + i % 7000, "
+                    + "i % 19 FROM generate_series(1, " + movies + ") i");
+            statement.execute("INSERT INTO users SELECT i, 'Name ' || i % 1000, 'First ' || i, DATE '1980-01-01' "
+                    + "FROM generate_series(1, " + users + ") i");
+            statement.execute("INSERT INTO rentals SELECT i, i, i % " + users + " + 1, DATE '2020-01-01' "
+                    + "FROM generate_series(1, " + movies + ") i WHERE i % 10 <> 0");
+            if (indexed) {
+                DBSetup.createIndexes(conn);
+            } else {
+                statement.execute("ANALYZE movies, users, rentals");
+            }
+        }
+        System.out.println();
+        DBSetup.explain(conn, List.of(
+                AVAILABLE_PAGE.replace("?", String.valueOf(movies / 2)),
+                TITLE_LIKE.replace("?", "'Movie 4711%'"),
+                TITLE_LIKE.replace("?", "'%4711%'"),
+                USERS_BY_NAME.replace("?", "'Name 42'"),
+                RENTALS_BY_USER.replace("?", "42")), System.out);
+
+        availablePage = conn.prepareStatement(AVAILABLE_PAGE);
+        titleLike = conn.prepareStatement(TITLE_LIKE);
+        usersByName = conn.prepareStatement(USERS_BY_NAME);
+        rentalsByUser = conn.prepareStatement(RENTALS_BY_USER);
+    }
+
+    /**
+     * Drop the tables.
+     *
+     * @throws SQLException if the schema cannot be dropped.
+     */
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("DROP SCHEMA mrs_bench CASCADE");
+        }
+        conn.close();
+    }
+
+    private int next(int bound) {
+        next = (next + 7919) % movies;
+        return next % bound + 1;
+    }
+
+    private static int count(PreparedStatement query) throws SQLException {
+        int rows = 0;
+        try (ResultSet rs = query.executeQuery()) {
+            while (rs.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the number of available movies on the page after the next movie.
+     * @throws SQLException on database errors.
+     */
+    @Benchmark
+    public int availableMoviesPage() throws SQLException {
+        availablePage.setLong(1, next(movies));
+        return count(availablePage);
+    }
+
+    /**
+     * @return the number of movies whose title starts with the next title.
+     * @throws SQLException on database errors.
+     */
+    @Benchmark
+    public int titlePrefix() throws SQLException {
+        titleLike.setString(1, "Movie " + next(movies) + "%");
+        return count(titleLike);
+    }
+
+    /**
+     * @return the number of movies whose title contains the next number.
+     * @throws SQLException on database errors.
+     */
+    @Benchmark
+    public int titleContains() throws SQLException {
+        titleLike.setString(1, "%" + next(movies) + "%");
+        return count(titleLike);
+    }
+
+    /**
+     * @return the number of users with the next name.
+     * @throws SQLException on database errors.
+     */
+    @Benchmark
+    public int usersByName() throws SQLException {
+        usersByName.setString(1, "Name " + next(1000));
+        return count(usersByName);
+    }
+
+    /**
+     * @return the number of rentals of the next user.
+     * @throws SQLException on database errors.
+     */
+    @Benchmark
+    public int rentalsByUser() throws SQLException {
+        rentalsByUser.setLong(1, next(Math.max(1, movies / 10)));
+        return count(rentalsByUser);
+    }
+}
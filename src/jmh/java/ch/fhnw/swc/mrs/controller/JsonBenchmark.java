@@ -0,0 +1,109 @@
+package ch.fhnw.swc.mrs.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.User;
+import ch.fhnw.swc.mrs.util.JsonUtil;
+
+/**
+ * Serialization of movie and user lists with the serializers of the controllers, once into a String and
+ * once streamed. The scale is the number of elements in each list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    private int size;
+
+    private List<Movie> movies;
+    private List<User> users;
+    private OutputStream sink;
+
+    /**
+     * Create the lists and register the serializers.
+     *
+     * @param bh consumes the streamed output.
+     */
+    @Setup
+    public void setUp(Blackhole bh) {
+        JsonUtil.registerSerializer(new MovieController.MovieSerializer());
+        JsonUtil.registerSerializer(new UserController.UserSerializer());
+        movies = new ArrayList<>(size);
+        users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Movie m = new Movie("Movie " + i, LocalDate.of(2000, 1, 1).plusDays(i % 5000), i % 19);
+            m.setMovieId(i + 1);
+            movies.add(m);
+            User u = new User("User" + i, "No" + i, LocalDate.of(1950, 1, 1).plusDays(i % 15000));
+            u.setUserId(i + 1);
+            users.add(u);
+        }
+        sink = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bh.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bh.consume(b);
+            }
+        };
+    }
+
+    /**
+     * @return the movies as JSON String.
+     */
+    @Benchmark
+    public String moviesToString() {
+        return JsonUtil.dataToJson(movies);
+    }
+
+    /**
+     * @throws IOException never.
+     */
+    @Benchmark
+    public void moviesStreamed() throws IOException {
+        JsonUtil.writeJsonArray(sink, movies.iterator());
+    }
+
+    /**
+     * @return the users as JSON String.
+     */
+    @Benchmark
+    public String usersToString() {
+        return JsonUtil.dataToJson(users);
+    }
+
+    /**
+     * @throws IOException never.
+     */
+    @Benchmark
+    public void usersStreamed() throws IOException {
+        JsonUtil.writeJsonArray(sink, users.iterator());
+    }
+}
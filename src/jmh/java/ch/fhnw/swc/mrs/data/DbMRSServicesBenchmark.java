@@ -0,0 +1,107 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.User;
+
+/**
+ * Lookups and rentals of the database back-end against the embedded database of persistence unit
+ * MRS.Test. The scale is the number of movies; there is one user per ten movies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DbMRSServicesBenchmark {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Param({"100", "1000", "10000"})
+    private int movies;
+
+    private DbMRSServices services;
+    private long[] movieIds;
+    private long[] userIds;
+    private int next;
+
+    /**
+     * Create the schema and fill the database.
+     */
+    @Setup
+    public void setUp() {
+        services = new DbMRSServices("MRS.Test");
+        movieIds = new long[movies];
+        for (int i = 0; i < movies; i++) {
+            movieIds[i] = services.createMovie("Movie " + i, TODAY, 0).getMovieid();
+        }
+        userIds = new long[Math.max(1, movies / 10)];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = services.createUser("User" + i, "No" + i, LocalDate.of(1980, 1, 1)).getUserid();
+        }
+    }
+
+    /**
+     * Drop the schema.
+     */
+    @TearDown
+    public void tearDown() {
+        services.close();
+    }
+
+    private int next(int bound) {
+        next = (next + 1) % movies;
+        return next % bound;
+    }
+
+    /**
+     * @return the next movie.
+     */
+    @Benchmark
+    public Movie getMovieById() {
+        return services.getMovieById(movieIds[next(movieIds.length)]);
+    }
+
+    /**
+     * @return the next user.
+     */
+    @Benchmark
+    public User getUserById() {
+        return services.getUserById(userIds[next(userIds.length)]);
+    }
+
+    /**
+     * @return the number of available movies.
+     */
+    @Benchmark
+    public int getAvailableMovies() {
+        return services.getAllMovies(false).size();
+    }
+
+    /**
+     * @return whether the next movie could be rented and returned by the next user.
+     */
+    @Benchmark
+    public boolean rentAndReturn() {
+        int i = next(movieIds.length);
+        Rental r = services.createRental(userIds[i % userIds.length], movieIds[i], TODAY);
+        return services.deleteRental(r.getRentalId());
+    }
+}
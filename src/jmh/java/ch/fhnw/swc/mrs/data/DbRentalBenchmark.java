@@ -0,0 +1,238 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+
+/**
+ * Renting and returning a movie with the DAOs of the database back-end against the embedded database of
+ * persistence unit MRS.Test, before and after the changes to the rental transactions:
+ * <ul>
+ * <li>{@link #rentAndReturnSeparateTransactions} is the original path: the rental and the movie are saved
+ * in transactions of their own, without locks.</li>
+ * <li>{@link #rentAndReturnLocking} rents in a single transaction that locks the user and the movie.</li>
+ * <li>{@link #rentAndReturnPerCall} does the same with a new EntityManager for every call, as
+ * DbMRSServices does, instead of keeping one for all calls; {@link #rentAndReturnPerCallConcurrently}
+ * with eight threads, which a kept EntityManager does not allow.</li>
+ * <li>{@link #rentOneByOne} and {@link #rentBatch} rent the maximum number of movies with one transaction
+ * each or with one for all, and return them together.</li>
+ * </ul>
+ * The scores are rentals per second, each returned again. Every thread rents the movies of a user of its
+ * own. The benchmarks on a kept EntityManager also report how many entities its persistence context
+ * manages at the end of each iteration; run with <code>-prof gc</code> to compare their allocation with
+ * one EntityManager per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DbRentalBenchmark {
+
+    private static final LocalDate TODAY = LocalDate.now();
+    /** Number of users with movies of their own; more threads share them. */
+    private static final int CLIENTS = 16;
+
+    private EntityManagerFactory emf;
+    private final long[] userIds = new long[CLIENTS];
+    private final long[][] movieIds = new long[CLIENTS][User.MAX_RENTABLE_MOVIES];
+    private final AtomicInteger clients = new AtomicInteger();
+
+    /**
+     * Create the schema and a user with the maximum number of rentable movies for every client.
+     */
+    @Setup
+    public void setUp() {
+        emf = Persistence.createEntityManagerFactory("MRS.Test");
+        for (int c = 0; c < CLIENTS; c++) {
+            User u = new User("User" + c, "No" + c, LocalDate.of(1980, 1, 1));
+            inUnitOfWork(em -> {
+                new UserDAO(em).saveOrUpdate(u);
+                return u;
+            });
+            userIds[c] = u.getUserid();
+            for (int i = 0; i < User.MAX_RENTABLE_MOVIES; i++) {
+                Movie m = new Movie("Movie " + c + "/" + i, TODAY, 0);
+                inUnitOfWork(em -> {
+                    new MovieDAO(em).saveOrUpdate(m);
+                    return m;
+                });
+                movieIds[c][i] = m.getMovieid();
+            }
+        }
+    }
+
+    /**
+     * Drop the schema.
+     */
+    @TearDown
+    public void tearDown() {
+        emf.close();
+    }
+
+    private <T> T inUnitOfWork(Function<EntityManager, T> work) {
+        try (EntityManager em = emf.createEntityManager()) {
+            return work.apply(em);
+        }
+    }
+
+    /**
+     * The user and movies of one thread and the EntityManager it keeps for all calls.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        private long userId;
+        private long[] movieIds;
+        private List<Long> movieIdList;
+        private EntityManager kept;
+        private int next;
+
+        /**
+         * @param db the database shared by all threads.
+         */
+        @Setup
+        public void setUp(DbRentalBenchmark db) {
+            int c = db.clients.getAndIncrement() % CLIENTS;
+            userId = db.userIds[c];
+            movieIds = db.movieIds[c];
+            movieIdList = Arrays.stream(movieIds).boxed().toList();
+            kept = db.emf.createEntityManager();
+        }
+
+        /**
+         * Close the kept EntityManager.
+         */
+        @TearDown
+        public void tearDown() {
+            kept.close();
+        }
+
+        private long nextMovie() {
+            next = (next + 1) % movieIds.length;
+            return movieIds[next];
+        }
+    }
+
+    /**
+     * The size of the persistence context of the EntityManager a thread keeps, reported next to the score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PersistenceContext {
+        /** Entities managed by the kept EntityManager after the last call of the iteration. */
+        public long managedEntities;
+
+        private boolean record(EntityManager em) {
+            managedEntities = em.unwrap(Session.class).getStatistics().getEntityCount();
+            return true;
+        }
+    }
+
+    /**
+     * @param client the renting thread.
+     * @param context the persistence context of the kept EntityManager.
+     * @return whether the rental could be returned.
+     */
+    @Benchmark
+    public boolean rentAndReturnSeparateTransactions(Client client, PersistenceContext context) {
+        EntityManager em = client.kept;
+        User u = new UserDAO(em).getById(client.userId);
+        Movie m = new MovieDAO(em).getById(client.nextMovie());
+        Rental r = new Rental(u, m, TODAY);
+        new RentalDAO(em).save(r);
+        new MovieDAO(em).saveOrUpdate(m);
+
+        Rental found = new RentalDAO(em).getById(r.getRentalId());
+        found.getMovie().setRented(false);
+        new MovieDAO(em).saveOrUpdate(found.getMovie());
+        new RentalDAO(em).delete(found);
+        return context.record(em);
+    }
+
+    /**
+     * @param client the renting thread.
+     * @param context the persistence context of the kept EntityManager.
+     * @return whether the rental could be returned.
+     */
+    @Benchmark
+    public boolean rentAndReturnLocking(Client client, PersistenceContext context) {
+        RentalDAO dao = new RentalDAO(client.kept);
+        Rental r = dao.rent(client.userId, client.nextMovie(), TODAY);
+        return dao.deleteAll(List.of(r.getRentalId())) != null && context.record(client.kept);
+    }
+
+    /**
+     * @param client the renting thread.
+     * @return whether the rental could be returned.
+     */
+    @Benchmark
+    public boolean rentAndReturnPerCall(Client client) {
+        Rental r = inUnitOfWork(em -> new RentalDAO(em).rent(client.userId, client.nextMovie(), TODAY));
+        return inUnitOfWork(em -> new RentalDAO(em).deleteAll(List.of(r.getRentalId()))) != null;
+    }
+
+    /**
+     * @param client the renting thread.
+     * @return whether the rental could be returned.
+     */
+    @Benchmark
+    @Threads(8)
+    public boolean rentAndReturnPerCallConcurrently(Client client) {
+        return rentAndReturnPerCall(client);
+    }
+
+    /**
+     * @param client the renting thread.
+     * @return whether the rentals could be returned.
+     */
+    @Benchmark
+    @OperationsPerInvocation(User.MAX_RENTABLE_MOVIES)
+    public boolean rentOneByOne(Client client) {
+        List<Long> rentalIds = new ArrayList<>();
+        for (long movieId : client.movieIds) {
+            Rental r = inUnitOfWork(em -> new RentalDAO(em).rent(client.userId, movieId, TODAY));
+            rentalIds.add(r.getRentalId());
+        }
+        return inUnitOfWork(em -> new RentalDAO(em).deleteAll(rentalIds)) != null;
+    }
+
+    /**
+     * @param client the renting thread.
+     * @return whether the rentals could be returned.
+     */
+    @Benchmark
+    @OperationsPerInvocation(User.MAX_RENTABLE_MOVIES)
+    public boolean rentBatch(Client client) {
+        List<Rental> rentals = inUnitOfWork(em -> new RentalDAO(em).rentAll(client.userId, client.movieIdList, TODAY));
+        List<Long> rentalIds = rentals.stream().map(Rental::getRentalId).toList();
+        return inUnitOfWork(em -> new RentalDAO(em).deleteAll(rentalIds)) != null;
+    }
+}
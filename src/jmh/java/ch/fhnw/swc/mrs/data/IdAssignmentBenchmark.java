@@ -0,0 +1,112 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.User;
+
+/**
+ * Creation of movies and users with the ways of assigning their ids the in-memory back-end has used: a
+ * reflective lookup per object, a cached VarHandle and the {@link ch.fhnw.swc.mrs.model.Identifiable}
+ * contract. The create benchmarks measure the back-end as a whole.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdAssignmentBenchmark {
+
+    private static final LocalDate DATE = LocalDate.of(1999, 3, 11);
+
+    private static final VarHandle MOVIE_ID;
+
+    static {
+        try {
+            MOVIE_ID = MethodHandles.privateLookupIn(Movie.class, MethodHandles.lookup()).findVarHandle(Movie.class,
+                    "id", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private SimpleMRSServices services;
+    private long nextId;
+
+    /**
+     * Start every iteration with an empty back-end, so its maps do not grow without bound.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        services = new SimpleMRSServices();
+        nextId = 1;
+    }
+
+    /**
+     * The way ids were assigned before: look up the field and make it accessible for every object.
+     *
+     * @return the movie with its id.
+     * @throws ReflectiveOperationException never.
+     */
+    @Benchmark
+    public Movie reflection() throws ReflectiveOperationException {
+        Movie m = new Movie("Matrix", DATE, 12);
+        Field f = m.getClass().getDeclaredField("id");
+        f.setAccessible(true);
+        f.setLong(m, nextId++);
+        return m;
+    }
+
+    /**
+     * @return the movie with its id, assigned through a VarHandle looked up once.
+     */
+    @Benchmark
+    public Movie varHandle() {
+        Movie m = new Movie("Matrix", DATE, 12);
+        MOVIE_ID.set(m, nextId++);
+        return m;
+    }
+
+    /**
+     * @return the movie with its id, assigned through the Identifiable contract.
+     */
+    @Benchmark
+    public Movie identifiable() {
+        Movie m = new Movie("Matrix", DATE, 12);
+        m.setId(nextId++);
+        return m;
+    }
+
+    /**
+     * @return the movie created and stored by the back-end.
+     */
+    @Benchmark
+    public Movie createMovie() {
+        return services.createMovie("Matrix", DATE, 12);
+    }
+
+    /**
+     * @return the user created and stored by the back-end.
+     */
+    @Benchmark
+    public User createUser() {
+        return services.createUser("Duck", "Donald", DATE);
+    }
+}
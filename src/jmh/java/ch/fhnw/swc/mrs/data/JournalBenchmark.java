@@ -0,0 +1,79 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.swc.mrs.model.Movie;
+
+/**
+ * Latency of creating a movie in the in-memory back-end without journal (sync -1), with a journal forced
+ * periodically (sync in milliseconds) and with a journal forced before every create returns (sync 0).
+ * Four threads create concurrently, so with sync 0 they share forces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JournalBenchmark {
+
+    private static final LocalDate DATE = LocalDate.of(1999, 3, 11);
+
+    @Param({"-1", "10", "0"})
+    private long sync;
+
+    private Path dir;
+    private SimpleMRSServices services;
+
+    /**
+     * Start every iteration with an empty back-end and journal.
+     *
+     * @throws IOException if the journal cannot be opened.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("mrs-journal");
+        services = new SimpleMRSServices();
+        if (sync >= 0) {
+            services.openJournal(dir.resolve("mrs.journal"), sync);
+        }
+    }
+
+    /**
+     * @throws IOException if the journal cannot be deleted.
+     */
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        services.closeJournal();
+        Files.deleteIfExists(dir.resolve("mrs.journal"));
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * @return the created movie.
+     */
+    @Benchmark
+    public Movie createMovie() {
+        return services.createMovie("Matrix", DATE, 12);
+    }
+}
@@ -0,0 +1,122 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.User;
+
+/**
+ * Lookups and rentals of the in-memory back-end. The scale is the number of movies; there is one user
+ * per ten movies, who has rented one more movie of its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleMRSServicesBenchmark {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Param({"100", "10000", "100000"})
+    private int movies;
+
+    private SimpleMRSServices services;
+    private long[] movieIds;
+    private long[] userIds;
+    private String[] names;
+    private int next;
+
+    /**
+     * Fill the back-end.
+     */
+    @Setup
+    public void setUp() {
+        services = new SimpleMRSServices();
+        movieIds = new long[movies];
+        for (int i = 0; i < movies; i++) {
+            movieIds[i] = services.createMovie("Movie " + i, TODAY, 0).getMovieid();
+        }
+        userIds = new long[Math.max(1, movies / 10)];
+        names = new String[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            names[i] = "User" + i;
+            userIds[i] = services.createUser(names[i], "No" + i, LocalDate.of(1980, 1, 1)).getUserid();
+            services.createRental(userIds[i], services.createMovie("Rented " + i, TODAY, 0).getMovieid(), TODAY);
+        }
+    }
+
+    private int next(int bound) {
+        next = (next + 1) % movies;
+        return next % bound;
+    }
+
+    /**
+     * @return the next movie.
+     */
+    @Benchmark
+    public Movie getMovieById() {
+        return services.getMovieById(movieIds[next(movieIds.length)]);
+    }
+
+    /**
+     * @return the next user.
+     */
+    @Benchmark
+    public User getUserByName() {
+        return services.getUserByName(names[next(names.length)]);
+    }
+
+    /**
+     * @return the number of available movies.
+     */
+    @Benchmark
+    public int getAvailableMovies() {
+        Collection<Movie> available = services.getAllMovies(false);
+        return available.size();
+    }
+
+    /**
+     * @return whether the next movie could be rented and returned by the next user.
+     */
+    @Benchmark
+    public boolean rentAndReturn() {
+        int i = next(movieIds.length);
+        Rental r = services.createRental(userIds[i % userIds.length], movieIds[i], TODAY);
+        return services.deleteRental(r.getRentalId());
+    }
+
+    /**
+     * @return the rentals of the next user, looked up by user.
+     */
+    @Benchmark
+    public List<Rental> getRentalsByUser() {
+        return services.getRentalsByUser(userIds[next(userIds.length)]);
+    }
+
+    /**
+     * @return the rentals of the next user, found by filtering all rentals as before the lookup by user.
+     */
+    @Benchmark
+    public List<Rental> getRentalsByUserFiltering() {
+        long userId = userIds[next(userIds.length)];
+        return services.getAllRentals().stream().filter(r -> r.getUser().getUserid() == userId).toList();
+    }
+}
@@ -0,0 +1,109 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Start-up of the in-memory back-end from CSV files compared with loading a snapshot of the same data.
+ * The scale is the number of movies; there is one user per ten movies and one rental per user.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"1000", "100000"})
+    private int movies;
+
+    private Path dir;
+    private Path snapshot;
+
+    /**
+     * Write the CSV files and a snapshot of their content.
+     *
+     * @throws IOException if a file cannot be written.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("mrs-snapshot");
+        int users = Math.max(1, movies / 10);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(dir.resolve("movies.csv"),
+                StandardCharsets.UTF_8))) {
+            out.println("ID;Title;ReleaseDate;AgeRating");
+            for (int i = 1; i <= movies; i++) {
+                out.println(i + ";Movie " + i + ";" + LocalDate.of(2000, 1, 1).plusDays(i % 5000) + ";" + i % 19);
+            }
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(dir.resolve("users.csv"),
+                StandardCharsets.UTF_8))) {
+            out.println("ID;Surname;FirstName;Birthdate");
+            for (int i = 1; i <= users; i++) {
+                out.println(i + ";User" + i + ";No" + i + ";" + LocalDate.of(1950, 1, 1).plusDays(i % 15000));
+            }
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(dir.resolve("rentals.csv"),
+                StandardCharsets.UTF_8))) {
+            out.println("ID;RentalDate;UserID;MovieID");
+            for (int i = 1; i <= users; i++) {
+                out.println(i + ";2020-01-01;" + i + ";" + i);
+            }
+        }
+        SimpleMRSServices services = new SimpleMRSServices();
+        services.createDB(dir);
+        snapshot = dir.resolve("mrs.snapshot");
+        services.writeSnapshot(snapshot);
+    }
+
+    /**
+     * @throws IOException if a file cannot be deleted.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        for (String name : new String[] {"movies.csv", "users.csv", "rentals.csv", "mrs.snapshot"}) {
+            Files.deleteIfExists(dir.resolve(name));
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * @return the back-end filled from the CSV files.
+     */
+    @Benchmark
+    public SimpleMRSServices createDB() {
+        SimpleMRSServices services = new SimpleMRSServices();
+        services.createDB(dir);
+        return services;
+    }
+
+    /**
+     * @return the back-end filled from the snapshot.
+     * @throws IOException if the snapshot cannot be read.
+     */
+    @Benchmark
+    public SimpleMRSServices loadSnapshot() throws IOException {
+        SimpleMRSServices services = new SimpleMRSServices();
+        services.loadSnapshot(snapshot);
+        return services;
+    }
+}
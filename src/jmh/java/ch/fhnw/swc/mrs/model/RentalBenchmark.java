@@ -0,0 +1,68 @@
+package ch.fhnw.swc.mrs.model;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construction of rentals, including the age check of the user. The scale is the number of distinct
+ * users and movies the rentals are made for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RentalBenchmark {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Param({"10", "1000", "100000"})
+    private int users;
+
+    private User[] renters;
+    private Movie[] movies;
+    private int next;
+
+    /**
+     * Create the users and movies.
+     */
+    @Setup
+    public void setUp() {
+        renters = new User[users];
+        movies = new Movie[users];
+        for (int i = 0; i < users; i++) {
+            renters[i] = new User("User", "No" + i, LocalDate.of(1950 + i % 50, 1 + i % 12, 1 + i % 28));
+            movies[i] = new Movie("Movie " + i, TODAY, i % 19);
+        }
+    }
+
+    /**
+     * @return a new rental of the next movie by the next user.
+     */
+    @Benchmark
+    public Rental rent() {
+        int i = next;
+        next = (i + 1) % users;
+        User u = renters[i];
+        Movie m = movies[i];
+        // undo the previous rental of this user and movie
+        if (u.hasRentals()) {
+            u.removeRental(u.getRentals().get(0));
+        }
+        m.setRented(false);
+        return new Rental(u, m, TODAY);
+    }
+}
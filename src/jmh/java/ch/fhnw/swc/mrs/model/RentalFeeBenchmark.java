@@ -0,0 +1,79 @@
+package ch.fhnw.swc.mrs.model;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A billing run: the fees of many rentals of all price categories are summed up for one day. The fees
+ * looked up in the fee tables are compared with computing them for every rental. Run with
+ * <code>-prof gc</code> to see that neither allocates. The scale is the number of rentals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RentalFeeBenchmark {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Param({"1000", "1000000"})
+    private int rentals;
+
+    private Rental[] all;
+
+    /**
+     * Create the rentals, each by its own user, with random price categories and rental dates within
+     * the last year.
+     */
+    @Setup
+    public void setUp() {
+        List<PriceCategory> categories = PriceCategory.getAll();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        all = new Rental[rentals];
+        for (int i = 0; i < rentals; i++) {
+            User u = new User("User", "No" + i, LocalDate.of(1980, 1, 1));
+            Movie m = new Movie("Movie " + i, TODAY, 0, categories.get(random.nextInt(categories.size())));
+            all[i] = new Rental(u, m, TODAY.minusDays(random.nextInt(365)));
+        }
+    }
+
+    /**
+     * @return the sum of all fees, looked up in the fee tables.
+     */
+    @Benchmark
+    public double billFromTables() {
+        double result = 0.0d;
+        for (Rental r : all) {
+            result += r.getRentalFee(TODAY);
+        }
+        return result;
+    }
+
+    /**
+     * @return the sum of all fees, computed for every rental.
+     */
+    @Benchmark
+    public double billComputed() {
+        double result = 0.0d;
+        for (Rental r : all) {
+            result += r.getMovie().getPriceCategory().computeCharge(Math.max(r.getRentalDays(TODAY), 1));
+        }
+        return result;
+    }
+}
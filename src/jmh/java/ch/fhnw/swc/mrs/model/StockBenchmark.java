@@ -0,0 +1,70 @@
+package ch.fhnw.swc.mrs.model;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adding movies to and removing them from the stock, with one low stock listener registered. The scale
+ * is the number of distinct titles in stock.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StockBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int titles;
+
+    private Stock stock;
+    private Movie[] movies;
+    private int next;
+
+    /**
+     * Fill the stock with one copy of each title.
+     */
+    @Setup
+    public void setUp() {
+        stock = new Stock();
+        stock.addLowStockListener(new LowStockListener() {
+            @Override
+            public void stockLow(Movie m, int count) {
+            }
+
+            @Override
+            public int getThreshold() {
+                return 0;
+            }
+        });
+        movies = new Movie[titles];
+        for (int i = 0; i < titles; i++) {
+            movies[i] = new Movie("Movie " + i, LocalDate.now(), 0);
+            stock.addToStock(movies[i]);
+        }
+    }
+
+    /**
+     * @return the number of copies left after adding and removing one copy of the next title.
+     */
+    @Benchmark
+    public int addAndRemove() {
+        Movie m = movies[next];
+        next = (next + 1) % titles;
+        stock.addToStock(m);
+        return stock.removeFromStock(m);
+    }
+}
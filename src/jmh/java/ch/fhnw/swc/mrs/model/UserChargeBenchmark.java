@@ -0,0 +1,82 @@
+package ch.fhnw.swc.mrs.model;
+
+import java.time.LocalDate;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Calculation of a user's charge. The charge summed up once a day and then maintained on every rental and
+ * return is compared with summing up the fees of all rentals on every call, and the cost of maintaining it
+ * is measured with a rental returned and made again. The scale is the number of rentals of the user.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserChargeBenchmark {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Param({"3", "300", "30000"})
+    private int rentals;
+
+    private User user;
+    private Rental last;
+
+    /**
+     * Create a user with the given number of rentals. A user may rent only a few movies at once, so the
+     * rentals are made by other users and then handed over.
+     */
+    @Setup
+    public void setUp() {
+        List<Rental> list = new LinkedList<>();
+        for (int i = 0; i < rentals; i++) {
+            User renter = new User("User", "No" + i, LocalDate.of(1980, 1, 1));
+            list.add(new Rental(renter, new Movie("Movie " + i, TODAY, 0), TODAY));
+        }
+        user = new User("Duck", "Donald", LocalDate.of(1980, 1, 1));
+        user.setRentals(list);
+        last = list.get(list.size() - 1);
+    }
+
+    /**
+     * @return the charge of the user, as maintained.
+     */
+    @Benchmark
+    public double getCharge() {
+        return user.getCharge();
+    }
+
+    /**
+     * @return the charge of the user, summed up over all rentals.
+     */
+    @Benchmark
+    public double sumCharge() {
+        return user.getCharge(TODAY);
+    }
+
+    /**
+     * @return the charge of the user after the last rental was returned and made again.
+     */
+    @Benchmark
+    public double returnAndRent() {
+        user.removeRental(last);
+        user.addRental(last);
+        return user.getCharge();
+    }
+}
@@ -1,9 +1,15 @@
 package ch.fhnw.swc.mrs;
 
-import ch.fhnw.swc.mrs.api.MRSServices;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
 import ch.fhnw.swc.mrs.controller.MovieController;
+import ch.fhnw.swc.mrs.controller.RentalController;
+import ch.fhnw.swc.mrs.controller.ResponseCache;
 import ch.fhnw.swc.mrs.controller.UserController;
 import ch.fhnw.swc.mrs.data.SimpleMRSServices;
+import ch.fhnw.swc.mrs.util.Compression;
 import ch.fhnw.swc.mrs.util.Filters;
 import static spark.Spark.port;
 import static spark.Spark.staticFiles;
@@ -15,16 +21,48 @@ import static spark.Spark.awaitInitialization;
  */
 public final class Application {
 
+    private static ResponseCache cache;
+
     /**
      * The Application main entry point.
      * 
-     * @param args are ignored.
+     * @param args are ignored. The system property mrs.data may name a directory with the CSV files to
+     *            load instead of the bundled data. If the system property mrs.snapshot names a snapshot
+     *            file, the data is loaded from it if it exists and saved to it every
+     *            mrs.snapshot.interval seconds and on shutdown. If the system property mrs.journal names a
+     *            journal file, the changes recorded in it are replayed and further changes are recorded;
+     *            mrs.journal.sync gives the milliseconds between two forces to disk.
      * @throws Exception whenever something goes wrong.
      */
     public static void main(String[] args) throws Exception {
         // Instantiate dependencies
-        MRSServices backend = new SimpleMRSServices();
-        backend.createDB();
+        SimpleMRSServices backend = new SimpleMRSServices();
+        String snapshot = System.getProperty("mrs.snapshot");
+        if (snapshot == null || !backend.loadSnapshot(Paths.get(snapshot))) {
+            String data = System.getProperty("mrs.data");
+            if (data == null) {
+                backend.createDB();
+            } else {
+                backend.createDB(Paths.get(data));
+            }
+        }
+        String journal = System.getProperty("mrs.journal");
+        if (journal != null) {
+            backend.openJournal(Paths.get(journal), Long.getLong("mrs.journal.sync", 10));
+        }
+        if (snapshot != null) {
+            backend.startSnapshots(Paths.get(snapshot), Long.getLong("mrs.snapshot.interval", 60), TimeUnit.SECONDS);
+        }
+        if (snapshot != null || journal != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    backend.stopSnapshots();
+                    backend.closeJournal();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }));
+        }
 
         // Configure Spark
         exception(Exception.class, (e, req, res) -> e.printStackTrace());
@@ -37,11 +75,15 @@ public final class Application {
         Filters.beforeGetPost();
 
         // Set up routes
-        MovieController.init(backend);
-        UserController.init(backend);
+        cache = new ResponseCache(Long.getLong("mrs.cache.bytes", ResponseCache.DEFAULT_MAX_BYTES));
+        MovieController.init(backend, cache);
+        UserController.init(backend, cache);
+        RentalController.init(backend, cache);
         // get("*", ViewUtil.notFound);
 
         // Set up after-filters (called after each get/post)
+        Compression.configure(Integer.getInteger("mrs.compression.threshold", Compression.DEFAULT_THRESHOLD),
+                Boolean.parseBoolean(System.getProperty("mrs.compression.deflate", "true")));
         Filters.afterGetPost();
 
         awaitInitialization(); // IMPORTANT: Wait for spark server to be initialized
@@ -55,6 +97,13 @@ public final class Application {
         return port();
     }
 
+    /**
+     * @return the cache of serialized responses, e.g. to read its hit and miss counters.
+     */
+    public static ResponseCache getResponseCache() {
+        return cache;
+    }
+
     /**
      * Stops spark server.
      */
@@ -1,34 +1,41 @@
 package ch.fhnw.swc.mrs;
 
-import java.io.InputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.Date;
-import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.time.LocalDate;
+import java.util.List;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVRecord;
 import org.postgresql.ds.PGSimpleDataSource;
 
+import ch.fhnw.swc.mrs.data.CsvBulkLoader;
+import ch.fhnw.swc.mrs.data.CsvBulkLoader.Table;
+
 public final class DBSetup {
 
+    private static final String USAGE =
+            "Usage: DBSetup [create|createfill|drop|explain|import movies|users|rentals <csv file>]";
+
     public static void main(String[] args) {
         DBSetup setup = new DBSetup();
 
-        if (args.length != 1) {
-            System.out.println("exactly one argument needed");
-            System.out.println("Usage: DBSetup [create|createfill|drop]");
+        if (args.length == 1) {
+            setup.setup(args[0], null, null);
+        } else if (args.length == 3 && "import".equalsIgnoreCase(args[0])) {
+            setup.setup(args[0], args[1], args[2]);
         } else {
-            setup.setup(args[0]);
+            System.out.println(USAGE);
         }
     }
 
-    private void setup(String option) {
+    private void setup(String option, String table, String file) {
         // IMPROVE: Ugly! Never store credentials in source code
         String userName = "postgres";
         String password = "1234";
@@ -50,185 +57,169 @@ public final class DBSetup {
         case "DROP":
             removeDB(ds);
             break;
+        case "EXPLAIN":
+            explainDB(ds);
+            break;
+        case "IMPORT":
+            if (file != null) {
+                importFile(ds, table, file);
+                break;
+            }
+            // fall through: table and file are missing
         default:
-            System.out.println("Usage: DBSetup [create|createfill|drop]");
+            System.out.println(USAGE);
         }
     }
 
+    /**
+     * Create the tables and their indexes. Existing tables and indexes are kept, so this can be run
+     * again on a database created by an older version to add the indexes.
+     */
     private void createDB(PGSimpleDataSource datasource) {
         try (Connection conn = datasource.getConnection()) {
-            Statement statement = conn.createStatement();
-            statement.execute(CREATE_MOVIES_TABLE);
-            statement.execute(CREATE_USERS_TABLE);
-            statement.execute(CREATE_REANTALS_TABLE);
+            createTables(conn);
+            createIndexes(conn);
         } catch (SQLException se) {
             se.printStackTrace();
         }
     }
 
-    private void removeDB(PGSimpleDataSource datasource) {
+    private void explainDB(PGSimpleDataSource datasource) {
         try (Connection conn = datasource.getConnection()) {
-            Statement statement = conn.createStatement();
-            statement.execute(DROP_RENTALS_TABLE);
-            statement.execute(DROP_MOVIES_TABLE);
-            statement.execute(DROP_USERS_TABLE);
+            explain(conn, QUERY_PATTERNS, System.out);
         } catch (SQLException se) {
             se.printStackTrace();
         }
     }
 
-    private void fillDB(PGSimpleDataSource datasource) {
-        fillMovies(datasource);
-        fillUsers(datasource);
-        fillRentals(datasource);
+    static void createTables(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute(CREATE_MOVIES_TABLE);
+            statement.execute(CREATE_USERS_TABLE);
+            statement.execute(CREATE_REANTALS_TABLE);
+            // tables of older versions lack the rental counts and price categories
+            statement.execute(ADD_USERS_RENTALCOUNT);
+            statement.execute(ADD_MOVIES_PRICECATEGORY);
+        }
+        updateRentalCounts(conn);
     }
 
-    private void fillMovies(PGSimpleDataSource datasource) {
-        InputStream instream = getClass().getResourceAsStream("/data/movies.csv");
-        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
-
-            CSVFormat format = initCSVFormat(MovieHeaders.class);
-
-            Iterable<CSVRecord> movieList = format.parse(in);
-
-            Connection con = datasource.getConnection();
-            con.setAutoCommit(false);
-
-            for (CSVRecord m : movieList) {
-                long id = -Long.parseLong(m.get(MovieHeaders.ID));
-                String title = m.get(MovieHeaders.Title);
-                LocalDate releaseDate = LocalDate.parse(m.get(MovieHeaders.ReleaseDate));
-                int ageRating = Integer.parseInt(m.get(MovieHeaders.AgeRating));
+    /**
+     * Recompute the rental count of every user with a single statement. It is maintained by the
+     * application, but rentals loaded from CSV files bypass it.
+     */
+    static void updateRentalCounts(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.executeUpdate(UPDATE_USERS_RENTALCOUNT);
+        }
+    }
 
-                try (PreparedStatement insert = con.prepareStatement(INSERT_MOVIE)) {
-                    insert.setLong(1, id);
-                    insert.setString(2, title);
-                    insert.setBoolean(3, false);
-                    insert.setDate(4, Date.valueOf(releaseDate));
-                    insert.setInt(5, ageRating);
-                    insert.executeUpdate();
-                    con.commit();
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    if (con != null) {
-                        try {
-                            System.err.print("Transaction is being rolled back");
-                            con.rollback();
-                        } catch (SQLException excep) {
-                            excep.printStackTrace();
-                        }
-                    }
-                }
+    /**
+     * Create the indexes for the queries of the DAOs, see {@link #QUERY_PATTERNS}. Titles get a trigram
+     * index, which serves <code>LIKE</code> patterns with leading wildcards too. Where the pg_trgm
+     * extension is not available, they get a prefix index instead.
+     */
+    static void createIndexes(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute(CREATE_AVAILABLE_MOVIES_INDEX);
+            statement.execute(CREATE_USERS_NAME_INDEX);
+            statement.execute(CREATE_RENTALS_USERID_INDEX);
+            try {
+                statement.execute(CREATE_TRIGRAM_EXTENSION);
+                statement.execute(CREATE_TITLE_TRIGRAM_INDEX);
+            } catch (SQLException e) {
+                System.err.println("No trigram index for titles, creating a prefix index: " + e.getMessage());
+                statement.execute(CREATE_TITLE_PREFIX_INDEX);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            statement.execute("ANALYZE movies, users, rentals");
         }
     }
 
-    private void fillUsers(PGSimpleDataSource datasource) {
-        InputStream instream = getClass().getResourceAsStream("/data/users.csv");
-        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
-
-            CSVFormat format = initCSVFormat(UserHeaders.class);
-
-            Iterable<CSVRecord> usersList = format.parse(in);
-
-            Connection con = datasource.getConnection();
-            con.setAutoCommit(false);
-
-            for (CSVRecord u : usersList) {
-                long id = -Long.parseLong(u.get(UserHeaders.ID));
-                String surname = u.get(UserHeaders.Surname);
-                String firstname = u.get(UserHeaders.FirstName);
-                LocalDate birthdate = LocalDate.parse(u.get(UserHeaders.Birthdate));
-
-                try (PreparedStatement insert = con.prepareStatement(INSERT_USER)) {
-                    insert.setLong(1, id);
-                    insert.setString(2, surname);
-                    insert.setString(3, firstname);
-                    insert.setDate(4, Date.valueOf(birthdate));
-                    insert.executeUpdate();
-                    con.commit();
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    if (con != null) {
-                        try {
-                            System.err.print("Transaction is being rolled back");
-                            con.rollback();
-                        } catch (SQLException excep) {
-                            excep.printStackTrace();
-                        }
+    /**
+     * Print the plans and execution times of queries, e.g. of the {@link #QUERY_PATTERNS}.
+     */
+    static void explain(Connection conn, List<String> queries, PrintStream out) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            for (String query : queries) {
+                out.println(query);
+                try (ResultSet plan = statement.executeQuery("EXPLAIN (ANALYZE, BUFFERS) " + query)) {
+                    while (plan.next()) {
+                        out.println("    " + plan.getString(1));
                     }
                 }
-
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
     }
 
-    private void fillRentals(PGSimpleDataSource datasource) {
-        InputStream instream = getClass().getResourceAsStream("/data/rentals.csv");
-        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
+    private void removeDB(PGSimpleDataSource datasource) {
+        try (Connection conn = datasource.getConnection()) {
+            Statement statement = conn.createStatement();
+            statement.execute(DROP_RENTALS_TABLE);
+            statement.execute(DROP_MOVIES_TABLE);
+            statement.execute(DROP_USERS_TABLE);
+        } catch (SQLException se) {
+            se.printStackTrace();
+        }
+    }
 
-            CSVFormat format = initCSVFormat(RentalHeaders.class);
+    private void fillDB(PGSimpleDataSource datasource) {
+        CsvBulkLoader loader = createLoader(datasource);
+        load(loader, Table.MOVIES, "/data/movies.csv");
+        load(loader, Table.USERS, "/data/users.csv");
+        load(loader, Table.RENTALS, "/data/rentals.csv");
+        updateRentalCounts(datasource);
+    }
 
-            Iterable<CSVRecord> rentalsList = format.parse(in);
+    private void updateRentalCounts(PGSimpleDataSource datasource) {
+        try (Connection conn = datasource.getConnection()) {
+            updateRentalCounts(conn);
+        } catch (SQLException se) {
+            se.printStackTrace();
+        }
+    }
 
-            Connection con = datasource.getConnection();
-            con.setAutoCommit(false);
+    private void load(CsvBulkLoader loader, Table table, String resource) {
+        try (Reader in = new InputStreamReader(getClass().getResourceAsStream(resource), StandardCharsets.UTF_8)) {
+            report(loader.load(table, in));
+        } catch (IOException | SQLException e) {
+            e.printStackTrace();
+        }
+    }
 
-            for (CSVRecord r : rentalsList) {
-                long id = -Long.parseLong(r.get(RentalHeaders.ID));
-                LocalDate rentaldate = LocalDate.parse(r.get(RentalHeaders.RentalDate));
-                long userId = -Long.parseLong(r.get(RentalHeaders.UserID));
-                long movieId = -Long.parseLong(r.get(RentalHeaders.MovieID));
-                try (PreparedStatement insert = con.prepareStatement(INSERT_RENTAL)) {
-                    insert.setLong(1, id);
-                    insert.setLong(2, movieId);
-                    insert.setLong(3, userId);
-                    insert.setDate(4, Date.valueOf(rentaldate));
-                    insert.executeUpdate();
-                    con.commit();
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    if (con != null) {
-                        try {
-                            System.err.print("Transaction is being rolled back");
-                            con.rollback();
-                        } catch (SQLException excep) {
-                            excep.printStackTrace();
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
+    private void importFile(PGSimpleDataSource datasource, String tableName, String file) {
+        Table table;
+        try {
+            table = Table.valueOf(tableName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        try (Reader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            report(createLoader(datasource).load(table, in));
+        } catch (IOException | SQLException e) {
             e.printStackTrace();
         }
+        if (table == Table.RENTALS) {
+            updateRentalCounts(datasource);
+        }
     }
 
     /**
-     * init the Excel Formatter to read the data from the cvs file
-     * 
-     * @param headerClass the specification of the heder column provided as a class
-     * @return
+     * The loader is configured with the system properties mrs.import.batchSize, mrs.import.commitInterval
+     * and mrs.import.copy.
      */
-    private CSVFormat initCSVFormat(Class<? extends Enum<?>> headerClass) {
-        CSVFormat format = CSVFormat.Builder.create(CSVFormat.EXCEL).setHeader(headerClass).setDelimiter(';')
-                .setSkipHeaderRecord(true).build();
-        return format;
+    private CsvBulkLoader createLoader(PGSimpleDataSource datasource) {
+        return new CsvBulkLoader(datasource,
+                Integer.getInteger("mrs.import.batchSize", CsvBulkLoader.DEFAULT_BATCH_SIZE),
+                Integer.getInteger("mrs.import.commitInterval", CsvBulkLoader.DEFAULT_COMMIT_INTERVAL),
+                Boolean.parseBoolean(System.getProperty("mrs.import.copy", "true")));
     }
 
-    enum MovieHeaders {
-        ID, Title, ReleaseDate, AgeRating
-    }
-
-    enum UserHeaders {
-        ID, Surname, FirstName, Birthdate
-    }
-
-    enum RentalHeaders {
-        ID, RentalDate, UserID, MovieID
+    private void report(CsvBulkLoader.Result result) {
+        System.out.println(result);
+        for (CsvBulkLoader.Rejected r : result.getRejected()) {
+            System.err.println("  rejected " + r);
+        }
     }
 
     private static final String CREATE_MOVIES_TABLE = "CREATE TABLE IF NOT EXISTS movies ( "
@@ -237,12 +228,14 @@ public final class DBSetup {
             + "Rented boolean NOT NULL, "
             + "ReleaseDate date NOT NULL, " 
             + "AgeRating integer NOT NULL, "
+            + "PriceCategory text NOT NULL DEFAULT 'Regular', "
             + "CONSTRAINT movies_pkey PRIMARY KEY (MovieId)" + ");";
     private static final String CREATE_USERS_TABLE = "CREATE TABLE IF NOT EXISTS users ( " 
             + "UserId integer NOT NULL, "
             + "Name text NOT NULL, " 
             + "FirstName text NOT NULL, " 
             + "Birthdate date NOT NULL, "
+            + "RentalCount integer NOT NULL DEFAULT 0, "
             + "CONSTRAINT users_pkey PRIMARY KEY (UserId) " + ");";
     private static final String CREATE_REANTALS_TABLE = "CREATE TABLE IF NOT EXISTS rentals ( "
             + "RentalId integer NOT NULL, " 
@@ -256,14 +249,37 @@ public final class DBSetup {
             + "CONSTRAINT userFK FOREIGN KEY (UserId) REFERENCES users (UserId) MATCH SIMPLE "
             + "    ON UPDATE NO ACTION ON DELETE NO ACTION " + ");";
 
+    private static final String ADD_USERS_RENTALCOUNT =
+            "ALTER TABLE users ADD COLUMN IF NOT EXISTS RentalCount integer NOT NULL DEFAULT 0";
+    private static final String ADD_MOVIES_PRICECATEGORY =
+            "ALTER TABLE movies ADD COLUMN IF NOT EXISTS PriceCategory text NOT NULL DEFAULT 'Regular'";
+    private static final String UPDATE_USERS_RENTALCOUNT = "UPDATE users u SET RentalCount = r.n "
+            + "FROM (SELECT users.UserId, count(rentals.RentalId) AS n FROM users "
+            + "LEFT JOIN rentals ON rentals.UserId = users.UserId GROUP BY users.UserId) r "
+            + "WHERE u.UserId = r.UserId AND u.RentalCount <> r.n";
+
+    private static final String CREATE_AVAILABLE_MOVIES_INDEX =
+            "CREATE INDEX IF NOT EXISTS movies_available_idx ON movies (MovieId) WHERE NOT Rented";
+    private static final String CREATE_USERS_NAME_INDEX = "CREATE INDEX IF NOT EXISTS users_name_idx ON users (Name)";
+    // same name as the index declared on the Rental entity
+    private static final String CREATE_RENTALS_USERID_INDEX =
+            "CREATE INDEX IF NOT EXISTS rentals_userid_idx ON rentals (UserId)";
+    private static final String CREATE_TRIGRAM_EXTENSION = "CREATE EXTENSION IF NOT EXISTS pg_trgm";
+    private static final String CREATE_TITLE_TRIGRAM_INDEX =
+            "CREATE INDEX IF NOT EXISTS movies_title_trgm_idx ON movies USING gin (Title gin_trgm_ops)";
+    private static final String CREATE_TITLE_PREFIX_INDEX =
+            "CREATE INDEX IF NOT EXISTS movies_title_prefix_idx ON movies (Title text_pattern_ops)";
+
+    /** The queries of the DAOs the indexes are made for, with sample values of the seed data. */
+    static final List<String> QUERY_PATTERNS = List.of(
+            "SELECT * FROM movies WHERE Rented = false",
+            "SELECT * FROM movies WHERE Rented = false AND MovieId > -2147483648 ORDER BY MovieId LIMIT 21",
+            "SELECT * FROM movies WHERE Rented = false AND AgeRating <= 12 ORDER BY MovieId",
+            "SELECT * FROM movies WHERE Title LIKE 'Matrix%'",
+            "SELECT * FROM users WHERE Name = 'Meier'",
+            "SELECT * FROM rentals WHERE UserId = -1");
+
     private static final String DROP_MOVIES_TABLE = "DROP TABLE movies";
     private static final String DROP_USERS_TABLE = "DROP TABLE users";
     private static final String DROP_RENTALS_TABLE = "DROP TABLE rentals";
-
-    private static final String INSERT_MOVIE = "INSERT INTO movies (MovieId, Title, Rented, ReleaseDate, AgeRating) "
-            + "VALUES (?, ?, ?, ?, ?)";
-    private static final String INSERT_USER = "INSERT INTO users (UserId, Name, FirstName, Birthdate) "
-            + "VALUES (?, ?, ?, ?)";
-    private static final String INSERT_RENTAL = "INSERT INTO rentals (RentalId, MovieId, UserId, RentalDate) "
-            + "VALUES (?, ?, ?, ?)";
 }
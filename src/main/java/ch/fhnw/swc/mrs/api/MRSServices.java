@@ -2,8 +2,12 @@ package ch.fhnw.swc.mrs.api;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
 import ch.fhnw.swc.mrs.model.Rental;
 import ch.fhnw.swc.mrs.model.User;
 
@@ -12,7 +16,7 @@ import ch.fhnw.swc.mrs.model.User;
  */
 public interface MRSServices {
     /**
-     * Create a new movie.
+     * Create a new movie of the default price category.
      * 
      * @param aTitle Title of the movie. Must not be null nor empty.
      * @param aReleaseDate Date when this movie was released. Must not be null.
@@ -23,6 +27,19 @@ public interface MRSServices {
      */
     Movie createMovie(String aTitle, LocalDate aReleaseDate, int anAgeRating);
 
+    /**
+     * Create a new movie with a price category.
+     * 
+     * @param aTitle Title of the movie. Must not be null nor empty.
+     * @param aReleaseDate Date when this movie was released. Must not be null.
+     * @param anAgeRating How old a user must be at least to be allowed to rent this Movie. A value
+     *            between [0, 18].
+     * @param aPriceCategory Determines the rental fees of the movie. Must not be null.
+     * @return a Movie object initialized with given data.
+     * @throws IllegalArgumentException in case, any of the parameters are null or title is empty.
+     */
+    Movie createMovie(String aTitle, LocalDate aReleaseDate, int anAgeRating, PriceCategory aPriceCategory);
+
     /**
      * Retrieve all Movies.
      * 
@@ -38,6 +55,49 @@ public interface MRSServices {
      */
     Collection<Movie> getAllMovies(boolean rented);
 
+    /**
+     * Retrieve one page of Movies, ordered by id.
+     * 
+     * @param page which page to retrieve.
+     * @return the Movies on the requested page.
+     */
+    Page<Movie> getMovies(PageRequest page);
+
+    /**
+     * Retrieve one page of rented or available Movies, ordered by id.
+     * 
+     * @param rented whether the available or the rented Movies shall be retrieved.
+     * @param page which page to retrieve.
+     * @return the Movies on the requested page.
+     */
+    Page<Movie> getMovies(boolean rented, PageRequest page);
+
+    /**
+     * Retrieve the Movies fulfilling all criteria of a query, in the query's order. The criteria are
+     * evaluated by the back-end, so only the Movies returned are loaded.
+     *
+     * @param query the criteria, order and limit.
+     * @return at most limit Movies.
+     */
+    List<Movie> findMovies(MovieQuery query);
+
+    /**
+     * Stream all Movies ordered by id without loading them into memory at once. The stream may hold
+     * resources of the back-end and must be closed after use.
+     * 
+     * @return a lazy stream of all Movies.
+     */
+    Stream<Movie> streamMovies();
+
+    /**
+     * Stream all rented or available Movies ordered by id without loading them into memory at once.
+     * The stream may hold resources of the back-end and must be closed after use.
+     * 
+     * @param rented whether the available or the rented Movies shall be streamed.
+     * @return a lazy stream of the Movies that are either rented or not.
+     */
+    Stream<Movie> streamMovies(boolean rented);
+
     /**
      * @param id the identification of the Movie to retrieve.
      * @return get Movie by its ID,
@@ -50,6 +110,34 @@ public interface MRSServices {
      */
     Movie getMovieById(long id);
 
+    /**
+     * Search Movies by title. The words of the query are matched with the words of the titles, also as
+     * prefix and with a typo; words in double quotes must follow each other in the title. A Movie must
+     * match every word of the query. The best matches come first.
+     *
+     * @param query the words to search for.
+     * @param limit the maximum number of Movies to return.
+     * @return the best matching Movies, possibly none.
+     */
+    List<Movie> searchMovies(String query, int limit);
+
+    /**
+     * Get the version of the collection of all Movies. It changes whenever any Movie is created, changed,
+     * deleted, rented or returned through this back-end.
+     * 
+     * @return the current version of the Movies collection.
+     */
+    ResourceVersion getMoviesVersion();
+
+    /**
+     * Get the version of a Movie. It changes whenever the Movie is changed, deleted, rented or returned
+     * through this back-end.
+     * 
+     * @param id the identification of the Movie.
+     * @return the current version of the Movie.
+     */
+    ResourceVersion getMovieVersion(long id);
+
     /**
      * Update Movie with new data.
      * 
@@ -73,12 +161,45 @@ public interface MRSServices {
      */
     Collection<User> getAllUsers();
 
+    /**
+     * Retrieve one page of Users, ordered by id.
+     * 
+     * @param page which page to retrieve.
+     * @return the Users on the requested page.
+     */
+    Page<User> getUsers(PageRequest page);
+
+    /**
+     * Stream all Users ordered by id without loading them into memory at once. The stream may hold
+     * resources of the back-end and must be closed after use.
+     * 
+     * @return a lazy stream of all Users.
+     */
+    Stream<User> streamUsers();
+
     /**
      * @param id the identification of the User to retrieve.
      * @return get User by its ID.
      */
     User getUserById(long id);
 
+    /**
+     * Get the version of the collection of all Users. It changes whenever any User is created, changed
+     * or deleted through this back-end.
+     * 
+     * @return the current version of the Users collection.
+     */
+    ResourceVersion getUsersVersion();
+
+    /**
+     * Get the version of a User. It changes whenever the User is changed or deleted through this
+     * back-end.
+     * 
+     * @param id the identification of the User.
+     * @return the current version of the User.
+     */
+    ResourceVersion getUserVersion(long id);
+
     /**
      * @param name retrieve first user found with given name.
      * @return User or null if not found.
@@ -120,6 +241,39 @@ public interface MRSServices {
      */
     Collection<Rental> getAllRentals();
 
+    /**
+     * Retrieve one page of Rentals, ordered by id.
+     * 
+     * @param page which page to retrieve.
+     * @return the Rentals on the requested page.
+     */
+    Page<Rental> getRentals(PageRequest page);
+
+    /**
+     * Retrieve the Rentals of one User. They are looked up by user and not by filtering all Rentals.
+     * 
+     * @param userId the identification of the User.
+     * @return the User's Rentals, possibly none, or <code>null</code> if there is no such User.
+     */
+    List<Rental> getRentalsByUser(long userId);
+
+    /**
+     * Retrieve the Movies a User may rent now: the available Movies whose age rating the User has
+     * reached, none if the User has rented {@link User#MAX_RENTABLE_MOVIES} already.
+     * 
+     * @param userId the identification of the User.
+     * @return the rentable Movies ordered by id, or <code>null</code> if there is no such User.
+     */
+    List<Movie> getRentableMovies(long userId);
+
+    /**
+     * Sum up the charges of all Users as of a given day, e.g. in a billing run.
+     * 
+     * @param day the day up to which the Rentals are charged.
+     * @return the total charge of each User that has Rentals, by user id.
+     */
+    Map<Long, Double> getCharges(LocalDate day);
+
     /**
      * Create a new Rental.
      * 
@@ -138,6 +292,29 @@ public interface MRSServices {
      */
     boolean deleteRental(long rentalid);
 
+    /**
+     * Rent several movies to one user at once. Either all movies are rented or none: the limit of
+     * {@link User#MAX_RENTABLE_MOVIES} and the age ratings are checked for the whole batch before the
+     * rentals become visible.
+     *
+     * @param userId the id of the user who is renting the movies.
+     * @param movieIds the ids of the movies to rent, each at most once.
+     * @param rentalDate date the rentals start.
+     * @return the created Rentals in the order of the movie ids, or <code>null</code> if the user or any
+     *         movie does not exist, a movie is already rented or listed twice, or the date is in the future.
+     * @throws MovieRentalException if the user would exceed the maximum number of rentals or is too young
+     *             for one of the movies.
+     */
+    List<Rental> createRentals(long userId, List<Long> movieIds, LocalDate rentalDate);
+
+    /**
+     * Return several rentals at once. Either all rentals are deleted or none.
+     *
+     * @param rentalIds the ids of the rentals to delete.
+     * @return whether the rentals were deleted; <code>false</code> if any of them does not exist.
+     */
+    boolean deleteRentals(List<Long> rentalIds);
+
     /**
      * Creates database.
      */
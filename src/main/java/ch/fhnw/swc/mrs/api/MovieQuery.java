@@ -0,0 +1,201 @@
+package ch.fhnw.swc.mrs.api;
+
+import java.time.LocalDate;
+
+import ch.fhnw.swc.mrs.model.Movie;
+
+/**
+ * Describes which Movies to retrieve and in which order. The criteria are combined: a Movie must fulfill
+ * all of them. Criteria that are not set do not restrict the result. Bounds are inclusive.
+ * <p>
+ * A query is immutable; every method setting a criterion returns a new query, so queries can be built
+ * step by step and shared:
+ *
+ * <pre>
+ * MovieQuery.all().rented(false).ageRating(0, 12).orderBy(MovieQuery.Order.RELEASE_DATE, true).limit(10)
+ * </pre>
+ */
+public final class MovieQuery {
+
+    /** The properties Movies can be ordered by. Movies with equal properties are ordered by id. */
+    public enum Order {
+        /** By id, the order of creation. */
+        ID,
+        /** By title, case sensitive. */
+        TITLE,
+        /** By release date. */
+        RELEASE_DATE,
+        /** By age rating. */
+        AGE_RATING
+    }
+
+    private static final MovieQuery ALL = new MovieQuery(null, null, null, null, null, null, Order.ID, false,
+            PageRequest.MAX_LIMIT);
+
+    private final Boolean rented;
+    private final Integer minAgeRating;
+    private final Integer maxAgeRating;
+    private final LocalDate releasedFrom;
+    private final LocalDate releasedTo;
+    private final String titlePrefix;
+    private final Order order;
+    private final boolean descending;
+    private final int limit;
+
+    private MovieQuery(Boolean rented, Integer minAgeRating, Integer maxAgeRating, LocalDate releasedFrom,
+            LocalDate releasedTo, String titlePrefix, Order order, boolean descending, int limit) {
+        this.rented = rented;
+        this.minAgeRating = minAgeRating;
+        this.maxAgeRating = maxAgeRating;
+        this.releasedFrom = releasedFrom;
+        this.releasedTo = releasedTo;
+        this.titlePrefix = titlePrefix;
+        this.order = order;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    /**
+     * @return a query for all Movies ordered by id, at most {@link PageRequest#MAX_LIMIT} of them.
+     */
+    public static MovieQuery all() {
+        return ALL;
+    }
+
+    /**
+     * @param isRented whether the rented or the available Movies shall be retrieved.
+     * @return a query restricted to rented or available Movies.
+     */
+    public MovieQuery rented(boolean isRented) {
+        return new MovieQuery(isRented, minAgeRating, maxAgeRating, releasedFrom, releasedTo, titlePrefix, order,
+                descending, limit);
+    }
+
+    /**
+     * @param min the lowest age rating, <code>null</code> for no lower bound.
+     * @param max the highest age rating, <code>null</code> for no upper bound.
+     * @return a query restricted to Movies with an age rating between min and max.
+     */
+    public MovieQuery ageRating(Integer min, Integer max) {
+        return new MovieQuery(rented, min, max, releasedFrom, releasedTo, titlePrefix, order, descending, limit);
+    }
+
+    /**
+     * @param from the earliest release date, <code>null</code> for no lower bound.
+     * @param to the latest release date, <code>null</code> for no upper bound.
+     * @return a query restricted to Movies released between from and to.
+     */
+    public MovieQuery releasedBetween(LocalDate from, LocalDate to) {
+        return new MovieQuery(rented, minAgeRating, maxAgeRating, from, to, titlePrefix, order, descending, limit);
+    }
+
+    /**
+     * @param prefix the beginning of the title, case sensitive; <code>null</code> or empty for any title.
+     * @return a query restricted to Movies whose title starts with prefix.
+     */
+    public MovieQuery titleStartingWith(String prefix) {
+        String p = prefix == null || prefix.isEmpty() ? null : prefix;
+        return new MovieQuery(rented, minAgeRating, maxAgeRating, releasedFrom, releasedTo, p, order, descending,
+                limit);
+    }
+
+    /**
+     * @param by the property to order the Movies by.
+     * @param isDescending whether the order is reversed, ties included.
+     * @return a query returning the Movies in the given order.
+     */
+    public MovieQuery orderBy(Order by, boolean isDescending) {
+        if (by == null) {
+            throw new IllegalArgumentException("order must not be null");
+        }
+        return new MovieQuery(rented, minAgeRating, maxAgeRating, releasedFrom, releasedTo, titlePrefix, by,
+                isDescending, limit);
+    }
+
+    /**
+     * @param max maximum number of Movies, at most {@link PageRequest#MAX_LIMIT}.
+     * @return a query returning at most max Movies.
+     */
+    public MovieQuery limit(int max) {
+        return new MovieQuery(rented, minAgeRating, maxAgeRating, releasedFrom, releasedTo, titlePrefix, order,
+                descending, Math.max(1, Math.min(max, PageRequest.MAX_LIMIT)));
+    }
+
+    /**
+     * Evaluate the criteria of this query for one Movie, ignoring order and limit.
+     *
+     * @param m the Movie to test.
+     * @return whether the Movie fulfills all criteria.
+     */
+    public boolean matches(Movie m) {
+        return (rented == null || m.isRented() == rented)
+                && (minAgeRating == null || m.getAgeRating() >= minAgeRating)
+                && (maxAgeRating == null || m.getAgeRating() <= maxAgeRating)
+                && (releasedFrom == null || !m.getReleaseDate().isBefore(releasedFrom))
+                && (releasedTo == null || !m.getReleaseDate().isAfter(releasedTo))
+                && (titlePrefix == null || m.getTitle().startsWith(titlePrefix));
+    }
+
+    /**
+     * @return whether rented or available Movies are retrieved, <code>null</code> for both.
+     */
+    public Boolean getRented() {
+        return rented;
+    }
+
+    /**
+     * @return the lowest age rating, <code>null</code> for no lower bound.
+     */
+    public Integer getMinAgeRating() {
+        return minAgeRating;
+    }
+
+    /**
+     * @return the highest age rating, <code>null</code> for no upper bound.
+     */
+    public Integer getMaxAgeRating() {
+        return maxAgeRating;
+    }
+
+    /**
+     * @return the earliest release date, <code>null</code> for no lower bound.
+     */
+    public LocalDate getReleasedFrom() {
+        return releasedFrom;
+    }
+
+    /**
+     * @return the latest release date, <code>null</code> for no upper bound.
+     */
+    public LocalDate getReleasedTo() {
+        return releasedTo;
+    }
+
+    /**
+     * @return the beginning of the titles, <code>null</code> for any title.
+     */
+    public String getTitlePrefix() {
+        return titlePrefix;
+    }
+
+    /**
+     * @return the property the Movies are ordered by.
+     */
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * @return whether the order is reversed.
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * @return the maximum number of Movies.
+     */
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,61 @@
+package ch.fhnw.swc.mrs.api;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * One page of an ordered collection together with the cursor to fetch the next page.
+ *
+ * @param <T> the type of the elements.
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final Long nextCursor;
+
+    /**
+     * @param items the elements on this page.
+     * @param nextCursor the cursor of the next page or <code>null</code> if this is the last page.
+     */
+    public Page(List<T> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Build a page from the elements fetched for a request. Fetch one element more than the request's
+     * limit: its presence tells whether there is a next page.
+     *
+     * @param <T> the type of the elements.
+     * @param fetched up to limit + 1 elements, ordered by id. Will be truncated to the limit.
+     * @param request the request the elements were fetched for.
+     * @param idOf function to get the id of an element.
+     * @return the page.
+     */
+    public static <T> Page<T> of(List<T> fetched, PageRequest request, ToLongFunction<T> idOf) {
+        int limit = request.getLimit();
+        if (fetched.size() <= limit) {
+            return new Page<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        long next = request.isKeyset()
+                ? idOf.applyAsLong(items.get(limit - 1))
+                : (long) request.getOffset() + limit;
+        return new Page<>(items, next);
+    }
+
+    /**
+     * @return the elements on this page.
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return for keyset requests the id to pass as <code>after</code>, for offset requests the
+     *         <code>offset</code> of the next page; <code>null</code> if this is the last page.
+     */
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+}
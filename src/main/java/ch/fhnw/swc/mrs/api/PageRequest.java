@@ -0,0 +1,83 @@
+package ch.fhnw.swc.mrs.api;
+
+/**
+ * Describes which part of an ordered collection to retrieve. Collections are ordered by id. A page
+ * either starts after a given id (keyset pagination) or skips a number of elements (offset
+ * pagination). Keyset pagination is cheaper for deep pages because nothing has to be skipped.
+ */
+public final class PageRequest {
+
+    /** Maximum number of elements on one page. */
+    public static final int MAX_LIMIT = 1000;
+    /** Number of elements on one page if none is given. */
+    public static final int DEFAULT_LIMIT = 50;
+
+    private final long afterId;
+    private final int offset;
+    private final int limit;
+    private final boolean keyset;
+
+    private PageRequest(long afterId, int offset, int limit, boolean keyset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must not be negative");
+        }
+        this.afterId = afterId;
+        this.offset = offset;
+        this.limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        this.keyset = keyset;
+    }
+
+    /**
+     * @param limit maximum number of elements, at most {@link #MAX_LIMIT}.
+     * @return a request for the first page.
+     */
+    public static PageRequest first(int limit) {
+        return new PageRequest(Long.MIN_VALUE, 0, limit, true);
+    }
+
+    /**
+     * @param afterId the id of the last element of the previous page.
+     * @param limit maximum number of elements, at most {@link #MAX_LIMIT}.
+     * @return a request for the elements with an id greater than afterId.
+     */
+    public static PageRequest after(long afterId, int limit) {
+        return new PageRequest(afterId, 0, limit, true);
+    }
+
+    /**
+     * @param offset the number of elements to skip.
+     * @param limit maximum number of elements, at most {@link #MAX_LIMIT}.
+     * @return a request for the elements following the first offset elements.
+     */
+    public static PageRequest offset(int offset, int limit) {
+        return new PageRequest(Long.MIN_VALUE, offset, limit, false);
+    }
+
+    /**
+     * @return whether the page starts after an id rather than at an offset.
+     */
+    public boolean isKeyset() {
+        return keyset;
+    }
+
+    /**
+     * @return the id after which the page starts; {@link Long#MIN_VALUE} for the first page.
+     */
+    public long getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * @return the number of elements to skip.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the maximum number of elements on the page.
+     */
+    public int getLimit() {
+        return limit;
+    }
+}
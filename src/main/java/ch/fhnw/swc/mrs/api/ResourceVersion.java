@@ -0,0 +1,50 @@
+package ch.fhnw.swc.mrs.api;
+
+/**
+ * The version of a resource, i.e. of a single object or of a whole collection. Every change of the
+ * resource gives it a new, greater version number. Clients may use it to find out whether data they
+ * fetched before is still current.
+ */
+public final class ResourceVersion {
+
+    private final long version;
+    private final long lastModified;
+
+    /**
+     * @param version the version number, unique among all versions handed out by a back-end.
+     * @param lastModified the time of the change in milliseconds since the epoch.
+     */
+    public ResourceVersion(long version, long lastModified) {
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return the version number.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the time of the change in milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ResourceVersion && ((ResourceVersion) o).version == version;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(version);
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceVersion[" + version + "]";
+    }
+}
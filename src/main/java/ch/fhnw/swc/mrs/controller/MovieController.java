@@ -2,8 +2,11 @@ package ch.fhnw.swc.mrs.controller;
 
 import static ch.fhnw.swc.mrs.util.JsonUtil.dataToJson;
 import static ch.fhnw.swc.mrs.util.JsonUtil.jsonToData;
+import static ch.fhnw.swc.mrs.util.RequestUtil.getParamMovieQuery;
+import static ch.fhnw.swc.mrs.util.RequestUtil.getParamPage;
 import static ch.fhnw.swc.mrs.util.RequestUtil.getParamRented;
 import static ch.fhnw.swc.mrs.util.RequestUtil.getParamId;
+import static ch.fhnw.swc.mrs.util.ResponseUtil.notModified;
 import static spark.Spark.get;
 import static spark.Spark.post;
 import static spark.Spark.put;
@@ -13,7 +16,8 @@ import static spark.Spark.halt;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.core.JacksonException;
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -25,7 +29,12 @@ import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 import ch.fhnw.swc.mrs.api.MRSServices;
+import ch.fhnw.swc.mrs.api.MovieQuery;
+import ch.fhnw.swc.mrs.api.Page;
+import ch.fhnw.swc.mrs.api.PageRequest;
+import ch.fhnw.swc.mrs.api.ResourceVersion;
 import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
 import ch.fhnw.swc.mrs.util.JsonUtil;
 import ch.fhnw.swc.mrs.util.StatusCodes;
 import spark.Request;
@@ -37,34 +46,84 @@ import spark.Route;
  */
 public final class MovieController {
 
+    /** Number of movies a search returns unless ?limit asks for another number. */
+    public static final int SEARCH_LIMIT = 20;
+
     private static MRSServices backend;
+    private static ResponseCache cache;
 
     private static Route fetchAllMovies = (Request request, Response response) -> {
-        Collection<Movie> movies;
+        ResourceVersion version = backend.getMoviesVersion();
+        if (notModified(request, response, version) || cache.sendCached(request, response, version)) {
+            return "";
+        }
+        MovieQuery query = null;
+        try {
+            query = getParamMovieQuery(request);
+        } catch (IllegalArgumentException e) {
+            halt(StatusCodes.BAD_REQUEST, e.getMessage());
+        }
+        if (query != null) {
+            List<Movie> movies = backend.findMovies(query);
+            return cache.send(request, response, version, out -> JsonUtil.writeJsonArray(out, movies.iterator()));
+        }
         String rented = getParamRented(request);
-        if (rented != null && !rented.isEmpty()) {
-            movies = backend.getAllMovies("true".equals(rented));
-        } else {
-            movies = backend.getAllMovies();
+        boolean filtered = rented != null && !rented.isEmpty();
+        PageRequest page = null;
+        try {
+            page = getParamPage(request);
+        } catch (IllegalArgumentException e) {
+            halt(StatusCodes.BAD_REQUEST, e.getMessage());
+        }
+        if (page != null) {
+            Page<Movie> movies = filtered ? backend.getMovies("true".equals(rented), page) : backend.getMovies(page);
+            return cache.send(request, response, version, out -> JsonUtil.writeJson(out, movies));
+        }
+        try (Stream<Movie> movies = filtered ? backend.streamMovies("true".equals(rented)) : backend.streamMovies()) {
+            return cache.send(request, response, version, out -> JsonUtil.writeJsonArray(out, movies.iterator()));
         }
-        return dataToJson(movies);
+    };
+
+    private static Route searchMovies = (Request request, Response response) -> {
+        String query = request.queryParams("q");
+        if (query == null || query.isBlank()) {
+            halt(StatusCodes.BAD_REQUEST, "query parameter q missing");
+        }
+        int limit = SEARCH_LIMIT;
+        String max = request.queryParams("limit");
+        if (max != null) {
+            try {
+                limit = Math.max(1, Math.min(Integer.parseInt(max), PageRequest.MAX_LIMIT));
+            } catch (NumberFormatException e) {
+                halt(StatusCodes.BAD_REQUEST, "illegal limit");
+            }
+        }
+        ResourceVersion version = backend.getMoviesVersion();
+        if (notModified(request, response, version) || cache.sendCached(request, response, version)) {
+            return "";
+        }
+        List<Movie> movies = backend.searchMovies(query, limit);
+        return cache.send(request, response, version, out -> JsonUtil.writeJsonArray(out, movies.iterator()));
     };
 
     private static Route fetchOneMovie = (Request request, Response response) -> {
         long id = getParamId(request);
+        ResourceVersion version = backend.getMovieVersion(id);
+        if (notModified(request, response, version) || cache.sendCached(request, response, version)) {
+            return "";
+        }
         Movie m = backend.getMovieById(id);
-        String body = "";
         if (m == null) {
             response.status(StatusCodes.NOT_FOUND);
-        } else {
-            response.status(StatusCodes.OK);
-            body = dataToJson(m);
+            return "";
         }
-        return body;
+        response.status(StatusCodes.OK);
+        return cache.send(request, response, version, out -> JsonUtil.writeJson(out, m));
     };
 
     private static Route deleteMovie = (Request request, Response response) -> {
         long id = getParamId(request);
+        cache.invalidate("/movies");
         if (backend.deleteMovie(id)) {
             response.status(StatusCodes.NO_CONTENT);
         } else {
@@ -81,7 +140,9 @@ public final class MovieController {
         try {
             Movie m = backend.createMovie(newMovie.getTitle(), 
                     newMovie.getReleaseDate(), 
-                    newMovie.getAgeRating());
+                    newMovie.getAgeRating(),
+                    newMovie.getPriceCategory());
+            cache.invalidate("/movies");
             body = dataToJson(m);
             response.status(StatusCodes.CREATED);
         } catch (Exception e) {
@@ -97,6 +158,7 @@ public final class MovieController {
         if (id != m.getMovieid()) {
             halt(StatusCodes.BAD_REQUEST, "request id does not correspond with movie id");
         }
+        cache.invalidate("/movies");
         if (!backend.updateMovie(m)) {
             halt(StatusCodes.BAD_REQUEST, "update could not be processed.");
         }
@@ -109,15 +171,28 @@ public final class MovieController {
      * @param services the back-end component.
      */
     public static void init(MRSServices services) {
+        init(services, new ResponseCache(ResponseCache.DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * Initialize MovieController by registering back-end, response cache and routes.
+     * 
+     * @param services the back-end component.
+     * @param responseCache the cache for serialized responses, may be shared with other controllers.
+     */
+    public static void init(MRSServices services, ResponseCache responseCache) {
         if (services == null) {
             throw new IllegalArgumentException("Backend component missing");
         }
         backend = services;
+        cache = responseCache;
         JsonUtil.registerSerializer(new MovieSerializer());
         JsonUtil.registerDeserializer(Movie.class, new MovieDeserializer());
         
 
         get("/movies", MovieController.fetchAllMovies);
+        // before /movies/:id, which would take "search" for an id
+        get("/movies/search", MovieController.searchMovies);
         get("/movies/:id", MovieController.fetchOneMovie);
         delete("/movies/:id", MovieController.deleteMovie);
         post("/movies", MovieController.createMovie);
@@ -132,7 +207,7 @@ public final class MovieController {
      * Helper class to serialize the Movie Object to json
      */
     @SuppressWarnings("serial")
-    private static class MovieSerializer extends StdSerializer<Movie> {
+    static class MovieSerializer extends StdSerializer<Movie> {
 
         MovieSerializer() {
             super(Movie.class);
@@ -146,6 +221,7 @@ public final class MovieController {
             jgen.writeStringField("title", m.getTitle());
             jgen.writeStringField("releaseDate", m.getReleaseDate().format(DateTimeFormatter.ISO_DATE));
             jgen.writeNumberField("ageRating", m.getAgeRating());
+            jgen.writeStringField("priceCategory", m.getPriceCategory().getName());
             jgen.writeEndObject();
         }
     }
@@ -173,6 +249,11 @@ public final class MovieController {
             LocalDate releaseDate = LocalDate.parse(released, DateTimeFormatter.ISO_DATE);
             int ageRating = node.get("ageRating").asInt();
             Movie m = new Movie(title, releaseDate, ageRating);
+            // optional, movies without are of the default price category
+            JsonNode priceCategory = node.get("priceCategory");
+            if (priceCategory != null && !priceCategory.isNull()) {
+                m.setPriceCategory(PriceCategory.getByName(priceCategory.asText()));
+            }
             m.setMovieId(node.get("id").asLong());
             return m;
         }
@@ -0,0 +1,236 @@
+package ch.fhnw.swc.mrs.controller;
+
+import static ch.fhnw.swc.mrs.util.JsonUtil.dataToJson;
+import static ch.fhnw.swc.mrs.util.JsonUtil.jsonToData;
+import static ch.fhnw.swc.mrs.util.RequestUtil.getParamId;
+import static ch.fhnw.swc.mrs.util.RequestUtil.getParamPage;
+import static spark.Spark.delete;
+import static spark.Spark.get;
+import static spark.Spark.halt;
+import static spark.Spark.post;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import ch.fhnw.swc.mrs.api.MRSServices;
+import ch.fhnw.swc.mrs.api.MovieRentalException;
+import ch.fhnw.swc.mrs.api.PageRequest;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.util.JsonUtil;
+import ch.fhnw.swc.mrs.util.StatusCodes;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * Java Spark controller class to control rental related routes.
+ */
+public final class RentalController {
+
+    private static MRSServices backend;
+    private static ResponseCache cache;
+
+    private static Route fetchAllRentals = (Request request, Response response) -> {
+        PageRequest page = null;
+        try {
+            page = getParamPage(request);
+        } catch (IllegalArgumentException e) {
+            halt(StatusCodes.BAD_REQUEST, e.getMessage());
+        }
+        if (page != null) {
+            return dataToJson(backend.getRentals(page));
+        }
+        return dataToJson(backend.getAllRentals());
+    };
+
+    private static Route fetchRentalsOfUser = (Request request, Response response) -> {
+        List<Rental> rentals = backend.getRentalsByUser(getParamId(request));
+        if (rentals == null) {
+            response.status(StatusCodes.NOT_FOUND);
+            return "";
+        }
+        return dataToJson(rentals);
+    };
+
+    private static Route fetchRentableMovies = (Request request, Response response) -> {
+        List<Movie> movies = backend.getRentableMovies(getParamId(request));
+        if (movies == null) {
+            response.status(StatusCodes.NOT_FOUND);
+            return "";
+        }
+        return dataToJson(movies);
+    };
+
+    private static Route createRental = (Request request, Response response) -> {
+        JsonNode body = parseBody(request);
+        long userId = getId(body, "userId");
+        long movieId = getId(body, "movieId");
+        Rental r = null;
+        try {
+            r = backend.createRental(userId, movieId, getRentalDate(body));
+        } catch (MovieRentalException e) {
+            halt(StatusCodes.CONFLICT, e.getMessage());
+        }
+        if (r == null) {
+            halt(StatusCodes.CONFLICT, "movie could not be rented");
+        }
+        cache.invalidate("/movies");
+        response.status(StatusCodes.CREATED);
+        return dataToJson(r);
+    };
+
+    private static Route deleteRental = (Request request, Response response) -> {
+        long id = getParamId(request);
+        if (backend.deleteRental(id)) {
+            cache.invalidate("/movies");
+            response.status(StatusCodes.NO_CONTENT);
+        } else {
+            response.status(StatusCodes.NOT_FOUND);
+        }
+        return "";
+    };
+
+    private static Route rentMovies = (Request request, Response response) -> {
+        JsonNode body = parseBody(request);
+        long userId = getId(body, "userId");
+        List<Long> movieIds = getIds(body, "movieIds");
+        List<Rental> rentals = null;
+        try {
+            rentals = backend.createRentals(userId, movieIds, getRentalDate(body));
+        } catch (MovieRentalException e) {
+            halt(StatusCodes.CONFLICT, e.getMessage());
+        }
+        if (rentals == null) {
+            halt(StatusCodes.CONFLICT, "movies could not be rented");
+        }
+        cache.invalidate("/movies");
+        response.status(StatusCodes.CREATED);
+        return dataToJson(rentals);
+    };
+
+    private static Route returnRentals = (Request request, Response response) -> {
+        List<Long> rentalIds = getIds(parseBody(request), "rentalIds");
+        if (!backend.deleteRentals(rentalIds)) {
+            halt(StatusCodes.NOT_FOUND, "rentals not found");
+        }
+        cache.invalidate("/movies");
+        response.status(StatusCodes.NO_CONTENT);
+        return "";
+    };
+
+    private static JsonNode parseBody(Request request) {
+        try {
+            JsonNode body = (JsonNode) jsonToData(request.body(), JsonNode.class);
+            if (body != null && body.isObject()) {
+                return body;
+            }
+        } catch (RuntimeException e) {
+            // answered below
+        }
+        throw halt(StatusCodes.BAD_REQUEST, "JSON object expected");
+    }
+
+    private static long getId(JsonNode body, String field) {
+        JsonNode id = body.get(field);
+        if (id == null || !id.canConvertToLong()) {
+            throw halt(StatusCodes.BAD_REQUEST, field + " missing");
+        }
+        return id.asLong();
+    }
+
+    /**
+     * @return the rentalDate of the body, today if there is none.
+     */
+    private static LocalDate getRentalDate(JsonNode body) {
+        if (!body.hasNonNull("rentalDate")) {
+            return LocalDate.now();
+        }
+        try {
+            return LocalDate.parse(body.get("rentalDate").asText());
+        } catch (DateTimeParseException e) {
+            throw halt(StatusCodes.BAD_REQUEST, "illegal rentalDate");
+        }
+    }
+
+    private static List<Long> getIds(JsonNode body, String field) {
+        JsonNode array = body.get(field);
+        if (array == null || !array.isArray()) {
+            throw halt(StatusCodes.BAD_REQUEST, field + " missing");
+        }
+        List<Long> ids = new ArrayList<>(array.size());
+        for (JsonNode id : array) {
+            if (!id.canConvertToLong()) {
+                throw halt(StatusCodes.BAD_REQUEST, "illegal id in " + field);
+            }
+            ids.add(id.asLong());
+        }
+        return ids;
+    }
+
+    /**
+     * Initialize RentalController by registering back-end and routes.
+     *
+     * @param services the back-end component.
+     */
+    public static void init(MRSServices services) {
+        init(services, new ResponseCache(ResponseCache.DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * Initialize RentalController by registering back-end, response cache and routes.
+     *
+     * @param services the back-end component.
+     * @param responseCache the cache for serialized responses, may be shared with other controllers.
+     */
+    public static void init(MRSServices services, ResponseCache responseCache) {
+        if (services == null) {
+            throw new IllegalArgumentException("Backend component missing");
+        }
+        backend = services;
+        cache = responseCache;
+        JsonUtil.registerSerializer(new RentalSerializer());
+
+        get("/rentals", RentalController.fetchAllRentals);
+        post("/rentals", RentalController.createRental);
+        delete("/rentals/:id", RentalController.deleteRental);
+        get("/users/:id/rentals", RentalController.fetchRentalsOfUser);
+        get("/users/:id/rentable-movies", RentalController.fetchRentableMovies);
+        post("/rentals/batch", RentalController.rentMovies);
+        post("/rentals/batch/return", RentalController.returnRentals);
+    }
+
+    // prevent instantiation
+    private RentalController() {
+    }
+
+    /**
+     * Helper class to serialize the Rental Object to json
+     */
+    @SuppressWarnings("serial")
+    static class RentalSerializer extends StdSerializer<Rental> {
+
+        RentalSerializer() {
+            super(Rental.class);
+        }
+
+        @Override
+        public void serialize(Rental r, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeStartObject();
+            jgen.writeNumberField("id", r.getRentalId());
+            jgen.writeNumberField("userId", r.getUser().getUserid());
+            jgen.writeNumberField("movieId", r.getMovie().getMovieid());
+            jgen.writeStringField("rentalDate", r.getRentalDate().format(DateTimeFormatter.ISO_DATE));
+            jgen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package ch.fhnw.swc.mrs.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+import ch.fhnw.swc.mrs.api.ResourceVersion;
+import ch.fhnw.swc.mrs.util.ResponseUtil;
+import spark.Request;
+import spark.Response;
+
+/**
+ * A cache of serialized JSON responses, keyed by path and query parameters. It is bounded by the total
+ * number of bytes cached and evicts the least recently used responses first.
+ * <p>
+ * Each response is cached together with the version of the resource it was built from. A cached
+ * response is only sent while that version is still current, so changes made through any way, including
+ * renting and returning, invalidate exactly the responses they affect. Routes that change data also
+ * remove the responses below their path right away, which frees the memory without waiting for
+ * eviction.
+ * <p>
+ * Responses are cached while they are streamed to the client: a copy of the uncompressed body is kept
+ * as long as it does not exceed the size limit of a single response.
+ */
+public final class ResponseCache {
+
+    /** Default maximal number of bytes cached. */
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Writes a JSON body to a stream and closes the stream.
+     */
+    @FunctionalInterface
+    public interface JsonBody {
+        /**
+         * @param out the stream to write to.
+         * @throws IOException if writing fails.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxBytes the maximal number of bytes cached. A single response is cached only if it takes
+     *            no more than an eighth of it.
+     */
+    public ResponseCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("cache size must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = (int) Math.min(Integer.MAX_VALUE - 8, maxBytes / 8);
+    }
+
+    /**
+     * Send the cached response for the request, if there is one for the current version.
+     *
+     * @param request the request to answer.
+     * @param response the response to write to.
+     * @param version the current version of the requested resource.
+     * @return whether the response has been sent from the cache.
+     * @throws IOException if writing the response fails.
+     */
+    public boolean sendCached(Request request, Response response, ResourceVersion version) throws IOException {
+        byte[] body = get(key(request), version);
+        if (body == null) {
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        try (OutputStream out = ResponseUtil.openJson(request, response)) {
+            out.write(body);
+        }
+        return true;
+    }
+
+    /**
+     * Send a response and cache it for further requests with the same version.
+     *
+     * @param request the request to answer.
+     * @param response the response to write to.
+     * @param version the version of the resource that is sent. Read it before the data.
+     * @param body writes the JSON body.
+     * @return an empty String to be returned by the route.
+     * @throws IOException if writing the response fails.
+     */
+    public String send(Request request, Response response, ResourceVersion version, JsonBody body)
+            throws IOException {
+        RecordingOutputStream out = new RecordingOutputStream(ResponseUtil.openJson(request, response));
+        body.writeTo(out);
+        out.close();
+        byte[] recorded = out.recorded();
+        if (recorded != null) {
+            put(key(request), version, recorded);
+        }
+        return "";
+    }
+
+    /**
+     * Remove all cached responses whose path starts with the given prefix.
+     *
+     * @param pathPrefix the path of the changed resources, e.g. <code>/movies</code>.
+     */
+    public synchronized void invalidate(String pathPrefix) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getKey().startsWith(pathPrefix)) {
+                bytes -= e.getValue().body.length;
+                it.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * @return the number of requests answered from the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of requests that could not be answered from the cache.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of responses removed to make room for others.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the number of responses removed because their resource changed.
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return the number of bytes currently cached.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private synchronized byte[] get(String key, ResourceVersion version) {
+        Entry e = entries.get(key);
+        if (e == null) {
+            return null;
+        }
+        if (!e.version.equals(version)) {
+            entries.remove(key);
+            bytes -= e.body.length;
+            invalidations.increment();
+            return null;
+        }
+        return e.body;
+    }
+
+    private synchronized void put(String key, ResourceVersion version, byte[] body) {
+        Entry old = entries.get(key);
+        if (old != null) {
+            // a concurrent request may have cached a newer version meanwhile
+            if (old.version.getVersion() > version.getVersion()) {
+                return;
+            }
+            bytes -= old.body.length;
+        }
+        entries.put(key, new Entry(version, body));
+        bytes += body.length;
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().body.length;
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * @return the path and the query parameters ordered by name.
+     */
+    private static String key(Request request) {
+        StringBuilder key = new StringBuilder(request.pathInfo());
+        char separator = '?';
+        for (String name : new TreeSet<>(request.queryParams())) {
+            for (String value : request.queryParamsValues(name)) {
+                key.append(separator).append(name).append('=').append(value);
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    /** A cached response. */
+    private static final class Entry {
+        private final ResourceVersion version;
+        private final byte[] body;
+
+        Entry(ResourceVersion version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Passes all output on and keeps a copy as long as it fits into one cache entry.
+     */
+    private final class RecordingOutputStream extends FilterOutputStream {
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        RecordingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            record(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            record(b, off, len);
+        }
+
+        private void record(byte[] b, int off, int len) {
+            if (copy != null) {
+                if (copy.size() + len > maxEntryBytes) {
+                    copy = null;
+                } else {
+                    copy.write(b, off, len);
+                }
+            }
+        }
+
+        byte[] recorded() {
+            return copy == null ? null : copy.toByteArray();
+        }
+    }
+}
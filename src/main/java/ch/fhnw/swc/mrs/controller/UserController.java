@@ -3,7 +3,9 @@ package ch.fhnw.swc.mrs.controller;
 import static ch.fhnw.swc.mrs.util.JsonUtil.dataToJson;
 import static ch.fhnw.swc.mrs.util.JsonUtil.jsonToData;
 import static ch.fhnw.swc.mrs.util.RequestUtil.getParamName;
+import static ch.fhnw.swc.mrs.util.RequestUtil.getParamPage;
 import static ch.fhnw.swc.mrs.util.RequestUtil.getParamId;
+import static ch.fhnw.swc.mrs.util.ResponseUtil.notModified;
 
 import static spark.Spark.delete;
 import static spark.Spark.get;
@@ -14,8 +16,9 @@ import static spark.Spark.halt;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.core.JacksonException;
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -27,6 +30,9 @@ import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 
 import ch.fhnw.swc.mrs.api.MRSServices;
+import ch.fhnw.swc.mrs.api.Page;
+import ch.fhnw.swc.mrs.api.PageRequest;
+import ch.fhnw.swc.mrs.api.ResourceVersion;
 import ch.fhnw.swc.mrs.model.User;
 import ch.fhnw.swc.mrs.util.JsonUtil;
 import ch.fhnw.swc.mrs.util.StatusCodes;
@@ -41,34 +47,50 @@ import spark.Route;
 public final class UserController {
 
     private static MRSServices backend;
+    private static ResponseCache cache;
 
     private static Route fetchAllUsers = (Request request, Response response) -> {
-        Collection<User> users;
+        ResourceVersion version = backend.getUsersVersion();
+        if (notModified(request, response, version) || cache.sendCached(request, response, version)) {
+            return "";
+        }
         String name = getParamName(request);
+        PageRequest page = null;
+        try {
+            page = getParamPage(request);
+        } catch (IllegalArgumentException e) {
+            halt(StatusCodes.BAD_REQUEST, e.getMessage());
+        }
         if (name != null && !name.isEmpty()) {
-            users = new ArrayList<User>(1);
-            users.add(backend.getUserByName(name));
-        } else {
-            users = backend.getAllUsers();
+            List<User> users = Collections.singletonList(backend.getUserByName(name));
+            return cache.send(request, response, version, out -> JsonUtil.writeJson(out, users));
+        } else if (page != null) {
+            Page<User> users = backend.getUsers(page);
+            return cache.send(request, response, version, out -> JsonUtil.writeJson(out, users));
+        }
+        try (Stream<User> users = backend.streamUsers()) {
+            return cache.send(request, response, version, out -> JsonUtil.writeJsonArray(out, users.iterator()));
         }
-        return dataToJson(users);
     };
 
     private static Route fetchOneUser = (Request request, Response response) -> {
         long id = getParamId(request);
+        ResourceVersion version = backend.getUserVersion(id);
+        if (notModified(request, response, version) || cache.sendCached(request, response, version)) {
+            return "";
+        }
         User u = backend.getUserById(id);
-        String body = "";
         if (u == null) {
             response.status(StatusCodes.NOT_FOUND);
-        } else {
-            response.status(StatusCodes.OK);
-            body = dataToJson(u);
+            return "";
         }
-        return body;
+        response.status(StatusCodes.OK);
+        return cache.send(request, response, version, out -> JsonUtil.writeJson(out, u));
     };
 
     private static Route deleteUser = (Request request, Response response) -> {
         long id = getParamId(request);
+        cache.invalidate("/users");
         if (backend.deleteUser(id)) {
             response.status(StatusCodes.NO_CONTENT);
         } else {
@@ -85,6 +107,7 @@ public final class UserController {
         String body = "";
         try {
             User u = backend.createUser(newUser.getName(), newUser.getFirstName(), newUser.getBirthdate());
+            cache.invalidate("/users");
             body = dataToJson(u);
             response.status(StatusCodes.CREATED);
         } catch (Exception e) {
@@ -104,6 +127,7 @@ public final class UserController {
         if (id != u.getUserid()) {
             halt(StatusCodes.BAD_REQUEST, "request id does not correspond with user id");
         }
+        cache.invalidate("/users");
         if (!backend.updateUser(u)) {
             halt(StatusCodes.BAD_REQUEST, "update could not be processed.");
         }
@@ -116,10 +140,21 @@ public final class UserController {
      * @param services the back-end component.
      */
     public static void init(MRSServices services) {
+        init(services, new ResponseCache(ResponseCache.DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * Initialize UserController by registering back-end, response cache and routes.
+     * 
+     * @param services the back-end component.
+     * @param responseCache the cache for serialized responses, may be shared with other controllers.
+     */
+    public static void init(MRSServices services, ResponseCache responseCache) {
         if (services == null) {
             throw new IllegalArgumentException("Backend component missing");
         }
         backend = services;
+        cache = responseCache;
         JsonUtil.registerSerializer(new UserSerializer());
         JsonUtil.registerDeserializer(User.class, new UserDeserializer());
 
@@ -138,7 +173,7 @@ public final class UserController {
      * Helper class to serialize the User Object to json
      */
     @SuppressWarnings("serial")
-    private static class UserSerializer extends StdSerializer<User> {
+    static class UserSerializer extends StdSerializer<User> {
 
         UserSerializer() {
             super(User.class);
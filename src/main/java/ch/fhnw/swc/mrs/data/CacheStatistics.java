@@ -0,0 +1,107 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * A snapshot of the figures of the second-level and query cache of a {@link DbMRSServices}, in total
+ * and per cache region. The figures count from the start of the facade.
+ */
+public final class CacheStatistics {
+
+    private final Figures entities;
+    private final Figures queries;
+    private final Map<String, Figures> regions = new TreeMap<>();
+
+    CacheStatistics(Statistics stats) {
+        entities = new Figures(stats.getSecondLevelCacheHitCount(), stats.getSecondLevelCacheMissCount(),
+                stats.getSecondLevelCachePutCount());
+        queries = new Figures(stats.getQueryCacheHitCount(), stats.getQueryCacheMissCount(),
+                stats.getQueryCachePutCount());
+        for (String name : stats.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = stats.getCacheRegionStatistics(name);
+            if (region != null) {
+                regions.put(name, new Figures(region.getHitCount(), region.getMissCount(), region.getPutCount()));
+            }
+        }
+    }
+
+    /**
+     * @return the figures of the entity and collection regions together.
+     */
+    public Figures getEntities() {
+        return entities;
+    }
+
+    /**
+     * @return the figures of the query cache.
+     */
+    public Figures getQueries() {
+        return queries;
+    }
+
+    /**
+     * @return the figures of each cache region by region name.
+     */
+    public Map<String, Figures> getRegions() {
+        return Collections.unmodifiableMap(regions);
+    }
+
+    @Override
+    public String toString() {
+        return "entities " + entities + ", queries " + queries + ", regions " + regions;
+    }
+
+    /**
+     * Hits, misses and puts of a cache.
+     */
+    public static final class Figures {
+        private final long hits;
+        private final long misses;
+        private final long puts;
+
+        Figures(long hits, long misses, long puts) {
+            this.hits = hits;
+            this.misses = misses;
+            this.puts = puts;
+        }
+
+        /**
+         * @return number of lookups answered by the cache.
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return number of lookups that went to the database.
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return number of entries put into the cache.
+         */
+        public long getPuts() {
+            return puts;
+        }
+
+        /**
+         * @return the share of lookups answered by the cache, 0 if there were none.
+         */
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses, %d puts (%.1f%%)", hits, misses, puts, getHitRatio() * 100);
+        }
+    }
+}
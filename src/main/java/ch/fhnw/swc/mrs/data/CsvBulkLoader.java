@@ -0,0 +1,380 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Loads the catalogue tables from CSV files. The CSV file is streamed record by record, so files of any
+ * size can be loaded. Records are inserted with JDBC batches and committed in chunks. On PostgreSQL each
+ * chunk is sent with <code>COPY FROM STDIN</code> instead, which is considerably faster.
+ * <p>
+ * A record that cannot be parsed or that the database refuses, e.g. because of a duplicate key, is
+ * rejected and reported in the {@link Result}; the rest of the file is loaded nonetheless. To find the
+ * rejected records of a failed batch, the batch is rolled back and its records are inserted once more
+ * one by one.
+ */
+public final class CsvBulkLoader {
+
+    /** Default number of records sent to the database at once. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    /** Default number of records committed at once. */
+    public static final int DEFAULT_COMMIT_INTERVAL = 10000;
+
+    /** Logger used to produce logs. */
+    private static Logger log = LogManager.getLogger(CsvBulkLoader.class);
+
+    /**
+     * The tables that can be loaded, together with the layout of their CSV files. Ids in the files are
+     * positive and are stored negated, so they never collide with the ids generated by the database.
+     */
+    public enum Table {
+        /** Movies with columns ID, Title, ReleaseDate and AgeRating. */
+        MOVIES("movies", new String[] {"MovieId", "Title", "Rented", "ReleaseDate", "AgeRating"},
+                new String[] {"ID", "Title", "ReleaseDate", "AgeRating"}) {
+            @Override
+            Object[] values(CSVRecord r) {
+                return new Object[] {id(r.get("ID")), r.get("Title"), Boolean.FALSE, date(r.get("ReleaseDate")),
+                    Integer.parseInt(r.get("AgeRating"))};
+            }
+        },
+        /** Users with columns ID, Surname, FirstName and Birthdate. */
+        USERS("users", new String[] {"UserId", "Name", "FirstName", "Birthdate"},
+                new String[] {"ID", "Surname", "FirstName", "Birthdate"}) {
+            @Override
+            Object[] values(CSVRecord r) {
+                return new Object[] {id(r.get("ID")), r.get("Surname"), r.get("FirstName"),
+                    date(r.get("Birthdate"))};
+            }
+        },
+        /** Rentals with columns ID, RentalDate, UserID and MovieID. */
+        RENTALS("rentals", new String[] {"RentalId", "MovieId", "UserId", "RentalDate"},
+                new String[] {"ID", "RentalDate", "UserID", "MovieID"}) {
+            @Override
+            Object[] values(CSVRecord r) {
+                return new Object[] {id(r.get("ID")), id(r.get("MovieID")), id(r.get("UserID")),
+                    date(r.get("RentalDate"))};
+            }
+        };
+
+        private final String insert;
+        private final String copy;
+        private final CSVFormat format;
+
+        Table(String name, String[] columns, String[] header) {
+            String list = String.join(", ", columns);
+            this.insert = "INSERT INTO " + name + " (" + list + ") VALUES (?"
+                    + ", ?".repeat(columns.length - 1) + ")";
+            this.copy = "COPY " + name + " (" + list + ") FROM STDIN WITH (FORMAT csv)";
+            this.format = CSVFormat.Builder.create(CSVFormat.EXCEL).setHeader(header).setDelimiter(';')
+                    .setSkipHeaderRecord(true).build();
+        }
+
+        /**
+         * @param r a record of the CSV file.
+         * @return the column values of the row to insert.
+         * @throws IllegalArgumentException if the record is incomplete or a value cannot be parsed.
+         * @throws DateTimeException if a date cannot be parsed.
+         */
+        abstract Object[] values(CSVRecord r);
+
+        private static Long id(String value) {
+            return -Long.parseLong(value);
+        }
+
+        private static Date date(String value) {
+            return Date.valueOf(LocalDate.parse(value));
+        }
+    }
+
+    /**
+     * A record that has not been loaded.
+     */
+    public static final class Rejected {
+        private final long record;
+        private final String reason;
+
+        Rejected(long record, String reason) {
+            this.record = record;
+            this.reason = reason;
+        }
+
+        /**
+         * @return the number of the record in the CSV file, not counting the header.
+         */
+        public long getRecord() {
+            return record;
+        }
+
+        /**
+         * @return why the record has been rejected.
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "record " + record + ": " + reason;
+        }
+    }
+
+    /**
+     * The outcome of a load.
+     */
+    public static final class Result {
+        private final Table table;
+        private final long loaded;
+        private final List<Rejected> rejected;
+        private final long nanos;
+
+        Result(Table table, long loaded, List<Rejected> rejected, long nanos) {
+            this.table = table;
+            this.loaded = loaded;
+            this.rejected = Collections.unmodifiableList(rejected);
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return the number of rows inserted.
+         */
+        public long getLoaded() {
+            return loaded;
+        }
+
+        /**
+         * @return the records that have not been loaded.
+         */
+        public List<Rejected> getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return the time the load took in milliseconds.
+         */
+        public long getMillis() {
+            return nanos / 1_000_000;
+        }
+
+        /**
+         * @return the number of rows inserted per second.
+         */
+        public double getRowsPerSecond() {
+            return nanos == 0 ? 0 : loaded * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d rows loaded, %d rejected in %d ms (%.0f rows/s)", table, loaded,
+                    rejected.size(), getMillis(), getRowsPerSecond());
+        }
+    }
+
+    private final DataSource dataSource;
+    private final int batchSize;
+    private final int commitInterval;
+    private final boolean copyEnabled;
+
+    /**
+     * @param dataSource the database to load into.
+     * @param batchSize the number of records sent to the database at once.
+     * @param commitInterval the number of records committed at once. It is rounded up to a multiple of
+     *            the batch size.
+     * @param copyEnabled whether <code>COPY</code> is used if the database is PostgreSQL.
+     */
+    public CsvBulkLoader(DataSource dataSource, int batchSize, int commitInterval, boolean copyEnabled) {
+        if (batchSize < 1 || commitInterval < 1) {
+            throw new IllegalArgumentException("batch size and commit interval must be positive");
+        }
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        this.commitInterval = (commitInterval + batchSize - 1) / batchSize * batchSize;
+        this.copyEnabled = copyEnabled;
+    }
+
+    /**
+     * @param dataSource the database to load into, with default batch size and commit interval.
+     */
+    public CsvBulkLoader(DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE, DEFAULT_COMMIT_INTERVAL, true);
+    }
+
+    /**
+     * Load a CSV file into a table.
+     *
+     * @param table the table to load.
+     * @param csv the CSV file, semicolon separated and with header line.
+     * @return the number of rows loaded and the rejected records.
+     * @throws IOException if the CSV file cannot be read.
+     * @throws SQLException if the database cannot be accessed.
+     */
+    public Result load(Table table, Reader csv) throws IOException, SQLException {
+        long start = System.nanoTime();
+        long loaded = 0;
+        List<Rejected> rejected = new ArrayList<>();
+        try (Connection con = dataSource.getConnection()) {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try {
+                CopyManager copyManager = copyManager(con);
+                Iterator<CSVRecord> records = table.format.parse(csv).iterator();
+                List<Row> chunk = new ArrayList<>(commitInterval);
+                while (records.hasNext()) {
+                    readChunk(table, records, chunk, rejected);
+                    if (copyManager != null && copy(copyManager, con, table, chunk)) {
+                        loaded += chunk.size();
+                    } else {
+                        loaded += insert(con, table, chunk, rejected);
+                    }
+                    con.commit();
+                    log.debug("{}: {} rows loaded", table, loaded);
+                }
+            } catch (SQLException | IOException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        }
+        Result result = new Result(table, loaded, rejected, System.nanoTime() - start);
+        log.info(result);
+        return result;
+    }
+
+    private CopyManager copyManager(Connection con) throws SQLException {
+        if (copyEnabled && con.isWrapperFor(PGConnection.class)) {
+            return con.unwrap(PGConnection.class).getCopyAPI();
+        }
+        return null;
+    }
+
+    private void readChunk(Table table, Iterator<CSVRecord> records, List<Row> chunk, List<Rejected> rejected) {
+        chunk.clear();
+        while (chunk.size() < commitInterval && records.hasNext()) {
+            CSVRecord r = records.next();
+            try {
+                chunk.add(new Row(r.getRecordNumber(), table.values(r)));
+            } catch (IllegalArgumentException | DateTimeException e) {
+                reject(rejected, r.getRecordNumber(), e.toString());
+            }
+        }
+    }
+
+    /**
+     * Send a chunk with <code>COPY</code>. A single bad row makes <code>COPY</code> fail as a whole; the
+     * chunk is then rolled back so it can be inserted row by row.
+     *
+     * @return whether the chunk has been copied.
+     */
+    private boolean copy(CopyManager copyManager, Connection con, Table table, List<Row> chunk)
+            throws IOException, SQLException {
+        StringBuilder data = new StringBuilder(chunk.size() * 64);
+        try (CSVPrinter printer = new CSVPrinter(data, CSVFormat.DEFAULT)) {
+            for (Row row : chunk) {
+                printer.printRecord(row.values);
+            }
+        }
+        Savepoint savepoint = con.setSavepoint();
+        try {
+            copyManager.copyIn(table.copy, new StringReader(data.toString()));
+            con.releaseSavepoint(savepoint);
+            return true;
+        } catch (SQLException e) {
+            log.debug("COPY failed, inserting rows one by one", e);
+            con.rollback(savepoint);
+            return false;
+        }
+    }
+
+    /**
+     * Insert a chunk in batches.
+     *
+     * @return the number of rows inserted.
+     */
+    private int insert(Connection con, Table table, List<Row> chunk, List<Rejected> rejected)
+            throws SQLException {
+        int inserted = 0;
+        try (PreparedStatement insert = con.prepareStatement(table.insert)) {
+            for (int from = 0; from < chunk.size(); from += batchSize) {
+                List<Row> batch = chunk.subList(from, Math.min(from + batchSize, chunk.size()));
+                Savepoint savepoint = con.setSavepoint();
+                try {
+                    for (Row row : batch) {
+                        row.bind(insert);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                    con.releaseSavepoint(savepoint);
+                    inserted += batch.size();
+                } catch (SQLException e) {
+                    insert.clearBatch();
+                    con.rollback(savepoint);
+                    inserted += insertOneByOne(con, insert, batch, rejected);
+                }
+            }
+        }
+        return inserted;
+    }
+
+    private int insertOneByOne(Connection con, PreparedStatement insert, List<Row> batch, List<Rejected> rejected)
+            throws SQLException {
+        int inserted = 0;
+        for (Row row : batch) {
+            Savepoint savepoint = con.setSavepoint();
+            try {
+                row.bind(insert);
+                insert.executeUpdate();
+                con.releaseSavepoint(savepoint);
+                inserted++;
+            } catch (SQLException e) {
+                con.rollback(savepoint);
+                reject(rejected, row.record, e.getMessage());
+            }
+        }
+        return inserted;
+    }
+
+    private static void reject(List<Rejected> rejected, long record, String reason) {
+        Rejected r = new Rejected(record, reason);
+        log.warn("rejected {}", r);
+        rejected.add(r);
+    }
+
+    /** The parsed values of a record. */
+    private static final class Row {
+        private final long record;
+        private final Object[] values;
+
+        Row(long record, Object[] values) {
+            this.record = record;
+            this.values = values;
+        }
+
+        void bind(PreparedStatement insert) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                insert.setObject(i + 1, values[i]);
+            }
+        }
+    }
+}
@@ -1,10 +1,24 @@
 package ch.fhnw.swc.mrs.data;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.hibernate.SessionFactory;
 
 import ch.fhnw.swc.mrs.api.MRSServices;
+import ch.fhnw.swc.mrs.api.MovieQuery;
+import ch.fhnw.swc.mrs.api.Page;
+import ch.fhnw.swc.mrs.api.PageRequest;
+import ch.fhnw.swc.mrs.api.ResourceVersion;
 import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
 import ch.fhnw.swc.mrs.model.Rental;
 import ch.fhnw.swc.mrs.model.User;
 import jakarta.persistence.EntityManager;
@@ -12,39 +26,131 @@ import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
 
 /**
- * A MRSServices facade for PostresqlDB access
- * 
+ * A MRSServices facade for PostresqlDB access.
+ * <p>
+ * Every service call is a unit of work with its own short-lived EntityManager, so the facade can be
+ * used by several threads at once and no persistence context outlives a call. The objects returned are
+ * detached. Connections are taken from the pool configured in persistence.xml.
+ * <p>
+ * Rentals are read together with their movies and users, and a user together with its rentals, so
+ * the detached objects can be navigated without further statements.
+ * <p>
+ * Movie titles are searched in an index kept in memory. It is built from the database when the facade is
+ * created and follows the movies created, changed and deleted through this facade.
+ * <p>
+ * The versions of movies and users only follow the changes made through this facade.
+ * <p>
+ * Movies, users and rentals as well as the results of the list queries are kept in Hibernate's
+ * second-level cache, which follows every write made through the facade. Whoever writes the tables
+ * around the facade must call {@link #evictCaches()} afterwards.
  */
 public class DbMRSServices implements MRSServices {
 
     private EntityManagerFactory emf;
-    private EntityManager em;
+
+    private final Versions movieVersions = new Versions();
+    private final Versions userVersions = new Versions();
+    private final TitleIndex titles = new TitleIndex();
 
     /**
      * A MRSServices facade for PostresqlDB is initialized according to the passed config.
      */
-    public DbMRSServices() {        
-        emf = Persistence.createEntityManagerFactory("MRS.Production");
-        em = emf.createEntityManager();
+    public DbMRSServices() {
+        this("MRS.Production");
     }
 
-    private MovieDAO getMovieDAO() {
-        return new MovieDAO(em);
+    /**
+     * A MRSServices facade for the database configured by the given persistence unit.
+     *
+     * @param persistenceUnit the name of the persistence unit in persistence.xml.
+     */
+    public DbMRSServices(String persistenceUnit) {
+        emf = Persistence.createEntityManagerFactory(persistenceUnit);
+        try (Stream<Movie> movies = streamMovies()) {
+            movies.forEach(m -> titles.put(m.getMovieid(), m.getTitle()));
+        }
     }
 
-    private UserDAO getUserDAO() {
-        return new UserDAO(em);
+    /**
+     * Release all database resources held by this facade.
+     */
+    public void close() {
+        emf.close();
     }
 
-    private RentalDAO getRentalDAO() {
-        return new RentalDAO(em);
+    /**
+     * @return a snapshot of the hits and misses of the second-level and query cache.
+     */
+    public CacheStatistics getCacheStatistics() {
+        return new CacheStatistics(emf.unwrap(SessionFactory.class).getStatistics());
+    }
+
+    /**
+     * Drop everything from the second-level and query cache, e.g. after the tables were written with
+     * plain JDBC.
+     */
+    public void evictCaches() {
+        emf.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    /**
+     * Run one unit of work with a fresh EntityManager that is closed afterwards.
+     *
+     * @param <T> the type of the result.
+     * @param work the work to do.
+     * @return the result of the work.
+     */
+    private <T> T inUnitOfWork(Function<EntityManager, T> work) {
+        try (EntityManager em = emf.createEntityManager()) {
+            return work.apply(em);
+        }
+    }
+
+    /**
+     * Open a unit of work that lasts as long as the returned stream. The EntityManager and its read-only
+     * transaction (which lets the driver fetch rows with a cursor) end when the stream is closed. Each
+     * object is detached once it has been read, so the persistence context does not grow while
+     * streaming.
+     *
+     * @param <T> the type of the streamed objects.
+     * @param query the query opening the stream.
+     * @return a lazy stream that must be closed after use.
+     */
+    private <T> Stream<T> streamInUnitOfWork(Function<EntityManager, Stream<T>> query) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            return query.apply(em).map(e -> {
+                em.detach(e);
+                return e;
+            }).onClose(() -> {
+                try {
+                    em.getTransaction().rollback();
+                } finally {
+                    em.close();
+                }
+            });
+        } catch (RuntimeException e) {
+            em.close();
+            throw e;
+        }
     }
 
     @Override
     public Movie createMovie(String aTitle, LocalDate aReleaseDate, int anAgeRating) {
+        return createMovie(aTitle, aReleaseDate, anAgeRating, PriceCategory.getDefault());
+    }
+
+    @Override
+    public Movie createMovie(String aTitle, LocalDate aReleaseDate, int anAgeRating, PriceCategory aPriceCategory) {
         try {
-            Movie m = new Movie(aTitle, aReleaseDate, anAgeRating);
-            getMovieDAO().saveOrUpdate(m);
+            Movie m = new Movie(aTitle, aReleaseDate, anAgeRating, aPriceCategory);
+            inUnitOfWork(em -> {
+                new MovieDAO(em).saveOrUpdate(m);
+                return m;
+            });
+            titles.put(m.getMovieid(), m.getTitle());
+            movieVersions.changed(m.getMovieid());
             return m;
         } catch (Exception e) {
             e.printStackTrace();
@@ -54,23 +160,83 @@ public class DbMRSServices implements MRSServices {
 
     @Override
     public List<Movie> getAllMovies() {
-        return getMovieDAO().getAll();
+        return inUnitOfWork(em -> new MovieDAO(em).getAll());
     }
 
     @Override
     public List<Movie> getAllMovies(boolean rented) {
-        return getMovieDAO().getAll(rented);
+        return inUnitOfWork(em -> new MovieDAO(em).getAll(rented));
+    }
+
+    @Override
+    public Stream<Movie> streamMovies() {
+        return streamInUnitOfWork(em -> new MovieDAO(em).streamAll());
+    }
+
+    @Override
+    public Stream<Movie> streamMovies(boolean rented) {
+        return streamInUnitOfWork(em -> new MovieDAO(em).streamAll(rented));
+    }
+
+    @Override
+    public Page<Movie> getMovies(PageRequest page) {
+        return Page.of(inUnitOfWork(em -> new MovieDAO(em).getPage(page)), page, Movie::getMovieid);
+    }
+
+    @Override
+    public Page<Movie> getMovies(boolean rented, PageRequest page) {
+        return Page.of(inUnitOfWork(em -> new MovieDAO(em).getPage(rented, page)), page, Movie::getMovieid);
+    }
+
+    @Override
+    public List<Movie> findMovies(MovieQuery query) {
+        return inUnitOfWork(em -> new MovieDAO(em).find(query));
     }
 
     @Override
     public Movie getMovieById(long id) {
-        return getMovieDAO().getById(id);
+        return inUnitOfWork(em -> new MovieDAO(em).getById(id));
+    }
+
+    @Override
+    public List<Movie> searchMovies(String query, int limit) {
+        List<Long> ids = titles.search(query, limit);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Movie> found = new HashMap<>();
+        for (Movie m : inUnitOfWork(em -> new MovieDAO(em).getByIds(ids))) {
+            found.put(m.getMovieid(), m);
+        }
+        List<Movie> result = new ArrayList<>();
+        for (Long id : ids) {
+            Movie m = found.get(id);
+            if (m != null) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ResourceVersion getMoviesVersion() {
+        return movieVersions.ofAll();
+    }
+
+    @Override
+    public ResourceVersion getMovieVersion(long id) {
+        return movieVersions.of(id);
     }
 
     @Override
     public boolean updateMovie(Movie movie) {
         try {
-            getMovieDAO().saveOrUpdate(movie);
+            inUnitOfWork(em -> {
+                new MovieDAO(em).saveOrUpdate(movie);
+                return movie;
+            });
+            titles.put(movie.getMovieid(), movie.getTitle());
+            movieVersions.changed(movie.getMovieid());
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -81,9 +247,14 @@ public class DbMRSServices implements MRSServices {
     @Override
     public boolean deleteMovie(long id) {
         try {
-            Movie m = getMovieDAO().getById(id);
-            getMovieDAO().delete(m);
-            return true;
+            return inUnitOfWork(em -> {
+                MovieDAO dao = new MovieDAO(em);
+                Movie m = dao.getById(id);
+                dao.delete(m);
+                titles.remove(id);
+                movieVersions.changed(id);
+                return true;
+            });
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -92,17 +263,37 @@ public class DbMRSServices implements MRSServices {
 
     @Override
     public List<User> getAllUsers() {
-        return getUserDAO().getAll();
+        return inUnitOfWork(em -> new UserDAO(em).getAll());
+    }
+
+    @Override
+    public Stream<User> streamUsers() {
+        return streamInUnitOfWork(em -> new UserDAO(em).streamAll());
+    }
+
+    @Override
+    public Page<User> getUsers(PageRequest page) {
+        return Page.of(inUnitOfWork(em -> new UserDAO(em).getPage(page)), page, User::getUserid);
     }
 
     @Override
     public User getUserById(long id) {
-        return getUserDAO().getById(id);
+        return inUnitOfWork(em -> new UserDAO(em).getByIdWithRentals(id));
+    }
+
+    @Override
+    public ResourceVersion getUsersVersion() {
+        return userVersions.ofAll();
+    }
+
+    @Override
+    public ResourceVersion getUserVersion(long id) {
+        return userVersions.of(id);
     }
 
     @Override
     public User getUserByName(String name) {
-        List<User> users = getUserDAO().getByName(name);
+        List<User> users = inUnitOfWork(em -> new UserDAO(em).getByName(name));
         return users.size() == 0 ? null : users.get(0);
     }
 
@@ -110,7 +301,11 @@ public class DbMRSServices implements MRSServices {
     public User createUser(String aName, String aFirstName, LocalDate aBirthdate) {
         try {
             User u = new User(aName, aFirstName, aBirthdate);
-            getUserDAO().saveOrUpdate(u);
+            inUnitOfWork(em -> {
+                new UserDAO(em).saveOrUpdate(u);
+                return u;
+            });
+            userVersions.changed(u.getUserid());
             return u;
         } catch (Exception e) {
             e.printStackTrace();
@@ -121,7 +316,11 @@ public class DbMRSServices implements MRSServices {
     @Override
     public boolean updateUser(User user) {
         try {
-            getUserDAO().saveOrUpdate(user);
+            inUnitOfWork(em -> {
+                new UserDAO(em).saveOrUpdate(user);
+                return user;
+            });
+            userVersions.changed(user.getUserid());
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -132,9 +331,13 @@ public class DbMRSServices implements MRSServices {
     @Override
     public boolean deleteUser(long id) {
         try {
-            User u = getUserDAO().getById(id);
-            getUserDAO().delete(u);
-            return true;
+            return inUnitOfWork(em -> {
+                UserDAO dao = new UserDAO(em);
+                User u = dao.getById(id);
+                dao.delete(u);
+                userVersions.changed(id);
+                return true;
+            });
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -143,34 +346,94 @@ public class DbMRSServices implements MRSServices {
 
     @Override
     public List<Rental> getAllRentals() {
-        return getRentalDAO().getAll();
+        return inUnitOfWork(em -> new RentalDAO(em).getAllWithMovieAndUser());
     }
 
     @Override
-    public Rental createRental(long userId, long movieId, LocalDate d) {
-        // TO-DO: transaction is missing
-        User u = getUserDAO().getById(userId);
-        Movie m = getMovieDAO().getById(movieId);
+    public Page<Rental> getRentals(PageRequest page) {
+        return Page.of(inUnitOfWork(em -> new RentalDAO(em).getPage(page)), page, Rental::getRentalId);
+    }
+
+    @Override
+    public List<Rental> getRentalsByUser(long userId) {
+        return inUnitOfWork(em -> {
+            if (new UserDAO(em).getById(userId) == null) {
+                return null;
+            }
+            return new RentalDAO(em).getRentalsByUser(userId);
+        });
+    }
 
-        if (u != null && m != null && !m.isRented() && !d.isAfter(LocalDate.now())) {
-            Rental r = new Rental(u, m, d);
-            getRentalDAO().save(r);
-            m.setRented(true);
-            getMovieDAO().saveOrUpdate(m);
-            return r;
+    @Override
+    public List<Movie> getRentableMovies(long userId) {
+        return inUnitOfWork(em -> {
+            User u = new UserDAO(em).getById(userId);
+            if (u == null) {
+                return null;
+            }
+            if (u.getRentalCount() >= User.MAX_RENTABLE_MOVIES) {
+                return new ArrayList<>();
+            }
+            return new MovieDAO(em).getRentable(u.getAge());
+        });
+    }
+
+    @Override
+    public Map<Long, Double> getCharges(LocalDate day) {
+        return inUnitOfWork(em -> new RentalDAO(em).getCharges(day));
+    }
+
+    @Override
+    public Rental createRental(long userId, long movieId, LocalDate d) {
+        if (d.isAfter(LocalDate.now())) {
+            return null;
+        }
+        Rental r = inUnitOfWork(em -> new RentalDAO(em).rent(userId, movieId, d));
+        if (r != null) {
+            movieVersions.changed(movieId);
         }
-        return null;
+        return r;
     }
 
     @Override
     public boolean deleteRental(long id) {
-        RentalDAO rdao = getRentalDAO();
-        Rental r = rdao.getById(id);
-        Movie m = r.getMovie();
-        m.setRented(false);
-        getMovieDAO().saveOrUpdate(m);
-        rdao.delete(r);
-        return r != null;
+        // RentalDAO.deleteAll also returns the movie and updates the user, all in one transaction with the
+        // user's row locked
+        List<Rental> removed = inUnitOfWork(em -> new RentalDAO(em).deleteAll(List.of(id)));
+        if (removed == null) {
+            return false;
+        }
+        movieVersions.changed(removed.get(0).getMovie().getMovieid());
+        return true;
+    }
+
+    @Override
+    public List<Rental> createRentals(long userId, List<Long> movieIds, LocalDate d) {
+        if (d.isAfter(LocalDate.now()) || new HashSet<>(movieIds).size() != movieIds.size()) {
+            return null;
+        }
+        if (movieIds.isEmpty()) {
+            return getUserById(userId) == null ? null : new ArrayList<>();
+        }
+        List<Rental> created = inUnitOfWork(em -> new RentalDAO(em).rentAll(userId, movieIds, d));
+        if (created != null) {
+            movieIds.forEach(movieVersions::changed);
+        }
+        return created;
+    }
+
+    @Override
+    public boolean deleteRentals(List<Long> rentalIds) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(rentalIds));
+        if (ids.isEmpty()) {
+            return true;
+        }
+        List<Rental> removed = inUnitOfWork(em -> new RentalDAO(em).deleteAll(ids));
+        if (removed == null) {
+            return false;
+        }
+        removed.forEach(r -> movieVersions.changed(r.getMovie().getMovieid()));
+        return true;
     }
 
     @Override
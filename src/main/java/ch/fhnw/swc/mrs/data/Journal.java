@@ -0,0 +1,471 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
+import ch.fhnw.swc.mrs.model.User;
+
+/**
+ * An append-only journal of the changes to the in-memory back-end. Every change is appended as one
+ * record, framed by its length and a CRC32 checksum, so a record torn by a crash is recognized and
+ * dropped when the journal is replayed.
+ * <p>
+ * Records are written to the file as soon as they are appended, so they survive a crash of the
+ * application. Forcing them to the disk, which makes them survive a crash of the system, is batched:
+ * <ul>
+ * <li>With a positive sync interval, a background thread forces all records appended meanwhile once per
+ * interval. Appending never waits for the disk, at the risk of losing the last interval on power
+ * failure.</li>
+ * <li>With a sync interval of 0, {@link #append} returns only once its record is on disk. Threads
+ * appending at the same time share one force (group commit).</li>
+ * </ul>
+ * On a checkpoint the journal is rotated: the current file is renamed to the file with suffix
+ * <code>.1</code> and a new file is started. The rotated file is deleted once the snapshot covering it
+ * has been written; if that fails, the next checkpoint appends to it. Records are replayed in a way that
+ * gives the same result if they are already contained in the snapshot.
+ */
+final class Journal implements AutoCloseable {
+
+    private static final byte PUT_MOVIE = 1;
+    private static final byte DELETE_MOVIE = 2;
+    private static final byte PUT_USER = 3;
+    private static final byte DELETE_USER = 4;
+    private static final byte CREATE_RENTAL = 5;
+    private static final byte DELETE_RENTAL = 6;
+    private static final byte CLEAR = 7;
+    /** Replaces PUT_MOVIE, which is still read: a movie together with its price category. */
+    private static final byte PUT_PRICED_MOVIE = 8;
+
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    /**
+     * Receives the changes read from a journal.
+     */
+    interface Target {
+        void putMovie(long id, String title, LocalDate releaseDate, int ageRating, PriceCategory priceCategory);
+
+        void deleteMovie(long id);
+
+        void putUser(long id, String name, String firstName, LocalDate birthdate);
+
+        void deleteUser(long id);
+
+        void createRental(long id, long userId, long movieId, LocalDate rentalDate);
+
+        void deleteRental(long id);
+
+        void clear();
+    }
+
+    private final Path file;
+    private final Path rotated;
+    private final long syncIntervalMillis;
+    private final ScheduledExecutorService syncer;
+
+    /** Guards channel and written. */
+    private final Object writeLock = new Object();
+    private FileChannel channel;
+    /** Number of records written so far, over all files. */
+    private long written;
+
+    /** Guards forced and forcing. */
+    private final Object syncLock = new Object();
+    /** Number of records known to be on disk. */
+    private long forced;
+    private boolean forcing;
+
+    /**
+     * Open a journal for appending. Replay it first.
+     *
+     * @param file the journal file, created if it does not exist.
+     * @param syncIntervalMillis the time between two forces to disk, or 0 to force before every append
+     *            returns.
+     * @throws IOException if the file cannot be opened.
+     */
+    Journal(Path file, long syncIntervalMillis) throws IOException {
+        if (syncIntervalMillis < 0) {
+            throw new IllegalArgumentException("sync interval must not be negative");
+        }
+        this.file = file;
+        this.rotated = rotatedFile(file);
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.channel = open(file);
+        if (syncIntervalMillis > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "mrs-journal");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::syncQuietly, syncIntervalMillis, syncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    private static Path rotatedFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".1");
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Replay a journal, including a rotated file left over from an interrupted checkpoint. A torn record
+     * at the end of the journal is cut off.
+     *
+     * @param file the journal file.
+     * @param target receives the changes.
+     * @return the number of records replayed.
+     * @throws IOException if the journal cannot be read.
+     */
+    static long replay(Path file, Target target) throws IOException {
+        return replayFile(rotatedFile(file), target) + replayFile(file, target);
+    }
+
+    private static long replayFile(Path file, Target target) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long records = 0;
+        long valid = 0;
+        try (InputStream fis = Files.newInputStream(file);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(fis, 64 * 1024))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length <= 0 || length > (1 << 20)) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)), target);
+                valid += HEADER_SIZE + payload.length;
+                records++;
+            }
+        }
+        if (valid < Files.size(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(valid);
+            }
+        }
+        return records;
+    }
+
+    private static void apply(DataInputStream in, Target target) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case PUT_MOVIE:
+            target.putMovie(in.readLong(), in.readUTF(), LocalDate.ofEpochDay(in.readLong()), in.readByte(),
+                    PriceCategory.getDefault());
+            break;
+        case PUT_PRICED_MOVIE:
+            target.putMovie(in.readLong(), in.readUTF(), LocalDate.ofEpochDay(in.readLong()), in.readByte(),
+                    readPriceCategory(in));
+            break;
+        case DELETE_MOVIE:
+            target.deleteMovie(in.readLong());
+            break;
+        case PUT_USER:
+            target.putUser(in.readLong(), in.readUTF(), in.readUTF(), LocalDate.ofEpochDay(in.readLong()));
+            break;
+        case DELETE_USER:
+            target.deleteUser(in.readLong());
+            break;
+        case CREATE_RENTAL:
+            target.createRental(in.readLong(), in.readLong(), in.readLong(), LocalDate.ofEpochDay(in.readLong()));
+            break;
+        case DELETE_RENTAL:
+            target.deleteRental(in.readLong());
+            break;
+        case CLEAR:
+            target.clear();
+            break;
+        default:
+            throw new IOException("unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * @param in the stream to read the name of a price category from.
+     * @return the price category.
+     * @throws IOException if the name cannot be read or no such price category is configured.
+     */
+    static PriceCategory readPriceCategory(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        try {
+            return PriceCategory.getByName(name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param m the created or changed movie.
+     * @throws IOException if the record cannot be written.
+     */
+    void putMovie(Movie m) throws IOException {
+        Record r = new Record(PUT_PRICED_MOVIE);
+        r.out.writeLong(m.getMovieid());
+        r.out.writeUTF(m.getTitle());
+        r.out.writeLong(m.getReleaseDate().toEpochDay());
+        r.out.writeByte(m.getAgeRating());
+        r.out.writeUTF(m.getPriceCategory().getName());
+        append(r);
+    }
+
+    /**
+     * @param id the deleted movie.
+     * @throws IOException if the record cannot be written.
+     */
+    void deleteMovie(long id) throws IOException {
+        Record r = new Record(DELETE_MOVIE);
+        r.out.writeLong(id);
+        append(r);
+    }
+
+    /**
+     * @param u the created or changed user.
+     * @throws IOException if the record cannot be written.
+     */
+    void putUser(User u) throws IOException {
+        Record r = new Record(PUT_USER);
+        r.out.writeLong(u.getUserid());
+        r.out.writeUTF(u.getName());
+        r.out.writeUTF(u.getFirstName());
+        r.out.writeLong(u.getBirthdate().toEpochDay());
+        append(r);
+    }
+
+    /**
+     * @param id the deleted user.
+     * @throws IOException if the record cannot be written.
+     */
+    void deleteUser(long id) throws IOException {
+        Record r = new Record(DELETE_USER);
+        r.out.writeLong(id);
+        append(r);
+    }
+
+    /**
+     * @param id the id of the created rental.
+     * @param userId the renting user.
+     * @param movieId the rented movie.
+     * @param rentalDate the day of the rental.
+     * @throws IOException if the record cannot be written.
+     */
+    void createRental(long id, long userId, long movieId, LocalDate rentalDate) throws IOException {
+        Record r = new Record(CREATE_RENTAL);
+        r.out.writeLong(id);
+        r.out.writeLong(userId);
+        r.out.writeLong(movieId);
+        r.out.writeLong(rentalDate.toEpochDay());
+        append(r);
+    }
+
+    /**
+     * @param id the deleted rental.
+     * @throws IOException if the record cannot be written.
+     */
+    void deleteRental(long id) throws IOException {
+        Record r = new Record(DELETE_RENTAL);
+        r.out.writeLong(id);
+        append(r);
+    }
+
+    /**
+     * @throws IOException if the record cannot be written.
+     */
+    void clear() throws IOException {
+        append(new Record(CLEAR));
+    }
+
+    private void append(Record r) throws IOException {
+        ByteBuffer frame = r.frame();
+        long position;
+        synchronized (writeLock) {
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            position = ++written;
+        }
+        if (syncIntervalMillis == 0) {
+            awaitForced(position);
+        }
+    }
+
+    /**
+     * Wait until the given record is on disk. The first thread to find it missing forces all records
+     * written so far; the others wait for it and return at once if their record was among them.
+     */
+    private void awaitForced(long position) throws IOException {
+        synchronized (syncLock) {
+            while (forced < position) {
+                if (!forcing) {
+                    forcing = true;
+                    break;
+                }
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while waiting for the journal", e);
+                }
+            }
+            if (forced >= position) {
+                return;
+            }
+        }
+        try {
+            sync();
+        } finally {
+            synchronized (syncLock) {
+                forcing = false;
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Force all records written so far to disk.
+     *
+     * @throws IOException if forcing fails.
+     */
+    void sync() throws IOException {
+        long position;
+        FileChannel ch;
+        synchronized (writeLock) {
+            position = written;
+            ch = channel;
+        }
+        try {
+            ch.force(false);
+        } catch (ClosedChannelException e) {
+            // rotated meanwhile, which forced the file before closing it
+        }
+        synchronized (syncLock) {
+            forced = Math.max(forced, position);
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            long position = written();
+            synchronized (syncLock) {
+                if (forced >= position) {
+                    return;
+                }
+            }
+            sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private long written() {
+        synchronized (writeLock) {
+            return written;
+        }
+    }
+
+    /**
+     * Start a new journal file for a checkpoint. The records in the rotated file must be contained in
+     * the snapshot written afterwards; then {@link #checkpointDone()} deletes it. A rotated file left by a
+     * failed checkpoint holds records that are in no snapshot yet, so the current file is appended to it.
+     *
+     * @throws IOException if the journal cannot be rotated.
+     */
+    void rotate() throws IOException {
+        synchronized (writeLock) {
+            channel.force(false);
+            channel.close();
+            if (Files.exists(rotated)) {
+                // a crash before the delete replays the appended records twice, which gives the same result
+                try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                        FileChannel out = open(rotated)) {
+                    long size = in.size();
+                    for (long position = 0; position < size;) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                    out.force(false);
+                }
+                Files.delete(file);
+            } else {
+                Files.move(file, rotated, StandardCopyOption.ATOMIC_MOVE);
+            }
+            channel = open(file);
+        }
+    }
+
+    /**
+     * Delete the rotated journal file after the snapshot covering it has been written.
+     *
+     * @throws IOException if it cannot be deleted.
+     */
+    void checkpointDone() throws IOException {
+        Files.deleteIfExists(rotated);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        synchronized (writeLock) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    /** A record being built. */
+    private static final class Record {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Record(byte type) throws IOException {
+            out.writeByte(type);
+        }
+
+        ByteBuffer frame() {
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+            frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+            return frame;
+        }
+    }
+}
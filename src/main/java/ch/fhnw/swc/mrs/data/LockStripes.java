@@ -0,0 +1,62 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of locks shared by all objects of one kind. An object is guarded by the lock its id
+ * hashes to, so operations on different objects run in parallel most of the time without needing one
+ * lock per object.
+ */
+final class LockStripes {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * Create a set of lock stripes.
+     *
+     * @param stripes the number of locks, rounded up to the next power of two.
+     */
+    LockStripes(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * @return a stripe count that fits the number of available processors.
+     */
+    static int defaultStripes() {
+        return Runtime.getRuntime().availableProcessors() * 4;
+    }
+
+    /**
+     * @param id the identification of the object to guard.
+     * @return the lock guarding the object with the given id.
+     */
+    ReentrantLock forId(long id) {
+        return locks[index(id)];
+    }
+
+    /**
+     * @param id the identification of the object to guard.
+     * @return the position of the guarding lock. Locks must always be acquired in ascending order of
+     *         this position when more than one lock of the same stripes is needed.
+     */
+    int index(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * @return all locks, in the order they must be acquired.
+     */
+    List<Lock> all() {
+        return List.of(locks);
+    }
+}
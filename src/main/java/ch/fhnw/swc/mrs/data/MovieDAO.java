@@ -1,24 +1,54 @@
 package ch.fhnw.swc.mrs.data;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
 
 import ch.fhnw.swc.mrs.api.MovieRentalException;
+import ch.fhnw.swc.mrs.api.MovieQuery;
+import ch.fhnw.swc.mrs.api.PageRequest;
 import ch.fhnw.swc.mrs.model.Movie;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
 import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 
 /**
  * Provides CRUD operations for Movie objects to and from the database.
+ * <p>
+ * The results of the list queries are kept in the query cache; pages and streams are not.
  */
 public class MovieDAO {
     /** Query to get all movies. */
     private static final String GET_ALL_MOVIES = "SELECT m FROM Movie m";
     /** Query to get movies by title. */
     private static final String GET_MOVIE_BY_TITLE = "SELECT m FROM Movie m WHERE m.title like :title";
-    /** Query to get rented movies. */
-    private static final String GET_RENTED_MOVIES = "SELECT m FROM Movie m WHERE m.rented = :rented";
+    /**
+     * Query to get rented or available movies. The status is given as literal and not as parameter, so
+     * the database can use the partial index on available movies for prepared statements too.
+     */
+    private static final String GET_RENTED_MOVIES = "SELECT m FROM Movie m WHERE m.rented = %b";
+    /** Query to get the available movies up to an age rating. */
+    private static final String GET_RENTABLE_MOVIES =
+            "SELECT m FROM Movie m WHERE m.rented = false AND m.ageRating <= :age ORDER BY m.id";
+    /** Query to get the movies with the given ids. */
+    private static final String GET_MOVIES_BY_IDS = "SELECT m FROM Movie m WHERE m.id IN :ids";
+    /** Query to get movies following a given id. */
+    private static final String GET_MOVIES_AFTER = "SELECT m FROM Movie m WHERE m.id > :after ORDER BY m.id";
+    /** Query to get rented or available movies following a given id, the status given as literal. */
+    private static final String GET_RENTED_MOVIES_AFTER =
+            "SELECT m FROM Movie m WHERE m.rented = %b AND m.id > :after ORDER BY m.id";
+    /** Escape character of the title prefix in LIKE patterns. */
+    private static final char LIKE_ESCAPE = '\\';
+    /** Number of rows fetched from the database at once when streaming. */
+    private static final int FETCH_SIZE = 256;
 
     private EntityManager em;
 
@@ -41,13 +71,24 @@ public class MovieDAO {
         return em.find(Movie.class, movieid);
     }
 
+    /**
+     * Retrieve movies by their identifications in a single statement.
+     * 
+     * @param movieids the unique identifications of the movies to retrieve.
+     * @return the movies found, in no particular order.
+     */
+    public List<Movie> getByIds(List<Long> movieids) {
+        return em.createQuery(GET_MOVIES_BY_IDS, Movie.class).setParameter("ids", movieids).getResultList();
+    }
+
     /**
      * Retrieve all movies stored in this system.
      * 
      * @return a list of all movies.
      */
     public List<Movie> getAll() {
-        TypedQuery<Movie> query = em.createQuery(GET_ALL_MOVIES, Movie.class);
+        TypedQuery<Movie> query = em.createQuery(GET_ALL_MOVIES, Movie.class)
+                .setHint(HibernateHints.HINT_CACHEABLE, true);
         List<Movie> result = query.getResultList();
         return result;
     }
@@ -59,11 +100,133 @@ public class MovieDAO {
      * @return movies that fulfill the rented status.
      */
     public List<Movie> getAll(boolean rented) {
-        TypedQuery<Movie> query = em.createQuery(GET_RENTED_MOVIES, Movie.class).setParameter("rented", rented);
+        TypedQuery<Movie> query = em.createQuery(GET_RENTED_MOVIES.formatted(rented), Movie.class)
+                .setHint(HibernateHints.HINT_CACHEABLE, true);
         List<Movie> result = query.getResultList();
         return result;
     }
 
+    /**
+     * Get the available movies that a user of the given age may rent. There is at most one cached result
+     * per age rating.
+     * 
+     * @param age the age of the user in years.
+     * @return the available movies with an age rating up to age, ordered by id.
+     */
+    public List<Movie> getRentable(int age) {
+        return em.createQuery(GET_RENTABLE_MOVIES, Movie.class)
+                .setParameter("age", Math.min(age, Movie.MAX_AGE_RATING_AGE))
+                .setHint(HibernateHints.HINT_CACHEABLE, true)
+                .getResultList();
+    }
+
+    /**
+     * Get one page of movies ordered by id. One movie more than the page's limit is returned if
+     * available, telling that there is a next page.
+     * 
+     * @param page the page to retrieve.
+     * @return up to limit + 1 movies.
+     */
+    public List<Movie> getPage(PageRequest page) {
+        TypedQuery<Movie> query = em.createQuery(GET_MOVIES_AFTER, Movie.class);
+        return getPage(query, page);
+    }
+
+    /**
+     * Get one page of movies with the given rented status ordered by id. One movie more than the page's
+     * limit is returned if available, telling that there is a next page.
+     * 
+     * @param rented if the movies shall be rented or not.
+     * @param page the page to retrieve.
+     * @return up to limit + 1 movies.
+     */
+    public List<Movie> getPage(boolean rented, PageRequest page) {
+        TypedQuery<Movie> query = em.createQuery(GET_RENTED_MOVIES_AFTER.formatted(rented), Movie.class);
+        return getPage(query, page);
+    }
+
+    /**
+     * Stream all movies ordered by id. The movies are fetched from the database in chunks while the
+     * stream is consumed.
+     * 
+     * @return a lazy stream of all movies. It must be closed after use.
+     */
+    public Stream<Movie> streamAll() {
+        return stream(em.createQuery(GET_MOVIES_AFTER, Movie.class));
+    }
+
+    /**
+     * Stream movies with the given rented status ordered by id. The movies are fetched from the
+     * database in chunks while the stream is consumed.
+     * 
+     * @param rented if the movies shall be rented or not.
+     * @return a lazy stream of the movies. It must be closed after use.
+     */
+    public Stream<Movie> streamAll(boolean rented) {
+        return stream(em.createQuery(GET_RENTED_MOVIES_AFTER.formatted(rented), Movie.class));
+    }
+
+    private Stream<Movie> stream(TypedQuery<Movie> query) {
+        return query.setParameter("after", Long.MIN_VALUE)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .getResultStream();
+    }
+
+    private List<Movie> getPage(TypedQuery<Movie> query, PageRequest page) {
+        return query.setParameter("after", page.getAfterId())
+                .setFirstResult(page.getOffset())
+                .setMaxResults(page.getLimit() + 1)
+                .getResultList();
+    }
+
+    /**
+     * Get the movies fulfilling the criteria of a query in one statement, ordered and limited by the
+     * database. The rented status is compared with a literal, like in the other queries.
+     * 
+     * @param query the criteria, order and limit.
+     * @return at most limit movies in the query's order.
+     */
+    public List<Movie> find(MovieQuery query) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Movie> cq = cb.createQuery(Movie.class);
+        Root<Movie> m = cq.from(Movie.class);
+        List<Predicate> where = new ArrayList<>();
+        if (query.getRented() != null) {
+            where.add(query.getRented() ? cb.isTrue(m.get("rented")) : cb.isFalse(m.get("rented")));
+        }
+        if (query.getMinAgeRating() != null) {
+            where.add(cb.ge(m.get("ageRating"), query.getMinAgeRating()));
+        }
+        if (query.getMaxAgeRating() != null) {
+            where.add(cb.le(m.get("ageRating"), query.getMaxAgeRating()));
+        }
+        if (query.getReleasedFrom() != null) {
+            where.add(cb.greaterThanOrEqualTo(m.get("releaseDate"), query.getReleasedFrom()));
+        }
+        if (query.getReleasedTo() != null) {
+            where.add(cb.lessThanOrEqualTo(m.get("releaseDate"), query.getReleasedTo()));
+        }
+        if (query.getTitlePrefix() != null) {
+            where.add(cb.like(m.get("title"), escapeLike(query.getTitlePrefix()) + "%", LIKE_ESCAPE));
+        }
+        Expression<?> key = switch (query.getOrder()) {
+        case TITLE -> m.get("title");
+        case RELEASE_DATE -> m.get("releaseDate");
+        case AGE_RATING -> m.get("ageRating");
+        default -> m.get("id");
+        };
+        boolean desc = query.isDescending();
+        cq.select(m).where(where.toArray(new Predicate[0]))
+                .orderBy(desc ? cb.desc(key) : cb.asc(key), desc ? cb.desc(m.get("id")) : cb.asc(m.get("id")));
+        return em.createQuery(cq).setMaxResults(query.getLimit())
+                .setHint(HibernateHints.HINT_CACHEABLE, true)
+                .getResultList();
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     /**
      * Get movies according to their title.
      * 
@@ -71,7 +234,8 @@ public class MovieDAO {
      * @return movies that match the title.
      */
     public List<Movie> getByTitle(String title) {
-        TypedQuery<Movie> query = em.createQuery(GET_MOVIE_BY_TITLE, Movie.class).setParameter("title", title);
+        TypedQuery<Movie> query = em.createQuery(GET_MOVIE_BY_TITLE, Movie.class).setParameter("title", title)
+                .setHint(HibernateHints.HINT_CACHEABLE, true);
         List<Movie> result = query.getResultList();
         return result;
     }
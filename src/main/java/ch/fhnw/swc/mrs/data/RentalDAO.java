@@ -1,12 +1,25 @@
 package ch.fhnw.swc.mrs.data;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
 
 import ch.fhnw.swc.mrs.api.MovieRentalException;
+import ch.fhnw.swc.mrs.api.PageRequest;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
 import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.User;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.TypedQuery;
 
 /**
@@ -20,8 +33,27 @@ public class RentalDAO {
     
     /** Query to get all Rentals. */
     private static final String GET_ALL_RENTALS = "SELECT r FROM Rental r";
-    /** Query to get rental by user. */
-    private static final String GET_RENTAL_BY_USER = "SELECT r FROM Rental r WHERE r.user.id = :userid";
+    /** Query to get all Rentals together with their movies and users. */
+    private static final String GET_ALL_RENTALS_WITH_MOVIE_AND_USER =
+            "SELECT r FROM Rental r JOIN FETCH r.movie JOIN FETCH r.user";
+    /** Query to get rental by user, together with the movies. */
+    private static final String GET_RENTAL_BY_USER =
+            "SELECT r FROM Rental r JOIN FETCH r.movie JOIN FETCH r.user u WHERE u.id = :userid";
+    /** Query to count the rentals of each user by the price category of the movie and the rental date. */
+    private static final String COUNT_RENTALS_BY_USER_CATEGORY_AND_DATE =
+            "SELECT r.user.id, m.priceCategory, r.rentalDate, COUNT(r) FROM Rental r JOIN r.movie m "
+            + "GROUP BY r.user.id, m.priceCategory, r.rentalDate";
+    /** Query to get rentals following a given id. */
+    private static final String GET_RENTALS_AFTER = "SELECT r FROM Rental r WHERE r.id > :after ORDER BY r.id";
+    /** Query to get the rentals with the given ids. */
+    private static final String GET_RENTALS_BY_IDS = "SELECT r FROM Rental r WHERE r.id IN :ids ORDER BY r.id";
+    /** Query to get the ids of the users of the rentals with the given ids. */
+    private static final String GET_USERIDS_OF_RENTALS =
+            "SELECT DISTINCT r.user.id FROM Rental r WHERE r.id IN :ids ORDER BY r.user.id";
+    /** Query to get the users with the given ids. */
+    private static final String GET_USERS_BY_IDS = "SELECT u FROM User u WHERE u.id IN :ids ORDER BY u.id";
+    /** Query to get the movies with the given ids. */
+    private static final String GET_MOVIES_BY_IDS = "SELECT m FROM Movie m WHERE m.id IN :ids ORDER BY m.id";
 
     private EntityManager em;
     
@@ -39,11 +71,40 @@ public class RentalDAO {
      * @return a list of all rentals.
      */
     public List<Rental> getAll() {
-        TypedQuery<Rental> query = em.createQuery(GET_ALL_RENTALS, Rental.class);
+        TypedQuery<Rental> query = em.createQuery(GET_ALL_RENTALS, Rental.class)
+                .setHint(HibernateHints.HINT_CACHEABLE, true);
         List<Rental> result = query.getResultList();
         return result;
     }
 
+    /**
+     * Retrieve all rentals stored in this system together with their movies and users, in a single
+     * statement. Use this method rather than {@link #getAll()} when the movies or users are read.
+     * 
+     * @return a list of all rentals.
+     */
+    public List<Rental> getAllWithMovieAndUser() {
+        return em.createQuery(GET_ALL_RENTALS_WITH_MOVIE_AND_USER, Rental.class)
+                .setHint(HibernateHints.HINT_CACHEABLE, true)
+                .getResultList();
+    }
+
+    /**
+     * Retrieve one page of rentals ordered by id, together with their movies and users. One rental more
+     * than the page's limit is returned if available, telling that there is a next page.
+     * 
+     * @param page the page to retrieve.
+     * @return up to limit + 1 rentals.
+     */
+    public List<Rental> getPage(PageRequest page) {
+        return em.createQuery(GET_RENTALS_AFTER, Rental.class)
+                .setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, em.getEntityGraph(Rental.WITH_MOVIE_AND_USER))
+                .setParameter("after", page.getAfterId())
+                .setFirstResult(page.getOffset())
+                .setMaxResults(page.getLimit() + 1)
+                .getResultList();
+    }
+
     /**
      * Retrieve a rental by its identification.
      * 
@@ -55,17 +116,38 @@ public class RentalDAO {
     }
 
     /**
-     * Retrieve all rentals of a user.
+     * Retrieve all rentals of a user together with their movies.
      * 
      * @param userid to retrieve rentals from.
      * @return all rentals of this user, possibly empty list.
      */
     public List<Rental> getRentalsByUser(long userid) {
-        TypedQuery<Rental> query = em.createQuery(GET_RENTAL_BY_USER, Rental.class).setParameter("userid", userid);
+        TypedQuery<Rental> query = em.createQuery(GET_RENTAL_BY_USER, Rental.class).setParameter("userid", userid)
+                .setHint(HibernateHints.HINT_CACHEABLE, true);
         List<Rental> result = query.getResultList();
         return result;
     }
 
+    /**
+     * Sum up the charges of all users as of a given day. The rentals are counted by user, price category
+     * and rental date in a single aggregate query, so no rental is loaded; each group is charged with the
+     * fee of its category for its rental days.
+     * 
+     * @param day the day up to which the rentals are charged.
+     * @return the total charge of each user that has rentals, by user id.
+     */
+    public Map<Long, Double> getCharges(LocalDate day) {
+        List<Object[]> groups = em.createQuery(COUNT_RENTALS_BY_USER_CATEGORY_AND_DATE, Object[].class)
+                .getResultList();
+        Map<Long, Double> result = new HashMap<>();
+        for (Object[] group : groups) {
+            PriceCategory category = (PriceCategory) group[1];
+            int days = (int) (day.toEpochDay() - ((LocalDate) group[2]).toEpochDay());
+            result.merge((Long) group[0], category.getCharge(days) * (Long) group[3], Double::sum);
+        }
+        return result;
+    }
+
     /**
      * Persist a Rental object. This method will only create a new rental to the database.
      * It is NOT POSSIBLE to update Rentals (by intention).
@@ -82,6 +164,100 @@ public class RentalDAO {
         });
     }
 
+    /**
+     * Rent a movie to a user in a single transaction. The rows of the user and the movie are locked
+     * until the transaction ends, so concurrent callers can neither rent the same movie twice nor
+     * exceed the maximum number of rentals of a user. The new rental and the movie's rented flag are
+     * written with one commit.
+     * 
+     * @param userid the id of the user who is renting.
+     * @param movieid the id of the movie to rent.
+     * @param rentalDate date the rental starts.
+     * @return the new rental or <code>null</code> if the user or the movie does not exist or the movie
+     *         is already rented.
+     * @throws MovieRentalException if the user may not rent the movie.
+     */
+    public Rental rent(long userid, long movieid, LocalDate rentalDate) {
+        return callInsideTransaction(em -> {
+            User u = em.find(User.class, userid, LockModeType.PESSIMISTIC_WRITE);
+            Movie m = em.find(Movie.class, movieid, LockModeType.PESSIMISTIC_WRITE);
+            if (u == null || m == null || m.isRented()) {
+                return null;
+            }
+            Rental r = new Rental(u, m, rentalDate);
+            em.persist(r);
+            return r;
+        });
+    }
+
+    /**
+     * Rent several movies to a user in a single transaction. The user and all movies are locked with
+     * one query each, the movies in the order of their ids, so concurrent batches cannot deadlock. The
+     * new rentals and the movies' rented flags are sent to the database in JDBC batches at commit.
+     *
+     * @param userid the id of the user who is renting.
+     * @param movieids the distinct ids of the movies to rent.
+     * @param rentalDate date the rentals start.
+     * @return the new rentals in the order of the movie ids, or <code>null</code> if the user or any movie
+     *         does not exist or a movie is already rented.
+     * @throws MovieRentalException if the user may not rent all of the movies. Nothing is rented then.
+     */
+    public List<Rental> rentAll(long userid, List<Long> movieids, LocalDate rentalDate) {
+        return callInsideTransaction(em -> {
+            User u = em.find(User.class, userid, LockModeType.PESSIMISTIC_WRITE);
+            if (u == null) {
+                return null;
+            }
+            Map<Long, Movie> movies = new HashMap<>();
+            for (Movie m : em.createQuery(GET_MOVIES_BY_IDS, Movie.class).setParameter("ids", movieids)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE).getResultList()) {
+                movies.put(m.getMovieid(), m);
+            }
+            if (movies.size() != movieids.size() || movies.values().stream().anyMatch(Movie::isRented)) {
+                return null;
+            }
+            List<Rental> result = new ArrayList<>(movieids.size());
+            for (long id : movieids) {
+                Rental r = new Rental(u, movies.get(id), rentalDate);
+                em.persist(r);
+                result.add(r);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Remove several rentals in a single transaction and return their movies. The rentals are locked in
+     * the order of their ids, after their users in the order of theirs.
+     *
+     * @param rentalids the distinct ids of the rentals to remove.
+     * @return the removed rentals, or <code>null</code> if any of them does not exist. Nothing is removed
+     *         then.
+     */
+    public List<Rental> deleteAll(List<Long> rentalids) {
+        return callInsideTransaction(em -> {
+            // the users' rental counts change, so their rows are locked before they are read
+            List<Long> userids = em.createQuery(GET_USERIDS_OF_RENTALS, Long.class).setParameter("ids", rentalids)
+                    .getResultList();
+            if (userids.isEmpty()) {
+                return null;
+            }
+            em.createQuery(GET_USERS_BY_IDS, User.class).setParameter("ids", userids)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE).getResultList();
+            List<Rental> found = em.createQuery(GET_RENTALS_BY_IDS, Rental.class).setParameter("ids", rentalids)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE).getResultList();
+            if (found.size() != rentalids.size()) {
+                return null;
+            }
+            for (Rental r : found) {
+                r.getUser().removeRental(r);
+                r.getMovie().setRented(false);
+                em.remove(r);
+            }
+            return found;
+        });
+    }
+
     /**
      * Remove a rental from the database.
      * 
@@ -103,11 +279,22 @@ public class RentalDAO {
     }
 
     private void executeInsideTransaction(Consumer<EntityManager> action) {
+        callInsideTransaction(em -> {
+            action.accept(em);
+            return null;
+        });
+    }
+
+    private <T> T callInsideTransaction(Function<EntityManager, T> action) {
         EntityTransaction tx = em.getTransaction();
         try {
             tx.begin();
-            action.accept(em);
+            T result = action.apply(em);
             tx.commit();
+            return result;
+        } catch (MovieRentalException e) {
+            tx.rollback();
+            throw e;
         } catch (Exception e) {
             tx.rollback();
             throw new MovieRentalException("DB operation failed", e);
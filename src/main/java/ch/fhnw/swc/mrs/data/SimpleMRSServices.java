@@ -1,46 +1,140 @@
 package ch.fhnw.swc.mrs.data;
 
-import java.io.InputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.lang.reflect.Field;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
 
 import ch.fhnw.swc.mrs.api.MRSServices;
+import ch.fhnw.swc.mrs.api.MovieQuery;
+import ch.fhnw.swc.mrs.api.Page;
+import ch.fhnw.swc.mrs.api.PageRequest;
+import ch.fhnw.swc.mrs.api.ResourceVersion;
 import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.PriceCategory;
 import ch.fhnw.swc.mrs.model.Rental;
 import ch.fhnw.swc.mrs.model.User;
 
 /**
- * A simple implementation of the MRS Services.
+ * A simple in-memory implementation of the MRS Services. It is safe to use from several threads at
+ * once: the data is kept in concurrent maps, and every change of a movie or user is done while holding
+ * the lock stripe of that object. Renting and returning lock the user before the movie; batches lock all
+ * users' stripes before all movies' stripes, each kind in ascending stripe order.
+ * <p>
+ * Users are indexed by name and movies by their rented status, the words of their titles, and in order of
+ * title, release date and age rating. The available movies are also kept in one bucket per age rating, so
+ * the movies a user may rent are the union of the buckets up to the user's age. The indexes are
+ * maintained by every operation that changes an indexed property, so lookups cost O(1) or O(result). All
+ * maps and the other indexes are sorted by id, so a page starting after a given id is found in O(log n).
+ * A {@link MovieQuery} walks the range of the index that fits its criteria and order best instead of
+ * scanning all movies.
+ * <p>
+ * The data can be saved to a binary snapshot file, periodically in the background if wanted, and loaded
+ * from it on the next start, which is much faster than reading the CSV files again. The changes made
+ * since the last snapshot can be recorded in a journal that is replayed on top of the snapshot.
  */
 public class SimpleMRSServices implements MRSServices {
 
-    private static long nextid = 100;
+    private final AtomicLong nextid = new AtomicLong(100);
 
-    private Map<Long, Movie> movies = new HashMap<>();
-    private Map<Long, User> users = new HashMap<>();
-    private Map<Long, Rental> rentals = new HashMap<>();
+    private final ConcurrentNavigableMap<Long, Movie> movies = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Long, Rental> rentals = new ConcurrentSkipListMap<>();
+
+    private final LockStripes movieLocks = new LockStripes(LockStripes.defaultStripes());
+    private final LockStripes userLocks = new LockStripes(LockStripes.defaultStripes());
+
+    /** Index: ids of all users with a given family name, in ascending order. */
+    private final Map<String, Set<Long>> usersByName = new ConcurrentHashMap<>();
+    /** The name each user id is currently indexed with, needed when a name changes. */
+    private final Map<Long, String> indexedNames = new ConcurrentHashMap<>();
+    /** Index: ids of the rented movies. */
+    private final NavigableSet<Long> rentedMovies = new ConcurrentSkipListSet<>();
+    /** Index: ids of the available movies. */
+    private final NavigableSet<Long> availableMovies = new ConcurrentSkipListSet<>();
+    /** Index: ids of the available movies by their age rating. */
+    private final List<NavigableSet<Long>> availableByAgeRating = new ArrayList<>();
+    /** Index: words of the movie titles. */
+    private final TitleIndex titles = new TitleIndex();
+    /** Index: movie ids ordered by title. */
+    private final SortedIndex<String> moviesByTitle = new SortedIndex<>();
+    /** Index: movie ids ordered by release date. */
+    private final SortedIndex<LocalDate> moviesByReleaseDate = new SortedIndex<>();
+    /** Index: movie ids ordered by age rating. */
+    private final SortedIndex<Integer> moviesByAgeRating = new SortedIndex<>();
+
+    private final Versions movieVersions = new Versions();
+    private final Versions userVersions = new Versions();
+
+    /** Records every change, <code>null</code> unless opened. */
+    private volatile Journal journal;
+    /** Makes sure only one snapshot at a time rotates the journal. */
+    private final Object checkpointLock = new Object();
+
+    /** Writes snapshots in the background, <code>null</code> unless started. */
+    private ScheduledExecutorService snapshotter;
+    private Path snapshotFile;
+    private volatile ResourceVersion snapshotMovieVersion;
+    private volatile ResourceVersion snapshotUserVersion;
+
+    /**
+     * Create an empty in-memory back-end.
+     */
+    public SimpleMRSServices() {
+        for (int rating = Movie.MIN_AGE_RATING_AGE; rating <= Movie.MAX_AGE_RATING_AGE; rating++) {
+            availableByAgeRating.add(new ConcurrentSkipListSet<>());
+        }
+    }
 
     @Override
     public Movie createMovie(String aTitle, LocalDate aReleaseDate, int anAgeRating) {
+        return createMovie(aTitle, aReleaseDate, anAgeRating, PriceCategory.getDefault());
+    }
+
+    @Override
+    public Movie createMovie(String aTitle, LocalDate aReleaseDate, int anAgeRating, PriceCategory aPriceCategory) {
+        Movie m;
         try {
-            Movie m = new Movie(aTitle, aReleaseDate, anAgeRating);
-            long id = nextid++;
-            setId(m, id);
-            movies.put(id, m);
-            return m;
-        } catch (Exception e) {
+            m = new Movie(aTitle, aReleaseDate, anAgeRating, aPriceCategory);
+        } catch (RuntimeException e) {
             return null;
         }
+        m.setId(nextid.getAndIncrement());
+        putMovie(m);
+        return m;
     }
 
     @Override
@@ -51,28 +145,108 @@ public class SimpleMRSServices implements MRSServices {
     @Override
     public Collection<Movie> getAllMovies(boolean rented) {
         Collection<Movie> result = new ArrayList<>();
-        for (Movie m : movies.values()) {
-            if (rented == m.isRented()) {
+        for (Long id : rented ? rentedMovies : availableMovies) {
+            Movie m = movies.get(id);
+            if (m != null) {
                 result.add(m);
             }
         }
         return result;
     }
 
+    @Override
+    public Stream<Movie> streamMovies() {
+        return movies.values().stream();
+    }
+
+    @Override
+    public Stream<Movie> streamMovies(boolean rented) {
+        return (rented ? rentedMovies : availableMovies).stream().map(movies::get).filter(Objects::nonNull);
+    }
+
+    @Override
+    public Page<Movie> getMovies(PageRequest page) {
+        return page(movies.navigableKeySet(), movies::get, Movie::getMovieid, page);
+    }
+
+    @Override
+    public Page<Movie> getMovies(boolean rented, PageRequest page) {
+        return page(rented ? rentedMovies : availableMovies, movies::get, Movie::getMovieid, page);
+    }
+
+    @Override
+    public List<Movie> findMovies(MovieQuery query) {
+        List<Movie> result = new ArrayList<>();
+        Iterable<Long> ordered = orderedCandidates(query);
+        for (Long id : ordered != null ? ordered : candidates(query)) {
+            Movie m = movies.get(id);
+            if (m != null && query.matches(m)) {
+                result.add(m);
+                if (ordered != null && result.size() == query.getLimit()) {
+                    return result;
+                }
+            }
+        }
+        if (ordered == null) {
+            result.sort(movieOrder(query));
+        }
+        return result.size() > query.getLimit() ? new ArrayList<>(result.subList(0, query.getLimit())) : result;
+    }
+
     @Override
     public Movie getMovieById(long id) {
         return movies.get(id);
     }
 
+    @Override
+    public List<Movie> searchMovies(String query, int limit) {
+        List<Movie> result = new ArrayList<>();
+        for (Long id : titles.search(query, limit)) {
+            Movie m = movies.get(id);
+            if (m != null) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ResourceVersion getMoviesVersion() {
+        return movieVersions.ofAll();
+    }
+
+    @Override
+    public ResourceVersion getMovieVersion(long id) {
+        return movieVersions.of(id);
+    }
+
     @Override
     public boolean updateMovie(Movie movie) {
-        movies.put(movie.getMovieid(), movie);
+        putMovie(movie);
         return true;
     }
 
     @Override
     public boolean deleteMovie(long movieid) {
-        return movies.remove(movieid) != null;
+        Lock lock = movieLocks.forId(movieid);
+        lock.lock();
+        try {
+            rentedMovies.remove(movieid);
+            availableMovies.remove(movieid);
+            unindexAgeRating(movieid);
+            titles.remove(movieid);
+            moviesByTitle.remove(movieid);
+            moviesByReleaseDate.remove(movieid);
+            moviesByAgeRating.remove(movieid);
+            boolean removed = movies.remove(movieid) != null;
+            movieVersions.changed(movieid);
+            if (removed) {
+                journal(j -> j.deleteMovie(movieid));
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -80,16 +254,40 @@ public class SimpleMRSServices implements MRSServices {
         return users.values();
     }
 
+    @Override
+    public Stream<User> streamUsers() {
+        return users.values().stream();
+    }
+
+    @Override
+    public Page<User> getUsers(PageRequest page) {
+        return page(users.navigableKeySet(), users::get, User::getUserid, page);
+    }
+
     @Override
     public User getUserById(long id) {
         return users.get(id);
     }
 
+    @Override
+    public ResourceVersion getUsersVersion() {
+        return userVersions.ofAll();
+    }
+
+    @Override
+    public ResourceVersion getUserVersion(long id) {
+        return userVersions.of(id);
+    }
+
     @Override
     public User getUserByName(String name) {
-        for (User u : users.values()) {
-            if (u.getName().equals(name)) {
-                return u;
+        Set<Long> ids = usersByName.get(name);
+        if (ids != null) {
+            for (Long id : ids) {
+                User u = users.get(id);
+                if (u != null) {
+                    return u;
+                }
             }
         }
         return null;
@@ -97,27 +295,38 @@ public class SimpleMRSServices implements MRSServices {
 
     @Override
     public User createUser(String aName, String aFirstName, LocalDate aBirthdate) {
+        User u;
         try {
-            User u = new User(aName, aFirstName, aBirthdate);
-            long id = nextid++;
-            setId(u, id);
-            users.put(id, u);
-            return u;
-        } catch (Exception e) {
+            u = new User(aName, aFirstName, aBirthdate);
+        } catch (RuntimeException e) {
             return null;
         }
+        u.setId(nextid.getAndIncrement());
+        putUser(u);
+        return u;
     }
 
     @Override
     public boolean updateUser(User u) {
-        User user = u;
-        users.put(user.getUserid(), user);
+        putUser(u);
         return true;
     }
 
     @Override
     public boolean deleteUser(long userid) {
-        return users.remove(userid) != null;
+        Lock lock = userLocks.forId(userid);
+        lock.lock();
+        try {
+            unindexName(userid, indexedNames.remove(userid));
+            boolean removed = users.remove(userid) != null;
+            userVersions.changed(userid);
+            if (removed) {
+                journal(j -> j.deleteUser(userid));
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -126,53 +335,736 @@ public class SimpleMRSServices implements MRSServices {
     }
 
     @Override
-    public Rental createRental(long userId, long movieId, LocalDate rentalDate) {
-        User u = users.get(userId);
-        Movie m = movies.get(movieId);
+    public Page<Rental> getRentals(PageRequest page) {
+        return page(rentals.navigableKeySet(), rentals::get, Rental::getRentalId, page);
+    }
+
+    @Override
+    public List<Rental> getRentalsByUser(long userId) {
+        // every user keeps the list of its rentals, which is changed only while holding the user's lock
+        Lock lock = userLocks.forId(userId);
+        lock.lock();
+        try {
+            User u = users.get(userId);
+            return u == null ? null : new ArrayList<>(u.getRentals());
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        if (u != null && m != null && !m.isRented() && !rentalDate.isAfter(LocalDate.now())) {
+    @Override
+    public List<Movie> getRentableMovies(long userId) {
+        int age;
+        Lock lock = userLocks.forId(userId);
+        lock.lock();
+        try {
+            User u = users.get(userId);
+            if (u == null) {
+                return null;
+            }
+            if (u.getRentalCount() >= User.MAX_RENTABLE_MOVIES) {
+                return new ArrayList<>();
+            }
+            age = u.getAge();
+        } finally {
+            lock.unlock();
+        }
+        List<Long> ids = new ArrayList<>();
+        for (int rating = Movie.MIN_AGE_RATING_AGE; rating <= Math.min(age, Movie.MAX_AGE_RATING_AGE); rating++) {
+            ids.addAll(availableByAgeRating.get(rating - Movie.MIN_AGE_RATING_AGE));
+        }
+        Collections.sort(ids);
+        List<Movie> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Movie m = movies.get(id);
+            if (m != null && !m.isRented()) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Long, Double> getCharges(LocalDate day) {
+        // rentals never change, so they are summed up without locking their users
+        Map<Long, Double> result = new HashMap<>();
+        for (Rental r : rentals.values()) {
+            result.merge(r.getUser().getUserid(), r.getRentalFee(day), Double::sum);
+        }
+        return result;
+    }
+
+    @Override
+    public Rental createRental(long userId, long movieId, LocalDate rentalDate) {
+        if (rentalDate.isAfter(LocalDate.now())) {
+            return null;
+        }
+        Lock userLock = userLocks.forId(userId);
+        Lock movieLock = movieLocks.forId(movieId);
+        userLock.lock();
+        movieLock.lock();
+        try {
+            // look up again while holding the locks, the objects may have been replaced meanwhile
+            User u = users.get(userId);
+            Movie m = movies.get(movieId);
+            if (u == null || m == null || m.isRented()) {
+                return null;
+            }
+            Rental r;
             try {
-                Rental r = new Rental(u, m, rentalDate);
-                long id = nextid++;
-                setId(r, id);
-                rentals.put(id, r);
-                return r;
-            } catch (Exception e) {
+                r = new Rental(u, m, rentalDate);
+            } catch (RuntimeException e) {
                 return null;
             }
+            long id = nextid.getAndIncrement();
+            r.setId(id);
+            rentals.put(id, r);
+            indexRentedStatus(m);
+            movieVersions.changed(movieId);
+            journal(j -> j.createRental(id, userId, movieId, rentalDate));
+            return r;
+        } finally {
+            movieLock.unlock();
+            userLock.unlock();
         }
-        return null;   
     }
     
     @Override
     public boolean deleteRental(long rentalid) {
-        Rental r = rentals.get(rentalid);
-        r.getMovie().setRented(false);
-        boolean result = r.getUser().removeRental(r);
-        rentals.remove(rentalid);
-        return result;
+        // removing first makes sure only one of several concurrent callers returns the movie
+        Rental r = rentals.remove(rentalid);
+        if (r == null) {
+            return false;
+        }
+        Lock userLock = userLocks.forId(r.getUser().getUserid());
+        Lock movieLock = movieLocks.forId(r.getMovie().getMovieid());
+        userLock.lock();
+        movieLock.lock();
+        try {
+            r.getMovie().setRented(false);
+            indexRentedStatus(r.getMovie());
+            movieVersions.changed(r.getMovie().getMovieid());
+            journal(j -> j.deleteRental(rentalid));
+            return r.getUser().removeRental(r);
+        } finally {
+            movieLock.unlock();
+            userLock.unlock();
+        }
     }
-    
+
+    @Override
+    public List<Rental> createRentals(long userId, List<Long> movieIds, LocalDate rentalDate) {
+        if (rentalDate.isAfter(LocalDate.now()) || new HashSet<>(movieIds).size() != movieIds.size()) {
+            return null;
+        }
+        List<Lock> locks = new ArrayList<>();
+        locks.add(userLocks.forId(userId));
+        locks.addAll(stripes(movieLocks, movieIds));
+        locks.forEach(Lock::lock);
+        try {
+            User u = users.get(userId);
+            if (u == null) {
+                return null;
+            }
+            List<Movie> ms = new ArrayList<>(movieIds.size());
+            for (long movieId : movieIds) {
+                Movie m = movies.get(movieId);
+                if (m == null || m.isRented()) {
+                    return null;
+                }
+                ms.add(m);
+            }
+            // the constructor checks the limit and the age rating; undo the batch if any rental is refused
+            List<Rental> created = new ArrayList<>(ms.size());
+            try {
+                for (Movie m : ms) {
+                    created.add(new Rental(u, m, rentalDate));
+                }
+            } catch (RuntimeException e) {
+                for (Rental r : created) {
+                    u.removeRental(r);
+                    r.getMovie().setRented(false);
+                }
+                throw e;
+            }
+            for (Rental r : created) {
+                long id = nextid.getAndIncrement();
+                long movieId = r.getMovie().getMovieid();
+                r.setId(id);
+                rentals.put(id, r);
+                indexRentedStatus(r.getMovie());
+                movieVersions.changed(movieId);
+                journal(j -> j.createRental(id, userId, movieId, rentalDate));
+            }
+            return created;
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    @Override
+    public boolean deleteRentals(List<Long> rentalIds) {
+        List<Rental> found = new ArrayList<>(rentalIds.size());
+        for (long id : new LinkedHashSet<>(rentalIds)) {
+            Rental r = rentals.get(id);
+            if (r == null) {
+                return false;
+            }
+            found.add(r);
+        }
+        List<Lock> locks = new ArrayList<>();
+        locks.addAll(stripes(userLocks, found.stream().map(r -> r.getUser().getUserid()).toList()));
+        locks.addAll(stripes(movieLocks, found.stream().map(r -> r.getMovie().getMovieid()).toList()));
+        locks.forEach(Lock::lock);
+        try {
+            // a concurrent return may have removed a rental meanwhile, then the whole batch is refused
+            for (int i = 0; i < found.size(); i++) {
+                Rental r = found.get(i);
+                if (!rentals.remove(r.getRentalId(), r)) {
+                    found.subList(0, i).forEach(done -> rentals.put(done.getRentalId(), done));
+                    return false;
+                }
+            }
+            for (Rental r : found) {
+                long rentalid = r.getRentalId();
+                r.getMovie().setRented(false);
+                indexRentedStatus(r.getMovie());
+                movieVersions.changed(r.getMovie().getMovieid());
+                journal(j -> j.deleteRental(rentalid));
+                r.getUser().removeRental(r);
+            }
+            return true;
+        } finally {
+            unlock(locks);
+        }
+    }
+
     /**
-     * Initialize the "server component".
+     * @return the distinct locks guarding the given ids, in the order they must be acquired.
+     */
+    private static List<Lock> stripes(LockStripes stripes, Collection<Long> ids) {
+        Map<Integer, Lock> byIndex = new TreeMap<>();
+        for (long id : ids) {
+            byIndex.put(stripes.index(id), stripes.forId(id));
+        }
+        return new ArrayList<>(byIndex.values());
+    }
+
+    private static void unlock(List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    /**
+     * Initialize the "server component" with the data bundled with the application.
      */
     @Override
     public void createDB() {
-        readMovies();
-        readUsers();
-        readRentals();
+        createDB(name -> new InputStreamReader(getClass().getResourceAsStream("/data/" + name),
+                StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Initialize the "server component" with data from the files movies.csv, users.csv and rentals.csv
+     * in a directory.
+     *
+     * @param directory the directory containing the CSV files.
+     */
+    public void createDB(Path directory) {
+        createDB(name -> Files.newBufferedReader(directory.resolve(name), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Movies and users are read in parallel. The rentals refer to both, so they are read once both are
+     * complete. Afterwards new ids are generated above the largest id read.
+     *
+     * @param source opens the CSV files.
+     */
+    private void createDB(CsvSource source) {
+        CompletableFuture<Void> movieLoad = CompletableFuture.runAsync(() -> readMovies(source));
+        CompletableFuture<Void> userLoad = CompletableFuture.runAsync(() -> readUsers(source));
+        CompletableFuture.allOf(movieLoad, userLoad).thenRun(() -> readRentals(source)).join();
+        long maxId = Math.max(lastKey(movies), Math.max(lastKey(users), lastKey(rentals)));
+        nextid.accumulateAndGet(maxId + 1, Math::max);
+    }
+
+    /**
+     * Recreate a rental read from a file. Rentals of unknown users or movies, of movies already rented and
+     * beyond the limit of the user are skipped.
+     */
+    private void restoreRental(long id, long userId, long movieId, LocalDate rentalDate) {
+        User u = users.get(userId);
+        Movie m = movies.get(movieId);
+        if (u == null || m == null || m.isRented() || rentals.containsKey(id)) {
+            return;
+        }
+        Rental rental;
+        try {
+            rental = new Rental(u, m, rentalDate);
+        } catch (RuntimeException e) {
+            return;
+        }
+        rental.setId(id);
+        rentals.put(id, rental);
+        indexRentedStatus(m);
+    }
+
+    private static long lastKey(ConcurrentNavigableMap<Long, ?> map) {
+        Map.Entry<Long, ?> last = map.lastEntry();
+        return last == null ? 0 : last.getKey();
+    }
+
+    /**
+     * Write a snapshot of all movies, users and rentals. Requests are served as usual meanwhile; objects
+     * changed during the write are saved as they are when the writer reaches them.
+     *
+     * @param file the snapshot file to replace.
+     * @throws IOException if the snapshot cannot be written. A previous snapshot is left intact.
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        synchronized (checkpointLock) {
+            Journal j = journal;
+            if (j != null) {
+                j.rotate();
+            }
+            // holding every user lock keeps rentals from being created meanwhile, so no movie is rented twice
+            // and no user beyond the limit in the copy; returns are consistent either way
+            List<Lock> locks = userLocks.all();
+            List<Rental> copy;
+            locks.forEach(Lock::lock);
+            try {
+                copy = new ArrayList<>(rentals.values());
+            } finally {
+                unlock(locks);
+            }
+            SnapshotFile.write(file, nextid.get(), movies.values(), users.values(), copy);
+            if (j != null) {
+                j.checkpointDone();
+            }
+        }
+    }
+
+    /**
+     * Replace all data with the content of a snapshot.
+     *
+     * @param file the snapshot file to read.
+     * @return whether the snapshot exists and has been loaded.
+     * @throws IOException if the snapshot cannot be read or is corrupt.
+     */
+    public boolean loadSnapshot(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        SnapshotFile.Contents contents = SnapshotFile.read(file);
+        removeDB();
+        CompletableFuture.allOf(CompletableFuture.runAsync(() -> contents.movies.forEach(this::putMovie)),
+                CompletableFuture.runAsync(() -> contents.users.forEach(this::putUser))).join();
+        for (SnapshotFile.RentalRow r : contents.rentals) {
+            restoreRental(r.id, r.userId, r.movieId, r.rentalDate);
+        }
+        nextid.accumulateAndGet(contents.nextId, Math::max);
+        return true;
+    }
+
+    /**
+     * Write snapshots periodically in the background. A snapshot is only written if any movie, user or
+     * rental has changed since the last one.
+     *
+     * @param file the snapshot file to replace.
+     * @param period the time between two snapshots.
+     * @param unit the unit of period.
+     */
+    public synchronized void startSnapshots(Path file, long period, TimeUnit unit) {
+        if (snapshotter != null) {
+            throw new IllegalStateException("snapshots already started");
+        }
+        snapshotFile = file;
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mrs-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                snapshotIfChanged();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stop writing snapshots and write a last one if anything has changed.
+     *
+     * @throws IOException if the last snapshot cannot be written.
+     */
+    public synchronized void stopSnapshots() throws IOException {
+        if (snapshotter == null) {
+            return;
+        }
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotter = null;
+        snapshotIfChanged();
+    }
+
+    private void snapshotIfChanged() throws IOException {
+        // read the versions first, so changes made while writing are saved by the next snapshot
+        ResourceVersion movieVersion = movieVersions.ofAll();
+        ResourceVersion userVersion = userVersions.ofAll();
+        if (movieVersion.equals(snapshotMovieVersion) && userVersion.equals(snapshotUserVersion)) {
+            return;
+        }
+        writeSnapshot(snapshotFile);
+        snapshotMovieVersion = movieVersion;
+        snapshotUserVersion = userVersion;
+    }
+
+    /**
+     * Replay a journal on top of the current data, then record every further change in it. Together with
+     * a snapshot loaded before, this restores the data as it was when the application stopped. Each
+     * snapshot written afterwards starts a new journal, so the journal only holds the changes since the
+     * last snapshot.
+     *
+     * @param file the journal file, created if it does not exist.
+     * @param syncIntervalMillis how often the journal is forced to disk. With 0, every change is on disk
+     *            before the operation returns; concurrent changes share one force.
+     * @return the number of changes replayed.
+     * @throws IOException if the journal cannot be read or opened.
+     */
+    public synchronized long openJournal(Path file, long syncIntervalMillis) throws IOException {
+        if (journal != null) {
+            throw new IllegalStateException("journal already open");
+        }
+        JournalReplay replay = new JournalReplay();
+        long records = Journal.replay(file, replay);
+        nextid.accumulateAndGet(replay.maxId + 1, Math::max);
+        journal = new Journal(file, syncIntervalMillis);
+        return records;
+    }
+
+    /**
+     * Stop recording changes and force the journal to disk.
+     *
+     * @throws IOException if the journal cannot be closed.
+     */
+    public synchronized void closeJournal() throws IOException {
+        Journal j = journal;
+        if (j != null) {
+            journal = null;
+            j.close();
+        }
+    }
+
+    /**
+     * Record a change if the journal is open. Call while holding the locks of the change, so the changes
+     * of one object are recorded in the order they were made.
+     */
+    private void journal(JournalWrite write) {
+        Journal j = journal;
+        if (j != null) {
+            try {
+                write.to(j);
+            } catch (IOException e) {
+                throw new UncheckedIOException("change could not be written to the journal", e);
+            }
+        }
+    }
+
+    /** Writes one record to the journal. */
+    @FunctionalInterface
+    private interface JournalWrite {
+        void to(Journal j) throws IOException;
+    }
+
+    /**
+     * Applies the records of a journal. Records may already be contained in the snapshot the journal is
+     * replayed on, so each is applied such that applying it twice changes nothing.
+     */
+    private final class JournalReplay implements Journal.Target {
+        private long maxId;
+
+        @Override
+        public void putMovie(long id, String title, LocalDate releaseDate, int ageRating,
+                PriceCategory priceCategory) {
+            maxId = Math.max(maxId, id);
+            Movie m = movies.get(id);
+            if (m == null) {
+                m = new Movie(title, releaseDate, ageRating, priceCategory);
+                m.setId(id);
+            } else {
+                m.setTitle(title);
+                m.setReleaseDate(releaseDate);
+                m.setAgeRating(ageRating);
+                m.setPriceCategory(priceCategory);
+            }
+            SimpleMRSServices.this.putMovie(m);
+        }
+
+        @Override
+        public void deleteMovie(long id) {
+            SimpleMRSServices.this.deleteMovie(id);
+        }
+
+        @Override
+        public void putUser(long id, String name, String firstName, LocalDate birthdate) {
+            maxId = Math.max(maxId, id);
+            User u = new User(name, firstName, birthdate);
+            u.setId(id);
+            SimpleMRSServices.this.putUser(u);
+        }
+
+        @Override
+        public void deleteUser(long id) {
+            SimpleMRSServices.this.deleteUser(id);
+        }
+
+        @Override
+        public void createRental(long id, long userId, long movieId, LocalDate rentalDate) {
+            maxId = Math.max(maxId, id);
+            // skipped if the snapshot holds newer rentals of the user; this one is returned later in the journal
+            restoreRental(id, userId, movieId, rentalDate);
+        }
+
+        @Override
+        public void deleteRental(long id) {
+            SimpleMRSServices.this.deleteRental(id);
+        }
+
+        @Override
+        public void clear() {
+            removeDB();
+        }
     }
 
     @Override
     public void removeDB() {
+        journal(Journal::clear);
         movies.clear();
         users.clear();
         rentals.clear();
+        usersByName.clear();
+        indexedNames.clear();
+        rentedMovies.clear();
+        availableMovies.clear();
+        availableByAgeRating.forEach(Set::clear);
+        titles.clear();
+        moviesByTitle.clear();
+        moviesByReleaseDate.clear();
+        moviesByAgeRating.clear();
+        movieVersions.reset();
+        userVersions.reset();
+    }
+
+    /**
+     * Find the index that yields the candidates of a query in the query's order, so walking it can stop
+     * at the limit. It is used if the query restricts the title or release date and orders by it, or if
+     * no criterion more selective than the rented status and the age rating is given.
+     *
+     * @param query the query to evaluate.
+     * @return the ids in the query's order, or <code>null</code> if the candidates are better taken from
+     *         the index of a selective criterion and sorted.
+     */
+    private Iterable<Long> orderedCandidates(MovieQuery query) {
+        boolean selective = query.getTitlePrefix() != null || query.getReleasedFrom() != null
+                || query.getReleasedTo() != null;
+        boolean desc = query.isDescending();
+        switch (query.getOrder()) {
+        case TITLE:
+            return query.getTitlePrefix() != null || !selective ? titleRange(query) : null;
+        case RELEASE_DATE:
+            return query.getReleasedFrom() != null || query.getReleasedTo() != null || !selective
+                    ? moviesByReleaseDate.range(query.getReleasedFrom(), query.getReleasedTo(), desc) : null;
+        case AGE_RATING:
+            return !selective ? moviesByAgeRating.range(query.getMinAgeRating(), query.getMaxAgeRating(), desc)
+                    : null;
+        default:
+            if (selective) {
+                return null;
+            }
+            NavigableSet<Long> ids = query.getRented() == null ? movies.navigableKeySet()
+                    : query.getRented() ? rentedMovies : availableMovies;
+            return desc ? ids.descendingSet() : ids;
+        }
+    }
+
+    /**
+     * @return the ids of the movies matching the most selective criterion of the query, in no useful order.
+     */
+    private Iterable<Long> candidates(MovieQuery query) {
+        if (query.getTitlePrefix() != null) {
+            return titleRange(query);
+        }
+        return moviesByReleaseDate.range(query.getReleasedFrom(), query.getReleasedTo(), false);
+    }
+
+    private Iterable<Long> titleRange(MovieQuery query) {
+        String prefix = query.getTitlePrefix();
+        return moviesByTitle.range(prefix, prefix == null ? null : prefix + Character.MAX_VALUE,
+                query.isDescending());
+    }
+
+    /**
+     * @return the order of a query as comparator: by the ordering key, then by id.
+     */
+    private static Comparator<Movie> movieOrder(MovieQuery query) {
+        Comparator<Movie> byId = Comparator.comparingLong(Movie::getMovieid);
+        Comparator<Movie> order;
+        switch (query.getOrder()) {
+        case TITLE:
+            order = Comparator.comparing(Movie::getTitle).thenComparing(byId);
+            break;
+        case RELEASE_DATE:
+            order = Comparator.comparing(Movie::getReleaseDate).thenComparing(byId);
+            break;
+        case AGE_RATING:
+            order = Comparator.comparingInt(Movie::getAgeRating).thenComparing(byId);
+            break;
+        default:
+            order = byId;
+        }
+        return query.isDescending() ? order.reversed() : order;
+    }
+
+    /**
+     * Collect one page of objects by walking their ids in ascending order.
+     * 
+     * @param <T> the type of the objects.
+     * @param ids the sorted ids of all candidate objects.
+     * @param lookup function to get the object for an id, may return <code>null</code>.
+     * @param idOf function to get the id of an object.
+     * @param request which page to collect.
+     * @return the requested page.
+     */
+    private static <T> Page<T> page(NavigableSet<Long> ids, Function<Long, T> lookup, ToLongFunction<T> idOf,
+            PageRequest request) {
+        Iterable<Long> from = request.isKeyset() ? ids.tailSet(request.getAfterId(), false) : ids;
+        List<T> fetched = new ArrayList<>();
+        int skip = request.getOffset();
+        for (Long id : from) {
+            T t = lookup.apply(id);
+            if (t == null) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            fetched.add(t);
+            if (fetched.size() > request.getLimit()) {
+                break;
+            }
+        }
+        return Page.of(fetched, request, idOf);
+    }
+
+    /**
+     * Store a movie and index its rented status, title, release date and age rating.
+     * 
+     * @param m the movie to store, replacing any movie with the same id.
+     */
+    private void putMovie(Movie m) {
+        Lock lock = movieLocks.forId(m.getMovieid());
+        lock.lock();
+        try {
+            movies.put(m.getMovieid(), m);
+            indexRentedStatus(m);
+            titles.put(m.getMovieid(), m.getTitle());
+            moviesByTitle.put(m.getMovieid(), m.getTitle());
+            moviesByReleaseDate.put(m.getMovieid(), m.getReleaseDate());
+            moviesByAgeRating.put(m.getMovieid(), m.getAgeRating());
+            movieVersions.changed(m.getMovieid());
+            journal(j -> j.putMovie(m));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store a user and index its name. A user that is already stored keeps its rentals, which refer to
+     * it, so only the data of the given object is copied onto it.
+     * 
+     * @param user the user to store, updating any user with the same id.
+     */
+    private void putUser(User user) {
+        long id = user.getUserid();
+        Lock lock = userLocks.forId(id);
+        lock.lock();
+        try {
+            User stored = users.get(id);
+            if (stored != null && stored != user) {
+                stored.setName(user.getName());
+                stored.setFirstName(user.getFirstName());
+                stored.setBirthdate(user.getBirthdate());
+            }
+            User u = stored == null ? user : stored;
+            users.put(id, u);
+            String name = u.getName();
+            String old = indexedNames.put(id, name);
+            if (!name.equals(old)) {
+                unindexName(id, old);
+                usersByName.compute(name, (k, ids) -> {
+                    Set<Long> result = ids == null ? new ConcurrentSkipListSet<>() : ids;
+                    result.add(id);
+                    return result;
+                });
+            }
+            userVersions.changed(id);
+            journal(j -> j.putUser(u));
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private void readMovies() {
-        InputStream instream = getClass().getResourceAsStream("/data/movies.csv");
-        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
+    /**
+     * Must be called while holding the user's lock.
+     * 
+     * @param id the id of the user to remove from the name index.
+     * @param name the name the user was indexed with, may be <code>null</code>.
+     */
+    private void unindexName(long id, String name) {
+        if (name != null) {
+            usersByName.computeIfPresent(name, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * Must be called while holding the movie's lock.
+     * 
+     * @param m the movie whose rented status changed.
+     */
+    private void indexRentedStatus(Movie m) {
+        long id = m.getMovieid();
+        // the age rating may have changed too
+        unindexAgeRating(id);
+        if (m.isRented()) {
+            availableMovies.remove(id);
+            rentedMovies.add(id);
+        } else {
+            rentedMovies.remove(id);
+            availableMovies.add(id);
+            availableByAgeRating.get(m.getAgeRating() - Movie.MIN_AGE_RATING_AGE).add(id);
+        }
+    }
+
+    private void unindexAgeRating(long id) {
+        for (NavigableSet<Long> bucket : availableByAgeRating) {
+            if (bucket.remove(id)) {
+                return;
+            }
+        }
+    }
+
+    private void readMovies(CsvSource source) {
+        try (Reader in = source.open("movies.csv")) {
             
             CSVFormat format = initCSVFormat(MovieHeaders.class);
 
@@ -181,20 +1073,19 @@ public class SimpleMRSServices implements MRSServices {
             for (CSVRecord m : movieList) {
                 long id = Long.parseLong(m.get(MovieHeaders.ID));
                 String title = m.get(MovieHeaders.Title);
-                LocalDate releaseDate = LocalDate.parse(m.get(MovieHeaders.ReleaseDate));
+                LocalDate releaseDate = parseDate(m.get(MovieHeaders.ReleaseDate));
                 int ageRating = Integer.parseInt(m.get(MovieHeaders.AgeRating));
                 Movie movie = new Movie(title, releaseDate, ageRating);
-                setId(movie, id);
-                movies.put(id, movie);
+                movie.setId(id);
+                putMovie(movie);
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private void readUsers() {
-        InputStream instream = getClass().getResourceAsStream("/data/users.csv");
-        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
+    private void readUsers(CsvSource source) {
+        try (Reader in = source.open("users.csv")) {
             
             CSVFormat format = initCSVFormat(UserHeaders.class);
 
@@ -204,19 +1095,18 @@ public class SimpleMRSServices implements MRSServices {
                 long id = Long.parseLong(u.get(UserHeaders.ID));
                 String surname = u.get(UserHeaders.Surname);
                 String firstname = u.get(UserHeaders.FirstName);
-                LocalDate birthdate = LocalDate.parse(u.get(UserHeaders.Birthdate));
+                LocalDate birthdate = parseDate(u.get(UserHeaders.Birthdate));
                 User user = new User(surname, firstname, birthdate);
-                setId(user, id);
-                users.put(id, user);
+                user.setId(id);
+                putUser(user);
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private void readRentals() {
-        InputStream instream = getClass().getResourceAsStream("/data/rentals.csv");
-        try (Reader in = new InputStreamReader(instream, StandardCharsets.UTF_8)) {
+    private void readRentals(CsvSource source) {
+        try (Reader in = source.open("rentals.csv")) {
             
             CSVFormat format = initCSVFormat(RentalHeaders.class);
 
@@ -224,14 +1114,10 @@ public class SimpleMRSServices implements MRSServices {
             
             for (CSVRecord r : rentalsList) {
                 long id = Long.parseLong(r.get(RentalHeaders.ID));
-                LocalDate rentaldate = LocalDate.parse(r.get(RentalHeaders.RentalDate));
+                LocalDate rentaldate = parseDate(r.get(RentalHeaders.RentalDate));
                 long userId = Long.parseLong(r.get(RentalHeaders.UserID));
                 long movieId = Long.parseLong(r.get(RentalHeaders.MovieID));
-                User u = users.get(userId);
-                Movie m = movies.get(movieId);
-                Rental rental = new Rental(u, m, rentaldate);
-                setId(rental, id);
-                rentals.put(id, rental);
+                restoreRental(id, userId, movieId, rentaldate);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -264,10 +1150,44 @@ public class SimpleMRSServices implements MRSServices {
         ID, RentalDate, UserID, MovieID
     }
 
-    private void setId(Object o, long id) throws Exception {
-        Field f = o.getClass().getDeclaredField("id");
-        f.setAccessible(true);
-        f.setLong(o, id);
+    /**
+     * Parse a date in the ISO format yyyy-MM-dd of the CSV files without going through a
+     * DateTimeFormatter, which is several times slower. Other formats are left to LocalDate.parse.
+     *
+     * @param text the date to parse.
+     * @return the parsed date.
+     */
+    static LocalDate parseDate(String text) {
+        if (text.length() == 10 && text.charAt(4) == '-' && text.charAt(7) == '-') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 7);
+            int day = digits(text, 8, 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(text);
+    }
+
+    /**
+     * @return the value of the decimal digits from begin to end, or -1 if there is a non-digit.
+     */
+    private static int digits(String text, int begin, int end) {
+        int value = 0;
+        for (int i = begin; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /** Opens the CSV file with the given name. */
+    @FunctionalInterface
+    private interface CsvSource {
+        Reader open(String name) throws IOException;
     }
 
 }
@@ -0,0 +1,206 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.User;
+
+/**
+ * A compact binary snapshot of the in-memory back-end. The file holds the id counter, all movies, users
+ * and rentals, each as a count followed by fixed-order fields, and ends with a CRC32 checksum of the
+ * content. Dates are stored as epoch days.
+ * <p>
+ * A snapshot is written to a temporary file next to the target, forced to disk and then moved over the
+ * target, so a crash while writing never destroys the previous snapshot.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x4D525332; // "MRS2", movies with price category
+    /** Snapshots of the previous version are still read; their movies have the default price category. */
+    private static final int MAGIC_V1 = 0x4D525331; // "MRS1"
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A rental as stored, referring to its user and movie by id.
+     */
+    static final class RentalRow {
+        final long id;
+        final long userId;
+        final long movieId;
+        final LocalDate rentalDate;
+
+        RentalRow(long id, long userId, long movieId, LocalDate rentalDate) {
+            this.id = id;
+            this.userId = userId;
+            this.movieId = movieId;
+            this.rentalDate = rentalDate;
+        }
+    }
+
+    /**
+     * The content of a snapshot.
+     */
+    static final class Contents {
+        final long nextId;
+        final List<Movie> movies;
+        final List<User> users;
+        final List<RentalRow> rentals;
+
+        Contents(long nextId, List<Movie> movies, List<User> users, List<RentalRow> rentals) {
+            this.nextId = nextId;
+            this.movies = movies;
+            this.users = users;
+            this.rentals = rentals;
+        }
+    }
+
+    /**
+     * Write a snapshot. The collections may change while they are written; each object is written as
+     * it is when it is reached.
+     *
+     * @param file the snapshot to replace.
+     * @param nextId the next id to be generated.
+     * @param movies all movies.
+     * @param users all users.
+     * @param rentals all rentals.
+     * @throws IOException if the snapshot cannot be written. The previous snapshot is left in place.
+     */
+    static void write(Path file, long nextId, Collection<Movie> movies, Collection<User> users,
+            Collection<Rental> rentals) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+                CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE),
+                        new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(MAGIC);
+                out.writeLong(nextId);
+                writeMovies(out, new ArrayList<>(movies));
+                writeUsers(out, new ArrayList<>(users));
+                writeRentals(out, new ArrayList<>(rentals));
+                out.writeLong(checked.getChecksum().getValue());
+                out.flush();
+                fos.getFD().sync();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeMovies(DataOutputStream out, List<Movie> movies) throws IOException {
+        out.writeInt(movies.size());
+        for (Movie m : movies) {
+            out.writeLong(m.getMovieid());
+            out.writeUTF(m.getTitle());
+            out.writeLong(m.getReleaseDate().toEpochDay());
+            out.writeByte(m.getAgeRating());
+            out.writeUTF(m.getPriceCategory().getName());
+        }
+    }
+
+    private static void writeUsers(DataOutputStream out, List<User> users) throws IOException {
+        out.writeInt(users.size());
+        for (User u : users) {
+            out.writeLong(u.getUserid());
+            out.writeUTF(u.getName());
+            out.writeUTF(u.getFirstName());
+            out.writeLong(u.getBirthdate().toEpochDay());
+        }
+    }
+
+    private static void writeRentals(DataOutputStream out, List<Rental> rentals) throws IOException {
+        out.writeInt(rentals.size());
+        for (Rental r : rentals) {
+            out.writeLong(r.getRentalId());
+            out.writeLong(r.getUser().getUserid());
+            out.writeLong(r.getMovie().getMovieid());
+            out.writeLong(r.getRentalDate().toEpochDay());
+        }
+    }
+
+    /**
+     * Read a snapshot.
+     *
+     * @param file the snapshot to read.
+     * @return its content.
+     * @throws IOException if the snapshot cannot be read, is no snapshot or is corrupt.
+     */
+    static Contents read(Path file) throws IOException {
+        // reading the whole file at once lets the checksum be verified before anything is parsed
+        byte[] content = Files.readAllBytes(file);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        int magic = content.length < Integer.BYTES + Long.BYTES ? 0 : in.readInt();
+        if (magic != MAGIC && magic != MAGIC_V1) {
+            throw new IOException(file + " is not a snapshot");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length - Long.BYTES);
+        if (ByteBuffer.wrap(content, content.length - Long.BYTES, Long.BYTES).getLong() != crc.getValue()) {
+            throw new IOException(file + " is corrupt");
+        }
+        long nextId = in.readLong();
+        List<Movie> movies = readMovies(in, magic == MAGIC);
+        List<User> users = readUsers(in);
+        List<RentalRow> rentals = readRentals(in);
+        return new Contents(nextId, movies, users, rentals);
+    }
+
+    private static List<Movie> readMovies(DataInputStream in, boolean priced) throws IOException {
+        int count = in.readInt();
+        List<Movie> movies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong();
+            Movie m = new Movie(in.readUTF(), LocalDate.ofEpochDay(in.readLong()), in.readByte());
+            if (priced) {
+                m.setPriceCategory(Journal.readPriceCategory(in));
+            }
+            m.setId(id);
+            movies.add(m);
+        }
+        return movies;
+    }
+
+    private static List<User> readUsers(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong();
+            User u = new User(in.readUTF(), in.readUTF(), LocalDate.ofEpochDay(in.readLong()));
+            u.setId(id);
+            users.add(u);
+        }
+        return users;
+    }
+
+    private static List<RentalRow> readRentals(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<RentalRow> rentals = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rentals.add(new RentalRow(in.readLong(), in.readLong(), in.readLong(),
+                    LocalDate.ofEpochDay(in.readLong())));
+        }
+        return rentals;
+    }
+
+    // prevent instantiation
+    private SnapshotFile() {
+    }
+}
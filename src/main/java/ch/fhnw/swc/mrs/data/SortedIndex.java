@@ -0,0 +1,138 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Ids ordered by a key of their objects, ties ordered by id, so a range of keys is found in O(log n) and
+ * walked in key order. Changes of one id must not run concurrently; they are done under that object's
+ * lock stripe. Lookups may run concurrently with changes.
+ *
+ * @param <K> the type of the key.
+ */
+final class SortedIndex<K extends Comparable<? super K>> {
+
+    private final NavigableSet<Entry<K>> entries = new ConcurrentSkipListSet<>();
+    /** The key each id is currently indexed with, needed when a key changes. */
+    private final Map<Long, K> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Index an id with a key, replacing the key it was indexed with before.
+     *
+     * @param id the id of the object.
+     * @param key the key of the object, not <code>null</code>.
+     */
+    void put(long id, K key) {
+        K old = keys.put(id, key);
+        if (!key.equals(old)) {
+            entries.add(new Entry<>(key, id));
+            if (old != null) {
+                entries.remove(new Entry<>(old, id));
+            }
+        }
+    }
+
+    /**
+     * @param id the id to remove from the index.
+     */
+    void remove(long id) {
+        K old = keys.remove(id);
+        if (old != null) {
+            entries.remove(new Entry<>(old, id));
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        keys.clear();
+    }
+
+    /**
+     * Walk the ids whose keys are within the given bounds.
+     *
+     * @param from the lowest key, inclusive; <code>null</code> for no lower bound.
+     * @param to the highest key, inclusive; <code>null</code> for no upper bound.
+     * @param descending whether to walk from the highest key and id to the lowest.
+     * @return the ids in the order of their keys, then ids.
+     */
+    Iterable<Long> range(K from, K to, boolean descending) {
+        NavigableSet<Entry<K>> range = entries;
+        if (from != null && to != null && from.compareTo(to) > 0) {
+            return Collections.emptyList();
+        } else if (from != null && to != null) {
+            range = entries.subSet(new Entry<>(from, Long.MIN_VALUE), true, new Entry<>(to, Long.MAX_VALUE), true);
+        } else if (from != null) {
+            range = entries.tailSet(new Entry<>(from, Long.MIN_VALUE), true);
+        } else if (to != null) {
+            range = entries.headSet(new Entry<>(to, Long.MAX_VALUE), true);
+        }
+        NavigableSet<Entry<K>> ordered = descending ? range.descendingSet() : range;
+        return () -> current(ordered.iterator());
+    }
+
+    /**
+     * While a key changes, an id is briefly indexed with both keys; only its current entry counts.
+     */
+    private Iterator<Long> current(Iterator<Entry<K>> it) {
+        return new Iterator<Long>() {
+            private Long next = advance();
+
+            private Long advance() {
+                while (it.hasNext()) {
+                    Entry<K> e = it.next();
+                    if (e.key.equals(keys.get(e.id))) {
+                        return e.id;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Long next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Long result = next;
+                next = advance();
+                return result;
+            }
+        };
+    }
+
+    private static final class Entry<K extends Comparable<? super K>> implements Comparable<Entry<K>> {
+        private final K key;
+        private final long id;
+
+        Entry(K key, long id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry<K> other) {
+            int c = key.compareTo(other.key);
+            return c != 0 ? c : Long.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry<?> e && id == e.id && key.equals(e.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, id);
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * An inverted index over the words of movie titles. Titles are split into lower-case words without
+ * accents; every word points to the titles containing it and its positions there.
+ * <p>
+ * A word of a query matches a word of a title exactly, as its prefix or, from three letters on, with up
+ * to one typo (two from six letters on). Words in double quotes form a phrase and must follow each other
+ * in the title, the last one possibly as prefix. A title must match every word and phrase of the query.
+ * Matches are ranked by how rare the matched words are and how exact the match is, shorter titles first
+ * on ties; only the best are kept while ranking.
+ * <p>
+ * The index is updated title by title and is safe to use from several threads at once.
+ */
+final class TitleIndex {
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private static final double EXACT = 1.0;
+    private static final double PREFIX = 0.5;
+    private static final double ONE_TYPO = 0.5;
+    private static final double TWO_TYPOS = 0.3;
+    /** Bonus for the share of the title's words matched, so "Matrix" ranks before "Matrix Reloaded". */
+    private static final double COVERAGE = 0.5;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** The words of each indexed title in their order. */
+    private final Map<Long, String[]> titles = new HashMap<>();
+    /** For each word, the positions of the word in each title containing it. */
+    private final NavigableMap<String, Map<Long, int[]>> postings = new TreeMap<>();
+    /** For each bigram, the words containing it, to find words with typos. */
+    private final Map<String, Set<String>> wordsByBigram = new HashMap<>();
+
+    /**
+     * Index a title, replacing the title indexed before under the same id.
+     *
+     * @param id the id of the movie.
+     * @param title the title of the movie.
+     */
+    void put(long id, String title) {
+        String[] words = tokenize(title).toArray(new String[0]);
+        Lock w = lock.writeLock();
+        w.lock();
+        try {
+            unindex(id);
+            titles.put(id, words);
+            for (int i = 0; i < words.length; i++) {
+                int position = i;
+                postings.computeIfAbsent(words[i], this::newWord).merge(id, new int[] {position}, (a, b) -> {
+                    int[] positions = Arrays.copyOf(a, a.length + 1);
+                    positions[a.length] = position;
+                    return positions;
+                });
+            }
+        } finally {
+            w.unlock();
+        }
+    }
+
+    /**
+     * Remove a title from the index.
+     *
+     * @param id the id of the movie.
+     */
+    void remove(long id) {
+        Lock w = lock.writeLock();
+        w.lock();
+        try {
+            unindex(id);
+        } finally {
+            w.unlock();
+        }
+    }
+
+    /**
+     * Remove all titles from the index.
+     */
+    void clear() {
+        Lock w = lock.writeLock();
+        w.lock();
+        try {
+            titles.clear();
+            postings.clear();
+            wordsByBigram.clear();
+        } finally {
+            w.unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed titles.
+     */
+    int size() {
+        Lock r = lock.readLock();
+        r.lock();
+        try {
+            return titles.size();
+        } finally {
+            r.unlock();
+        }
+    }
+
+    /**
+     * Search titles.
+     *
+     * @param query words and phrases in double quotes to search for.
+     * @param limit the maximum number of results.
+     * @return the ids of the best matching titles, the best first.
+     */
+    List<Long> search(String query, int limit) {
+        List<List<String>> clauses = parse(query);
+        if (clauses.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Lock r = lock.readLock();
+        r.lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (List<String> clause : clauses) {
+                Map<Long, Double> matches = clause.size() == 1 ? matchWord(clause.get(0)) : matchPhrase(clause);
+                if (scores == null) {
+                    scores = matches;
+                } else {
+                    Map<Long, Double> both = new HashMap<>();
+                    for (Map.Entry<Long, Double> e : scores.entrySet()) {
+                        Double score = matches.get(e.getKey());
+                        if (score != null) {
+                            both.put(e.getKey(), e.getValue() + score);
+                        }
+                    }
+                    scores = both;
+                }
+                if (scores.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+            int words = clauses.stream().mapToInt(List::size).sum();
+            return best(scores, words, limit);
+        } finally {
+            r.unlock();
+        }
+    }
+
+    /**
+     * Keep the best results in a heap of the given size, whose head is the worst of them.
+     */
+    private List<Long> best(Map<Long, Double> scores, int words, int limit) {
+        Map<Long, Double> ranked = new HashMap<>();
+        for (Map.Entry<Long, Double> e : scores.entrySet()) {
+            double coverage = Math.min(1.0, (double) words / Math.max(1, titles.get(e.getKey()).length));
+            ranked.put(e.getKey(), e.getValue() + COVERAGE * coverage);
+        }
+        Comparator<Long> better = Comparator.<Long>comparingDouble(ranked::get).reversed()
+                .thenComparing(Comparator.naturalOrder());
+        PriorityQueue<Long> heap = new PriorityQueue<>(limit + 1, better.reversed());
+        for (Long id : ranked.keySet()) {
+            heap.add(id);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<Long> result = new ArrayList<>(heap);
+        result.sort(better);
+        return result;
+    }
+
+    /**
+     * @return for every title containing the word, exactly, as prefix or with typos, the best score.
+     */
+    private Map<Long, Double> matchWord(String word) {
+        Map<Long, Double> scores = new HashMap<>();
+        for (Map.Entry<String, Map<Long, int[]>> e : prefixed(word).entrySet()) {
+            double weight = e.getKey().equals(word) ? EXACT : PREFIX * word.length() / e.getKey().length() + PREFIX;
+            addBest(scores, e.getValue().keySet(), weight * idf(e.getValue()));
+        }
+        int maxTypos = word.length() >= 6 ? 2 : word.length() >= 3 ? 1 : 0;
+        if (maxTypos > 0) {
+            for (String candidate : similarWords(word, maxTypos)) {
+                int typos = distance(word, candidate, maxTypos);
+                if (typos > 0 && typos <= maxTypos) {
+                    Map<Long, int[]> posting = postings.get(candidate);
+                    addBest(scores, posting.keySet(), (typos == 1 ? ONE_TYPO : TWO_TYPOS) * idf(posting));
+                }
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * @return for every title containing the words one after the other, the last one possibly as prefix,
+     *         the sum of the word's scores.
+     */
+    private Map<Long, Double> matchPhrase(List<String> phrase) {
+        int last = phrase.size() - 1;
+        List<Map<Long, int[]>> exact = new ArrayList<>();
+        double score = 0;
+        for (String word : phrase.subList(0, last)) {
+            Map<Long, int[]> posting = postings.get(word);
+            if (posting == null) {
+                return Collections.emptyMap();
+            }
+            exact.add(posting);
+            score += idf(posting);
+        }
+        Map<Long, Double> scores = new HashMap<>();
+        for (Map.Entry<String, Map<Long, int[]>> e : prefixed(phrase.get(last)).entrySet()) {
+            double lastScore = (e.getKey().equals(phrase.get(last)) ? EXACT : PREFIX) * idf(e.getValue());
+            for (Map.Entry<Long, int[]> title : e.getValue().entrySet()) {
+                if (follows(exact, title.getKey(), title.getValue())) {
+                    addBest(scores, Set.of(title.getKey()), score + lastScore);
+                }
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * @return whether the words of the postings are found in the title right before one of the given
+     *         positions of the last word.
+     */
+    private static boolean follows(List<Map<Long, int[]>> words, long id, int[] lastPositions) {
+        for (int end : lastPositions) {
+            int start = end - words.size();
+            boolean found = start >= 0;
+            for (int i = 0; found && i < words.size(); i++) {
+                int[] positions = words.get(i).get(id);
+                found = positions != null && contains(positions, start + i);
+            }
+            if (found) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(int[] positions, int position) {
+        for (int p : positions) {
+            if (p == position) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addBest(Map<Long, Double> scores, Set<Long> ids, double score) {
+        for (Long id : ids) {
+            scores.merge(id, score, Math::max);
+        }
+    }
+
+    /**
+     * @return the words starting with the given one, itself included.
+     */
+    private NavigableMap<String, Map<Long, int[]>> prefixed(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Rare words weigh more than common ones.
+     */
+    private double idf(Map<Long, int[]> posting) {
+        return Math.log(1.0 + (double) titles.size() / posting.size());
+    }
+
+    /**
+     * A substitution, insertion or deletion changes at most two bigrams of a word, a swap of neighbouring
+     * letters three; so a word within the given number of typos shares all but three bigrams per typo.
+     *
+     * @return the indexed words sharing enough bigrams with the given word to be within maxTypos of it.
+     */
+    private Set<String> similarWords(String word, int maxTypos) {
+        Set<String> grams = bigrams(word);
+        int required = Math.max(1, grams.size() - 3 * maxTypos);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String bigram : grams) {
+            Set<String> words = wordsByBigram.get(bigram);
+            if (words != null) {
+                for (String w : words) {
+                    shared.merge(w, 1, Integer::sum);
+                }
+            }
+        }
+        Set<String> result = new HashSet<>();
+        for (Map.Entry<String, Integer> e : shared.entrySet()) {
+            if (e.getValue() >= required) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    private Map<Long, int[]> newWord(String word) {
+        for (String bigram : bigrams(word)) {
+            wordsByBigram.computeIfAbsent(bigram, t -> new HashSet<>()).add(word);
+        }
+        return new HashMap<>();
+    }
+
+    /**
+     * Must be called while holding the write lock.
+     */
+    private void unindex(long id) {
+        String[] words = titles.remove(id);
+        if (words == null) {
+            return;
+        }
+        for (String word : new HashSet<>(Arrays.asList(words))) {
+            Map<Long, int[]> posting = postings.get(word);
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                postings.remove(word);
+                for (String bigram : bigrams(word)) {
+                    Set<String> similar = wordsByBigram.get(bigram);
+                    similar.remove(word);
+                    if (similar.isEmpty()) {
+                        wordsByBigram.remove(bigram);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Split a query into clauses: every word outside double quotes is a clause of its own, the words in
+     * double quotes form one clause.
+     *
+     * @param query the query, may be <code>null</code>.
+     * @return the clauses, each with at least one word.
+     */
+    static List<List<String>> parse(String query) {
+        List<List<String>> clauses = new ArrayList<>();
+        if (query == null) {
+            return clauses;
+        }
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            List<String> words = tokenize(parts[i]);
+            if (i % 2 == 1 && i < parts.length - 1) {
+                if (!words.isEmpty()) {
+                    clauses.add(words);
+                }
+            } else {
+                words.forEach(w -> clauses.add(List.of(w)));
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * @param text the text to split.
+     * @return the lower-case words of the text without accents.
+     */
+    static List<String> tokenize(String text) {
+        String plain = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        List<String> words = new ArrayList<>();
+        for (String word : SEPARATORS.split(plain.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return the bigrams of the word framed by blanks; a word with one typo shares at least one of them.
+     */
+    private static Set<String> bigrams(String word) {
+        String framed = " " + word + " ";
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + 2 <= framed.length(); i++) {
+            result.add(framed.substring(i, i + 2));
+        }
+        return result;
+    }
+
+    /**
+     * Number of insertions, deletions, substitutions and swaps of neighbouring letters that turn one
+     * word into the other (optimal string alignment distance).
+     *
+     * @param a one word.
+     * @param b the other word.
+     * @param max the largest distance of interest.
+     * @return the distance, or max + 1 if it is larger than max.
+     */
+    static int distance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] twoBack = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, twoBack[j - 2] + 1);
+                }
+                current[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] t = twoBack;
+            twoBack = previous;
+            previous = current;
+            current = t;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+}
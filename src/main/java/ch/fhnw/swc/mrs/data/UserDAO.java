@@ -2,11 +2,15 @@ package ch.fhnw.swc.mrs.data;
 
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
 
 import ch.fhnw.swc.mrs.api.MovieRentalException;
+import ch.fhnw.swc.mrs.api.PageRequest;
 import ch.fhnw.swc.mrs.model.User;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
@@ -22,6 +26,12 @@ public class UserDAO {
     private static final String GET_ALL_USERS = "SELECT u FROM User u";
     /** Query to get user by name. */
     private static final String GET_USER_BY_NAME = "SELECT u FROM User u WHERE u.name = :name";
+    /** Query to get a user by id, used with an entity graph. */
+    private static final String GET_USER_BY_ID = "SELECT u FROM User u WHERE u.id = :id";
+    /** Query to get users following a given id. */
+    private static final String GET_USERS_AFTER = "SELECT u FROM User u WHERE u.id > :after ORDER BY u.id";
+    /** Number of rows fetched from the database at once when streaming. */
+    private static final int FETCH_SIZE = 256;
     
     /** Exception message when user could not be deleted. */
     private static final String EXC_DELETE_FAILED = "User could not be deleted - maybe it didn't exist in the database";
@@ -47,11 +57,40 @@ public class UserDAO {
      * @return a list of all users.
      */
     public List<User> getAll() {
-        TypedQuery<User> query = em.createQuery(GET_ALL_USERS, User.class);
+        TypedQuery<User> query = em.createQuery(GET_ALL_USERS, User.class)
+                .setHint(HibernateHints.HINT_CACHEABLE, true);
         List<User> result = query.getResultList();
         return result;
     }
 
+    /**
+     * Retrieve one page of users ordered by id. One user more than the page's limit is returned if
+     * available, telling that there is a next page.
+     * 
+     * @param page the page to retrieve.
+     * @return up to limit + 1 users.
+     */
+    public List<User> getPage(PageRequest page) {
+        return em.createQuery(GET_USERS_AFTER, User.class)
+                .setParameter("after", page.getAfterId())
+                .setFirstResult(page.getOffset())
+                .setMaxResults(page.getLimit() + 1)
+                .getResultList();
+    }
+
+    /**
+     * Stream all users ordered by id. The users are fetched from the database in chunks while the
+     * stream is consumed.
+     * 
+     * @return a lazy stream of all users. It must be closed after use.
+     */
+    public Stream<User> streamAll() {
+        return em.createQuery(GET_USERS_AFTER, User.class)
+                .setParameter("after", Long.MIN_VALUE)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .getResultStream();
+    }
+
     /**
      * Retrieve a user by his/her identification.
      * 
@@ -62,6 +101,21 @@ public class UserDAO {
         return em.find(User.class, userid);
     }
 
+    /**
+     * Retrieve a user together with its rentals and their movies, in a single statement. Unlike
+     * {@link #getById(long)} the rentals of the user can still be read once the EntityManager is
+     * closed, e.g. to compute the charge.
+     * 
+     * @param userid the unique identification of the user object to retrieve.
+     * @return the user with the given identification or <code>null</code> if none found.
+     */
+    public User getByIdWithRentals(long userid) {
+        List<User> result = em.createQuery(GET_USER_BY_ID, User.class).setParameter("id", userid)
+                .setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, em.getEntityGraph(User.WITH_RENTALS))
+                .getResultList();
+        return result.isEmpty() ? null : result.get(0);
+    }
+
     /**
      * Retrieve a user by his/her name. Use the family name to retrieve a list of all users with
      * that name. Note this method does not support wildcards!
@@ -70,20 +124,27 @@ public class UserDAO {
      * @return a list of users with the given name.
      */
     public List<User> getByName(String name) {
-        TypedQuery<User> query = em.createQuery(GET_USER_BY_NAME, User.class).setParameter("name", name);
+        TypedQuery<User> query = em.createQuery(GET_USER_BY_NAME, User.class).setParameter("name", name)
+                .setHint(HibernateHints.HINT_CACHEABLE, true);
         List<User> result = query.getResultList();
         return result;
     }
     
     /**
      * Persist a User object. Use this method either when storing a new User object or for updating
-     * an existing one.
+     * an existing one. An existing user keeps its rentals and rental count, only the data of the given
+     * object is copied onto it.
      * 
      * @param user the object to persist.
      */
     public void saveOrUpdate(User user) {
         executeInsideTransaction(em -> {
-            if (user.getUserid() != 0) {
+            User stored = user.getUserid() != 0 ? em.find(User.class, user.getUserid()) : null;
+            if (stored != null && stored != user) {
+                stored.setName(user.getName());
+                stored.setFirstName(user.getFirstName());
+                stored.setBirthdate(user.getBirthdate());
+            } else if (user.getUserid() != 0) {
                 em.merge(user);
             } else {
                 em.persist(user);
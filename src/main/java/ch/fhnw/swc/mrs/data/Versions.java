@@ -0,0 +1,72 @@
+package ch.fhnw.swc.mrs.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ch.fhnw.swc.mrs.api.ResourceVersion;
+
+/**
+ * Version counters of one kind of objects and of their collection. Every change of an object gives the
+ * object and the collection a new version. Objects not changed since the counters were started or reset
+ * share the base version.
+ * <p>
+ * Version numbers start at the current time in microseconds, so they keep growing over restarts of the
+ * application and a version handed out before a restart is not handed out again for different data.
+ */
+final class Versions {
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Map<Long, ResourceVersion> versions = new ConcurrentHashMap<>();
+    private final AtomicReference<ResourceVersion> collection = new AtomicReference<>();
+    private volatile ResourceVersion base;
+
+    Versions() {
+        reset();
+    }
+
+    /**
+     * Record a change of an object, including its creation and deletion. Call after the change is
+     * visible, so whoever sees the new version also sees the new data.
+     *
+     * @param id the identification of the changed object.
+     */
+    void changed(long id) {
+        ResourceVersion v = next();
+        versions.put(id, v);
+        collection.accumulateAndGet(v, Versions::newer);
+    }
+
+    /**
+     * Forget all recorded versions, e.g. after all objects have been replaced.
+     */
+    void reset() {
+        versions.clear();
+        base = next();
+        collection.accumulateAndGet(base, Versions::newer);
+    }
+
+    /**
+     * @param id the identification of an object.
+     * @return the current version of the object.
+     */
+    ResourceVersion of(long id) {
+        return versions.getOrDefault(id, base);
+    }
+
+    /**
+     * @return the current version of the collection of all objects.
+     */
+    ResourceVersion ofAll() {
+        return collection.get();
+    }
+
+    private ResourceVersion next() {
+        return new ResourceVersion(clock.incrementAndGet(), System.currentTimeMillis());
+    }
+
+    private static ResourceVersion newer(ResourceVersion a, ResourceVersion b) {
+        return a == null || b.getVersion() > a.getVersion() ? b : a;
+    }
+}
@@ -0,0 +1,29 @@
+package ch.fhnw.swc.mrs.model;
+
+/**
+ * Children's movies cost 1.50 for the first three days and 1.50 for every further day.
+ */
+public final class ChildrenPriceCategory extends PriceCategory {
+
+    private static final ChildrenPriceCategory INSTANCE = new ChildrenPriceCategory();
+
+    private ChildrenPriceCategory() {
+        super("Children");
+    }
+
+    /**
+     * @return the only instance of this price category.
+     */
+    public static ChildrenPriceCategory getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    protected double computeCharge(int daysRented) {
+        double result = 1.5d;
+        if (daysRented > 3) {
+            result += (daysRented - 3) * 1.5d;
+        }
+        return result;
+    }
+}
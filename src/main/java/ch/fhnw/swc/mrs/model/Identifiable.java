@@ -0,0 +1,18 @@
+package ch.fhnw.swc.mrs.model;
+
+/**
+ * An object identified by a numeric id, which is assigned once by the back-end that stores it.
+ */
+public interface Identifiable {
+    /**
+     * @return the id, or 0 if none has been assigned yet.
+     */
+    long getId();
+
+    /**
+     * Assign the id. An id can only be set once; further calls are ignored.
+     * 
+     * @param id the id to use, must not be 0.
+     */
+    void setId(long id);
+}
@@ -4,8 +4,13 @@ import java.time.LocalDate;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -17,9 +22,13 @@ import jakarta.persistence.Table;
  */
 @Entity
 @Table(name = "MOVIES")
-public class Movie {
-    static final int MIN_AGE_RATING_AGE = 0;
-    static final int MAX_AGE_RATING_AGE = 18;
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "movies")
+public class Movie implements Identifiable {
+    /** Lowest age rating of a movie. */
+    public static final int MIN_AGE_RATING_AGE = 0;
+    /** Highest age rating of a movie. */
+    public static final int MAX_AGE_RATING_AGE = 18;
     static final int DEFAULT_AGE_RATING = MIN_AGE_RATING_AGE;
     
     /** Exception text: Illegal value for age rating was used. */
@@ -30,6 +39,8 @@ public class Movie {
     public static final String EXC_MISSING_TITLE = "Title must not be null nor emtpy";
     /** Exception text: Release date must not be null. */
     public static final String EXC_MISSING_RELEASE_DATE = "Release date must not be null";
+    /** Exception text: Price category must not be null. */
+    public static final String EXC_MISSING_PRICE_CATEGORY = "Price category must not be null";
 
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -48,6 +59,12 @@ public class Movie {
     @Column(name = "AGERATING", nullable = false)
     private int ageRating;
 
+    /** Determines the fees of the rentals of this movie. */
+    @Column(name = "PRICECATEGORY", nullable = false)
+    @ColumnDefault("'Regular'")
+    @Convert(converter = PriceCategoryConverter.class)
+    private PriceCategory priceCategory = PriceCategory.getDefault();
+
     /** Logger used to produce logs. */
     private static Logger log = LogManager.getLogger(Movie.class);
 
@@ -73,6 +90,21 @@ public class Movie {
         log.trace("exiting Movie(String, Date, int)");
     }
 
+    /**
+     * Objects initialized with this constructor are not ready for use. They must be assigned an id!
+     * 
+     * @param aTitle Title of the movie. Must not be null nor empty.
+     * @param aReleaseDate Date when this movie was released. Must not be null.
+     * @param anAgeRating How old a user must be at least to be allowed to rent this Movie. A value
+     *            between [0, 18].
+     * @param aPriceCategory Determines the rental fees. Must not be null.
+     * @throws IllegalArgumentException in case, any of the parameters are null or title is empty.
+     */
+    public Movie(String aTitle, LocalDate aReleaseDate, int anAgeRating, PriceCategory aPriceCategory) {
+        this(aTitle, aReleaseDate, anAgeRating);
+        setPriceCategory(aPriceCategory);
+    }
+
     /**
      * @return unique identification number of this Movie.
      * @throws IllegalStateException when trying to retrieve id before it was set.
@@ -91,6 +123,16 @@ public class Movie {
             this.id = id;
         }
     }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(long id) {
+        setMovieId(id);
+    }
     
     /**
      * @return The title of this Movie.
@@ -172,6 +214,27 @@ public class Movie {
         log.trace("exiting setAgeRating");
     }
 
+    /**
+     * @return the price category determining the rental fees of this movie.
+     */
+    public PriceCategory getPriceCategory() {
+        log.trace("in getPriceCategory");
+        return priceCategory;
+    }
+
+    /**
+     * @param aPriceCategory the price category determining the rental fees of this movie.
+     */
+    public void setPriceCategory(PriceCategory aPriceCategory) {
+        log.trace("entering setPriceCategory");
+        if (aPriceCategory == null) {
+            log.trace("exiting setPriceCategory throwing IllegalArgumentException");
+            throw new IllegalArgumentException(EXC_MISSING_PRICE_CATEGORY);
+        }
+        priceCategory = aPriceCategory;
+        log.trace("exiting setPriceCategory");
+    }
+
     @Override
     public int hashCode() {
         log.trace("entering hashCode");
@@ -0,0 +1,25 @@
+package ch.fhnw.swc.mrs.model;
+
+/**
+ * New releases cost 3.00 per day.
+ */
+public final class NewReleasePriceCategory extends PriceCategory {
+
+    private static final NewReleasePriceCategory INSTANCE = new NewReleasePriceCategory();
+
+    private NewReleasePriceCategory() {
+        super("New Release");
+    }
+
+    /**
+     * @return the only instance of this price category.
+     */
+    public static NewReleasePriceCategory getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    protected double computeCharge(int daysRented) {
+        return daysRented * 3.0d;
+    }
+}
@@ -0,0 +1,173 @@
+package ch.fhnw.swc.mrs.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The price category of a movie determines the fee of its rentals, depending on the number of days a
+ * movie is rented. A rental is charged for at least one day.
+ * <p>
+ * Each category computes its fees once, when it is created, for the first {@link #FEE_TABLE_DAYS} days.
+ * Looking up a fee is then an array access in the final method {@link #getCharge(int)}, which does not
+ * allocate, so billing runs over many rentals stay cheap. Longer rentals are computed on demand.
+ * <p>
+ * The categories in use are listed by class name in the resource {@value #CONFIG}, one per line. They are
+ * loaded once, on the first call of {@link #getByName(String)} or {@link #getAll()}; each class must
+ * provide a static method <code>getInstance()</code>.
+ */
+public abstract class PriceCategory {
+
+    /** Number of days whose fees are computed in advance: {@value}. */
+    public static final int FEE_TABLE_DAYS = 366;
+    /** The resource listing the price categories: {@value}. */
+    public static final String CONFIG = "/data/pricecategories.config";
+    /** Exception text: unknown price category. */
+    public static final String EXC_UNKNOWN_CATEGORY = "unknown price category: ";
+
+    /** Logger used to produce logs. */
+    private static Logger log = LogManager.getLogger(PriceCategory.class);
+
+    private final String name;
+    private final double[] fees = new double[FEE_TABLE_DAYS];
+
+    /**
+     * Create a price category and compute its fee table. {@link #computeCharge(int)} is called from this
+     * constructor, so it must only depend on constants.
+     *
+     * @param name the name of the category, unique among all categories.
+     */
+    protected PriceCategory(String name) {
+        this.name = name;
+        for (int days = 1; days < FEE_TABLE_DAYS; days++) {
+            fees[days] = computeCharge(days);
+        }
+        fees[0] = fees[1];
+    }
+
+    /**
+     * Compute the fee of a rental.
+     *
+     * @param daysRented the number of days a movie is rented, at least 1.
+     * @return the fee.
+     */
+    protected abstract double computeCharge(int daysRented);
+
+    /**
+     * Get the fee of a rental.
+     *
+     * @param daysRented the number of days a movie is rented; less than one day is charged as one day.
+     * @return the fee.
+     */
+    public final double getCharge(int daysRented) {
+        if (daysRented < FEE_TABLE_DAYS) {
+            return fees[Math.max(daysRented, 0)];
+        }
+        return computeCharge(daysRented);
+    }
+
+    /**
+     * @return the name of this category, used to store it.
+     */
+    public final String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * @return the price category of movies that have none set: {@link RegularPriceCategory}.
+     */
+    public static PriceCategory getDefault() {
+        return RegularPriceCategory.getInstance();
+    }
+
+    /**
+     * @param name the name of a configured price category.
+     * @return the price category with that name.
+     * @throws IllegalArgumentException if no such category is configured.
+     */
+    public static PriceCategory getByName(String name) {
+        PriceCategory result = Registry.CATEGORIES.get(name);
+        if (result == null) {
+            throw new IllegalArgumentException(EXC_UNKNOWN_CATEGORY + name);
+        }
+        return result;
+    }
+
+    /**
+     * @return the configured price categories in the order of the configuration.
+     */
+    public static List<PriceCategory> getAll() {
+        return Registry.ALL;
+    }
+
+    /**
+     * Holds the configured categories, loaded when first used.
+     */
+    private static final class Registry {
+        private static final Map<String, PriceCategory> CATEGORIES = load();
+        private static final List<PriceCategory> ALL =
+                Collections.unmodifiableList(new ArrayList<>(CATEGORIES.values()));
+
+        /**
+         * Load the categories listed in {@link PriceCategory#CONFIG}. Without a configuration the built-in
+         * categories are used; classes that cannot be loaded are logged and skipped.
+         */
+        private static Map<String, PriceCategory> load() {
+            Map<String, PriceCategory> result = new LinkedHashMap<>();
+            try (InputStream in = PriceCategory.class.getResourceAsStream(CONFIG)) {
+                if (in == null) {
+                    log.warn("{} not found, using the built-in price categories", CONFIG);
+                    register(result, RegularPriceCategory.getInstance());
+                    register(result, ChildrenPriceCategory.getInstance());
+                    register(result, NewReleasePriceCategory.getInstance());
+                    return result;
+                }
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String className = line.trim();
+                    if (!className.isEmpty() && !className.startsWith("#")) {
+                        register(result, instantiate(className));
+                    }
+                }
+            } catch (IOException e) {
+                log.error("cannot read " + CONFIG, e);
+            }
+            if (!result.containsKey(getDefault().getName())) {
+                register(result, getDefault());
+            }
+            return result;
+        }
+
+        private static PriceCategory instantiate(String className) {
+            try {
+                Class<? extends PriceCategory> c = Class.forName(className).asSubclass(PriceCategory.class);
+                return (PriceCategory) c.getMethod("getInstance").invoke(null);
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                log.error("cannot load price category " + className, e);
+                return null;
+            }
+        }
+
+        private static void register(Map<String, PriceCategory> categories, PriceCategory category) {
+            if (category != null) {
+                categories.put(category.getName(), category);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ch.fhnw.swc.mrs.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores a price category by its name.
+ */
+@Converter
+public class PriceCategoryConverter implements AttributeConverter<PriceCategory, String> {
+
+    @Override
+    public String convertToDatabaseColumn(PriceCategory category) {
+        return category == null ? null : category.getName();
+    }
+
+    @Override
+    public PriceCategory convertToEntityAttribute(String name) {
+        return name == null ? PriceCategory.getDefault() : PriceCategory.getByName(name);
+    }
+}
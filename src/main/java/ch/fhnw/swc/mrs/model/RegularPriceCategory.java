@@ -0,0 +1,29 @@
+package ch.fhnw.swc.mrs.model;
+
+/**
+ * Regular movies cost 2.00 for the first two days and 1.50 for every further day.
+ */
+public final class RegularPriceCategory extends PriceCategory {
+
+    private static final RegularPriceCategory INSTANCE = new RegularPriceCategory();
+
+    private RegularPriceCategory() {
+        super("Regular");
+    }
+
+    /**
+     * @return the only instance of this price category.
+     */
+    public static RegularPriceCategory getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    protected double computeCharge(int daysRented) {
+        double result = 2.0d;
+        if (daysRented > 2) {
+            result += (daysRented - 2) * 1.5d;
+        }
+        return result;
+    }
+}
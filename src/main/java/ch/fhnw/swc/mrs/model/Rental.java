@@ -1,18 +1,22 @@
 package ch.fhnw.swc.mrs.model;
 
 import java.time.LocalDate;
-import java.time.Period;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import ch.fhnw.swc.mrs.api.MovieRentalException;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
 
@@ -20,8 +24,14 @@ import jakarta.persistence.Table;
  * Represents a rental.
  */
 @Entity
-@Table(name = "RENTALS")
-public class Rental {
+@Table(name = "RENTALS", indexes = @Index(name = "rentals_userid_idx", columnList = "userid"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "rentals")
+@NamedEntityGraph(name = Rental.WITH_MOVIE_AND_USER,
+    attributeNodes = {@NamedAttributeNode("movie"), @NamedAttributeNode("user")})
+public class Rental implements Identifiable {
+    /** Name of the entity graph that loads a rental together with its movie and user. */
+    public static final String WITH_MOVIE_AND_USER = "Rental.withMovieAndUser";
     /** Trying to rent too many movies. */
     public static final String EXC_TOO_MANY_MOVIES_RENTED = "Max. " + User.MAX_RENTABLE_MOVIES + " Filme ausleihbar.";
     /** ID is already set. */
@@ -78,8 +88,7 @@ public class Rental {
      */
     public Rental(User aUser, Movie aMovie, LocalDate aRentalDate) {
         setUser(aUser);
-        List<Rental> rentals = aUser.getRentals();
-        if (rentals.size() >= User.MAX_RENTABLE_MOVIES) {
+        if (aUser.getRentalCount() >= User.MAX_RENTABLE_MOVIES) {
             throw new MovieRentalException(EXC_TOO_MANY_MOVIES_RENTED);
         }
         setMovie(aMovie);
@@ -88,9 +97,9 @@ public class Rental {
             throw new MovieRentalException(EXC_UNDER_AGE);
         }
 
-        rentals.add(this);
-        aMovie.setRented(true);
         setRentalDate(aRentalDate);
+        aUser.addRental(this);
+        aMovie.setRented(true);
     }
 
     /**
@@ -109,20 +118,52 @@ public class Rental {
             this.id = id;
         }
     }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(long id) {
+        setRentalId(id);
+    }
+
     /**
      * Calculate the duration of this rental.
      * 
      * @return the number of days this movie is rented to the user.
      */
     public int getRentalDays() {
-        return (int) ChronoUnit.DAYS.between(rentalDate, LocalDate.now());
+        return getRentalDays(LocalDate.now());
     }
 
     /**
-     * @return The rental fee to pay for this rental.
+     * Calculate the duration of this rental as of a given day.
+     * 
+     * @param day the day up to which the rental is counted.
+     * @return the number of days this movie is rented to the user until day.
+     */
+    public int getRentalDays(LocalDate day) {
+        return (int) (day.toEpochDay() - rentalDate.toEpochDay());
+    }
+
+    /**
+     * @return The rental fee to pay for this rental, according to the price category of the movie.
      */
     public double getRentalFee() {
-        return 5.0D;
+        return getRentalFee(LocalDate.now());
+    }
+
+    /**
+     * Calculate the fee as of a given day. Unlike {@link #getRentalFee()} this does not read the clock, so
+     * it does not allocate, e.g. when the fees of many rentals are summed up for one day.
+     * 
+     * @param day the day up to which the rental is charged.
+     * @return The rental fee to pay for this rental until day.
+     */
+    public double getRentalFee(LocalDate day) {
+        return movie.getPriceCategory().getCharge(getRentalDays(day));
     }
 
     /**
@@ -206,12 +247,7 @@ public class Rental {
      * @return whether the user is old enough to see the movie.
      */
     private static boolean isUserOfAge(Movie m, User u) {
-        LocalDate today = LocalDate.now();
-        LocalDate birthdate = u.getBirthdate();
-        int ageRating = m.getAgeRating();
-
-        Period age = Period.between(birthdate, today);
-        return age.getYears() >= ageRating;
+        return u.getAge() >= m.getAgeRating();
     }
 
 }
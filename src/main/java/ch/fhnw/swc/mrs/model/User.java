@@ -1,18 +1,28 @@
 package ch.fhnw.swc.mrs.model;
 
 import java.time.LocalDate;
+import java.time.Period;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+
 import ch.fhnw.swc.mrs.api.MovieRentalException;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
 /**
  * Represents the client of a movie store.
@@ -20,7 +30,15 @@ import jakarta.persistence.Table;
  */
 @Entity
 @Table(name = "USERS")
-public class User {
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@NamedEntityGraph(name = User.WITH_RENTALS,
+    attributeNodes = @NamedAttributeNode(value = "rentals", subgraph = "rental"),
+    subgraphs = @NamedSubgraph(name = "rental", attributeNodes = @NamedAttributeNode("movie")))
+public class User implements Identifiable {
+
+    /** Name of the entity graph that loads a user together with its rentals and their movies. */
+    public static final String WITH_RENTALS = "User.withRentals";
 
     /** Maximum age for a new user: {@value}. */
     public static final int MAX_USER_AGE = 120;
@@ -57,11 +75,28 @@ public class User {
     private LocalDate birthdate;
 
     /**
-     * A list of rentals of the user.
+     * A list of rentals of the user. Its cache entry is evicted whenever a rental of the user is written.
      */
     @OneToMany(mappedBy = "user", orphanRemoval = true, cascade = CascadeType.ALL)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user-rentals")
     private List<Rental> rentals = new LinkedList<Rental>();
 
+    /** The number of rentals, kept in step with the list of rentals so it is read without loading it. */
+    @Column(name = "RENTALCOUNT", nullable = false)
+    @ColumnDefault("0")
+    private int rentalCount;
+
+    /**
+     * The sum of the fees of all rentals and the day it was computed for. Fees grow with the days rented,
+     * so it is computed once per day and kept in step with the list of rentals during that day.
+     */
+    @Transient
+    private volatile Charge charge;
+
+    /** The user's age in years and the day it was computed for, so it is computed once per day. */
+    @Transient
+    private volatile Age age;
+
     /**
      * Used by JPA.
      */
@@ -147,6 +182,16 @@ public class User {
         }
     }
 
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(long id) {
+        setUserId(id);
+    }
+
     /**
      * @return get a list of the user's rentals.
      */
@@ -160,10 +205,24 @@ public class User {
     }
 
     /**
+     * Replace the user's rentals. The number of rentals is recomputed.
+     * 
      * @param someRentals set the user's rentals.
      */
     public void setRentals(List<Rental> someRentals) {
         this.rentals = someRentals;
+        rentalCount = someRentals == null ? 0 : someRentals.size();
+        charge = null;
+    }
+
+    /**
+     * The number of rentals is maintained by {@link #addRental(Rental)} and {@link #removeRental(Rental)},
+     * so reading it does not load the rentals.
+     * 
+     * @return the number of rentals of the user.
+     */
+    public int getRentalCount() {
+        return rentalCount;
     }
 
     /**
@@ -222,14 +281,49 @@ public class User {
     }
 
     /**
-     * Calculate the total charge the user has to pay for all his/her rentals.
+     * The user's age in full years as of today. It is computed on the first call of a day and reused
+     * for the rest of that day.
+     * 
+     * @return the user's age.
+     */
+    public int getAge() {
+        LocalDate today = LocalDate.now();
+        Age a = age;
+        if (a == null || !a.day.equals(today) || !a.birthdate.equals(birthdate)) {
+            a = new Age(birthdate, today);
+            age = a;
+        }
+        return a.years;
+    }
+
+    /**
+     * The total charge the user has to pay for all his/her rentals as of today. It is summed up on the
+     * first call of a day and then maintained by {@link #addRental(Rental)} and
+     * {@link #removeRental(Rental)} for the rest of that day.
      * 
      * @return the total charge.
      */
     public double getCharge() {
+        LocalDate today = LocalDate.now();
+        Charge c = charge;
+        if (c == null || !c.day.equals(today)) {
+            c = new Charge(today, getCharge(today));
+            charge = c;
+        }
+        return c.amount;
+    }
+
+    /**
+     * Sum up the total charge the user has to pay for all his/her rentals as of a given day, e.g. in a
+     * billing run. No objects are allocated.
+     * 
+     * @param day the day up to which the rentals are charged.
+     * @return the total charge.
+     */
+    public double getCharge(LocalDate day) {
         double result = 0.0d;
-        for (Rental rental : rentals) {
-            result += rental.getRentalFee();
+        for (Rental rental : getRentals()) {
+            result += rental.getRentalFee(day);
         }
         return result;
     }
@@ -273,8 +367,13 @@ public class User {
      * @return number of rentals of the user
      */
     public int addRental(Rental rental) {
-        rentals.add(rental);
-        return rentals.size();
+        getRentals().add(rental);
+        rentalCount++;
+        Charge c = charge;
+        if (c != null) {
+            charge = new Charge(c.day, c.amount + rental.getRentalFee(c.day));
+        }
+        return rentalCount;
     }
 
     /**
@@ -283,7 +382,42 @@ public class User {
      * @return true if successful removed, otherwise false
      */
     public boolean removeRental(Rental rental) {
-        return rentals.remove(rental);
+        boolean removed = getRentals().remove(rental);
+        Charge c = charge;
+        if (removed) {
+            rentalCount--;
+            if (c != null) {
+                charge = new Charge(c.day, rentalCount == 0 ? 0.0d : c.amount - rental.getRentalFee(c.day));
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * A charge together with the day it was computed for.
+     */
+    private static final class Charge {
+        private final LocalDate day;
+        private final double amount;
 
+        Charge(LocalDate day, double amount) {
+            this.day = day;
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * An age in years together with the birthdate and day it was computed from.
+     */
+    private static final class Age {
+        private final LocalDate birthdate;
+        private final LocalDate day;
+        private final int years;
+
+        Age(LocalDate birthdate, LocalDate day) {
+            this.birthdate = birthdate;
+            this.day = day;
+            this.years = Period.between(birthdate, day).getYears();
+        }
     }
 }
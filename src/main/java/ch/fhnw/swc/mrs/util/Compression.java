@@ -0,0 +1,194 @@
+package ch.fhnw.swc.mrs.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Content negotiation and on-the-fly compression of response bodies. A body is compressed with gzip or
+ * deflate if the client asked for it in its Accept-Encoding header and the body is at least as large as
+ * the configured threshold. Only the first threshold bytes are buffered to take that decision; the rest
+ * of the body is compressed while it is written, so a body is never held in memory twice.
+ */
+public final class Compression {
+
+    /** Default minimal size in bytes of a body to be compressed. */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    /** The gzip content coding. */
+    public static final String GZIP = "gzip";
+    /** The deflate (zlib) content coding. */
+    public static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static volatile int threshold = DEFAULT_THRESHOLD;
+    private static volatile boolean deflateEnabled = true;
+
+    /**
+     * Configure the compression of response bodies.
+     *
+     * @param minSize the minimal size in bytes of a body to be compressed. Smaller bodies are sent as
+     *            they are, as compressing them costs more time than it saves.
+     * @param allowDeflate whether deflate may be used for clients that do not accept gzip.
+     */
+    public static void configure(int minSize, boolean allowDeflate) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("threshold must not be negative");
+        }
+        threshold = minSize;
+        deflateEnabled = allowDeflate;
+    }
+
+    /**
+     * Choose the content coding for a response. The coding with the highest quality value the client
+     * accepts is chosen; gzip is preferred over deflate if both are equally acceptable.
+     *
+     * @param acceptEncoding the value of the request's Accept-Encoding header, may be <code>null</code>.
+     * @return {@link #GZIP}, {@link #DEFLATE} or <code>null</code> if the body shall not be compressed.
+     */
+    public static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = quality(parts);
+            if (GZIP.equals(name) || "x-gzip".equals(name)) {
+                gzip = Math.max(gzip, q);
+            } else if (DEFLATE.equals(name)) {
+                deflate = Math.max(deflate, q);
+            } else if ("*".equals(name)) {
+                any = q;
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (!deflateEnabled) {
+            deflate = 0;
+        } else if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        return deflate > 0 ? DEFLATE : null;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Open the body of a response. The returned stream compresses the body if the client accepts a
+     * supported coding and the body reaches the threshold. It must be closed to complete the response.
+     *
+     * @param request the request to answer.
+     * @param response the response whose body to write.
+     * @return the stream to write the body to.
+     * @throws IOException if the response's stream cannot be opened.
+     */
+    public static OutputStream open(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.addHeader("Vary", "Accept-Encoding");
+        String coding = negotiate(String.join(",", Collections.list(request.getHeaders("Accept-Encoding"))));
+        if (coding == null) {
+            return response.getOutputStream();
+        }
+        return new ThresholdOutputStream(response, coding, threshold);
+    }
+
+    /**
+     * Buffers the beginning of a body until the threshold is reached. Then the Content-Encoding header
+     * is set and the buffer and all further output go through the compressor. A body closed below the
+     * threshold is sent uncompressed.
+     */
+    private static final class ThresholdOutputStream extends OutputStream {
+        private final HttpServletResponse response;
+        private final String coding;
+        private byte[] buffer;
+        private int count;
+        private OutputStream target;
+
+        ThresholdOutputStream(HttpServletResponse response, String coding, int size) {
+            this.response = response;
+            this.coding = coding;
+            this.buffer = new byte[size];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target == null) {
+                if (count + len < buffer.length) {
+                    System.arraycopy(b, off, buffer, count, len);
+                    count += len;
+                    return;
+                }
+                startCompression();
+            }
+            target.write(b, off, len);
+        }
+
+        private void startCompression() throws IOException {
+            response.setHeader("Content-Encoding", coding);
+            OutputStream out = response.getOutputStream();
+            target = GZIP.equals(coding) ? new GZIPOutputStream(out, BUFFER_SIZE)
+                    : new DeflaterOutputStream(out, true);
+            target.write(buffer, 0, count);
+            buffer = null;
+        }
+
+        /**
+         * Flushes only once compression has started. Below the threshold the decision whether to
+         * compress is not taken yet, so nothing can be sent.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (target != null) {
+                target.close();
+            } else if (buffer != null) {
+                response.setContentLength(count);
+                OutputStream out = response.getOutputStream();
+                out.write(buffer, 0, count);
+                out.close();
+                buffer = null;
+            }
+        }
+    }
+
+    // prevent instantiation
+    private Compression() {
+    }
+}
@@ -5,6 +5,9 @@ import spark.Response;
 
 import static spark.Spark.after;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 import spark.Filter;
 
 /**
@@ -14,11 +17,21 @@ import spark.Filter;
 public final class Filters {
 
     /**
-     * Enable GZIP for all responses.
+     * Set the JSON content type and compress the body as negotiated by {@link Compression}. Routes that
+     * streamed their body have already done so and committed the response.
      */
-    private static Filter addGzipHeader = (Request request, Response response) -> {
+    private static Filter compressBody = (Request request, Response response) -> {
+        if (response.raw().isCommitted()) {
+            return;
+        }
         response.header("Content-Type", "application/json");
-        response.header("Content-Encoding", "gzip");
+        String body = response.body();
+        if (body == null || body.isEmpty()) {
+            return;
+        }
+        try (OutputStream out = Compression.open(request.raw(), response.raw())) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
     };
 
     /**
@@ -32,7 +45,7 @@ public final class Filters {
      * Set up after-filters (called after each get/post)
      */
     public static void afterGetPost() {
-        after("*", Filters.addGzipHeader);
+        after("*", Filters.compressBody);
     }
 
     private Filters() {
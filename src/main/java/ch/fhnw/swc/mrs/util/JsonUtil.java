@@ -1,7 +1,13 @@
 package ch.fhnw.swc.mrs.util;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
@@ -53,6 +59,37 @@ public final class JsonUtil {
         }
     }
 
+    /**
+     * Write DTO as JSON directly to a stream, without building a String first. The stream is closed
+     * afterwards.
+     * 
+     * @param out the stream to write to.
+     * @param data the dto.
+     * @throws IOException if writing to the stream fails.
+     */
+    public static void writeJson(OutputStream out, Object data) throws IOException {
+        mapper.writeValue(out, data);
+    }
+
+    /**
+     * Write the elements as a JSON array directly to a stream. The elements are serialized one by one
+     * while iterating, so they need not be in memory all at once. The output is not flushed after each
+     * element but only when the stream's buffer is full. The stream is closed afterwards.
+     * 
+     * @param out the stream to write to.
+     * @param elements the elements of the array.
+     * @throws IOException if writing to the stream fails.
+     */
+    public static void writeJsonArray(OutputStream out, Iterator<?> elements) throws IOException {
+        try (SequenceWriter array = mapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .writeValuesAsArray(out)) {
+            while (elements.hasNext()) {
+                array.write(elements.next());
+            }
+        }
+    }
+
     /**
      * Convert JSON to DTO.
      * @param data data from which the data to be deserialized.
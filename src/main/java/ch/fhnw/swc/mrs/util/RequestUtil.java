@@ -1,5 +1,11 @@
 package ch.fhnw.swc.mrs.util;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+import ch.fhnw.swc.mrs.api.MovieQuery;
+import ch.fhnw.swc.mrs.api.PageRequest;
 import spark.Request;
 
 /**
@@ -7,6 +13,11 @@ import spark.Request;
  */
 public final class RequestUtil {
 
+    /** The sort keys of the catalogue query by their names in requests. */
+    private static final Map<String, MovieQuery.Order> SORT_KEYS = Map.of("id", MovieQuery.Order.ID,
+            "title", MovieQuery.Order.TITLE, "releaseDate", MovieQuery.Order.RELEASE_DATE,
+            "ageRating", MovieQuery.Order.AGE_RATING);
+
     /**
      * Extract the parameter /:id from the request.
      * 
@@ -38,6 +49,82 @@ public final class RequestUtil {
         return request.queryParams("rented");
     }
 
+    /**
+     * Extract the pagination parameters ?limit, ?after and ?offset from the request. If ?after is
+     * given, the page starts after that id, else it starts at ?offset.
+     * 
+     * @param request the request to get the attributes from.
+     * @return the requested page or <code>null</code> if none of the parameters is present.
+     * @throws IllegalArgumentException if a parameter is not a number or the offset is negative.
+     */
+    public static PageRequest getParamPage(Request request) {
+        String limit = request.queryParams("limit");
+        String after = request.queryParams("after");
+        String offset = request.queryParams("offset");
+        if (limit == null && after == null && offset == null) {
+            return null;
+        }
+        try {
+            int max = limit == null ? PageRequest.DEFAULT_LIMIT : Integer.parseInt(limit);
+            if (after != null) {
+                return PageRequest.after(Long.parseLong(after), max);
+            }
+            if (offset != null) {
+                return PageRequest.offset(Integer.parseInt(offset), max);
+            }
+            return PageRequest.first(max);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("illegal page: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Extract the catalogue query parameters ?title (prefix), ?minAgeRating, ?maxAgeRating, ?releasedFrom,
+     * ?releasedTo (ISO dates) and ?sort from the request, together with ?rented and ?limit. The sort key
+     * is one of id, title, releaseDate and ageRating, preceded by a minus for descending order.
+     * 
+     * @param request the request to get the attributes from.
+     * @return the query or <code>null</code> if none of the catalogue query parameters is present.
+     * @throws IllegalArgumentException if a parameter has an illegal value.
+     */
+    public static MovieQuery getParamMovieQuery(Request request) {
+        String title = request.queryParams("title");
+        String minAge = request.queryParams("minAgeRating");
+        String maxAge = request.queryParams("maxAgeRating");
+        String from = request.queryParams("releasedFrom");
+        String to = request.queryParams("releasedTo");
+        String sort = request.queryParams("sort");
+        if (title == null && minAge == null && maxAge == null && from == null && to == null && sort == null) {
+            return null;
+        }
+        try {
+            MovieQuery query = MovieQuery.all().titleStartingWith(title)
+                    .ageRating(minAge == null ? null : Integer.valueOf(minAge),
+                            maxAge == null ? null : Integer.valueOf(maxAge))
+                    .releasedBetween(from == null ? null : LocalDate.parse(from),
+                            to == null ? null : LocalDate.parse(to));
+            String rented = getParamRented(request);
+            if (rented != null && !rented.isEmpty()) {
+                query = query.rented("true".equals(rented));
+            }
+            String limit = request.queryParams("limit");
+            if (limit != null) {
+                query = query.limit(Integer.parseInt(limit));
+            }
+            if (sort != null) {
+                boolean descending = sort.startsWith("-");
+                MovieQuery.Order order = SORT_KEYS.get(descending ? sort.substring(1) : sort);
+                if (order == null) {
+                    throw new IllegalArgumentException("illegal sort key");
+                }
+                query = query.orderBy(order, descending);
+            }
+            return query;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("illegal date", e);
+        }
+    }
+
     /**
      * Retrieve the locale from the requests session.
      * 
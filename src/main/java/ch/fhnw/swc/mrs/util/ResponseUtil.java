@@ -0,0 +1,92 @@
+package ch.fhnw.swc.mrs.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ch.fhnw.swc.mrs.api.ResourceVersion;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Utility class supporting the writing of http responses. A JSON body can be streamed directly into the
+ * response instead of being built as a String that Spark copies afterwards, so the first bytes are sent
+ * before the serialization is complete. Routes doing so return an empty String; Spark leaves an already
+ * written response untouched.
+ */
+public final class ResponseUtil {
+
+    /**
+     * Handle a conditional GET request. The version of the requested resource is sent as strong ETag
+     * and as Last-Modified header. If the client already has this version, as told by its If-None-Match
+     * or (in the absence of that) its If-Modified-Since header, the status is set to 304 Not Modified and
+     * the route need not fetch nor serialize anything.
+     * <p>
+     * Read the version before the data, so the data sent is never older than its ETag.
+     *
+     * @param request the request to answer.
+     * @param response the response to prepare.
+     * @param version the current version of the requested resource.
+     * @return whether the client's copy is still current and the response is complete without body.
+     */
+    public static boolean notModified(Request request, Response response, ResourceVersion version) {
+        String etag = "\"" + version.getVersion() + "\"";
+        response.header("ETag", etag);
+        response.header("Cache-Control", "no-cache");
+        response.raw().setDateHeader("Last-Modified", version.getLastModified());
+
+        boolean current;
+        String ifNoneMatch = request.headers("If-None-Match");
+        if (ifNoneMatch != null) {
+            current = matches(ifNoneMatch, etag);
+        } else {
+            long since = ifModifiedSince(request);
+            // http dates have a resolution of seconds
+            current = since >= 0 && version.getLastModified() / 1000 <= since / 1000;
+        }
+        if (current) {
+            response.status(StatusCodes.NOT_MODIFIED);
+        }
+        return current;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            // If-None-Match uses the weak comparison
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long ifModifiedSince(Request request) {
+        try {
+            return request.raw().getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            // an invalid date is ignored
+            return -1;
+        }
+    }
+
+    /**
+     * Open the body of a JSON response. The body is compressed as negotiated by {@link Compression}.
+     * Closing the stream completes the response.
+     *
+     * @param request the request to answer.
+     * @param response the response to write to.
+     * @return the stream to write the JSON body to.
+     * @throws IOException if the response's stream cannot be opened.
+     */
+    public static OutputStream openJson(Request request, Response response) throws IOException {
+        response.type("application/json");
+        return Compression.open(request.raw(), response.raw());
+    }
+
+    // prevent instantiation
+    private ResponseUtil() {
+    }
+}
@@ -13,8 +13,12 @@ public final class StatusCodes {
     public static final int CREATED = 201;
     /** The server successfully processed the request, and is not returning any content. */
     public static final int NO_CONTENT = 204;
+    /** The resource has not been modified since the version the client already has. */
+    public static final int NOT_MODIFIED = 304;
     /** The server cannot or will not process the request due to an apparent client error. */
     public static final int BAD_REQUEST = 400;
     /** The requested resource could not be found. */
     public static final int NOT_FOUND = 404;
+    /** The request conflicts with the current state of the resource, e.g. a movie is already rented. */
+    public static final int CONFLICT = 409;
 }
@@ -13,6 +13,9 @@ import ch.fhnw.swc.mrs.model.Movie;
  * Java FX controller class for Movies.
  */
 public class MovieController extends AbstractController {
+    /** Maximum number of movies shown for a search. */
+    private static final int SEARCH_LIMIT = 200;
+
     private Movie editing = null; // currently no movie is being edited.
     private MovieTab view;
 
@@ -20,9 +23,14 @@ public class MovieController extends AbstractController {
         this.view = view;
     }
 
+    /**
+     * Show all movies, or the movies found if there is a search query.
+     */
     @Override
     public void reload() {
-        Collection<Movie> movies = getBackend().getAllMovies();
+        String query = view.search.getText();
+        Collection<Movie> movies = query.isBlank() ? getBackend().getAllMovies()
+                : getBackend().searchMovies(query, SEARCH_LIMIT);
         DefaultTableModel tm = (DefaultTableModel) view.movieTable.getModel();
 
         tm.setRowCount(0);
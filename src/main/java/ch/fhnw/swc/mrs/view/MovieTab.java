@@ -15,6 +15,8 @@ import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.LayoutStyle;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 
 /**
@@ -31,6 +33,7 @@ public class MovieTab extends JPanel {
     JTextField title = new JTextField();
     JButton cancel = new JButton("Cancel");
     JTable movieTable = new JTable();
+    JTextField search = new JTextField();
 
     private MovieController controller;
 
@@ -63,6 +66,21 @@ public class MovieTab extends JPanel {
         ageRating.setModel(new DefaultComboBoxModel<Integer>(AGE_RATINGS));
         ageRating.setToolTipText("Please select a minimum age to be allowed to rent this movie.");
 
+        search.setToolTipText("Search movies by words of their title, phrases in double quotes.");
+        search.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                controller.reload();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                controller.reload();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                controller.reload();
+            }
+        });
+
         cancel.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
                 controller.handleCancel();
@@ -111,11 +129,15 @@ public class MovieTab extends JPanel {
         JLabel titleLabel = new JLabel("Movie Title:");
         JLabel releaseDateLabel = new JLabel("Release Date:");
         JLabel ageRatingLabel = new JLabel("Age rating:");
+        JLabel searchLabel = new JLabel("Search:");
 
         GroupLayout layout = new GroupLayout(this);
         JScrollPane scrollPane = new JScrollPane(movieTable);
         setLayout(layout);
         layout.setHorizontalGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING)
+                .addGroup(layout.createSequentialGroup().addContainerGap().addComponent(searchLabel)
+                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(search, GroupLayout.DEFAULT_SIZE, 412, Short.MAX_VALUE).addContainerGap())
                 .addGroup(GroupLayout.Alignment.TRAILING,
                         layout.createSequentialGroup().addContainerGap(149, Short.MAX_VALUE).addComponent(cancel)
                                 .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED).addComponent(newMovie)
@@ -134,7 +156,11 @@ public class MovieTab extends JPanel {
                         .addContainerGap())
                 .addComponent(scrollPane, GroupLayout.DEFAULT_SIZE, 527, Short.MAX_VALUE));
         layout.setVerticalGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING)
-                .addGroup(GroupLayout.Alignment.TRAILING, layout.createSequentialGroup()
+                .addGroup(GroupLayout.Alignment.TRAILING, layout.createSequentialGroup().addContainerGap()
+                        .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE).addComponent(searchLabel)
+                                .addComponent(search, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE,
+                                        GroupLayout.PREFERRED_SIZE))
+                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
                         .addComponent(scrollPane, GroupLayout.DEFAULT_SIZE, 346, Short.MAX_VALUE).addGap(18, 18, 18)
                         .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE).addComponent(titleLabel)
                                 .addComponent(title, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE,
@@ -18,20 +18,35 @@ public class RentMovieController extends AbstractController {
         this.view = view;
     }
 
+    /**
+     * Show the movies the chosen user may rent, or all available movies while no user is chosen.
+     */
     @Override
     public void reload() {
-        Collection<Movie> movies = getBackend().getAllMovies(false);
+        view.newUser.setSelected(false);
+        if (found != null) {
+            found = getBackend().getUserById(found.getUserid());
+        }
+        fillMovies();
+        if (found != null) {
+            setFoundUserState(found);
+        } else {
+            clearAllFields();
+            setReadyEnabling();
+        }
+    }
+
+    private void fillMovies() {
+        Collection<Movie> movies = found == null ? null : getBackend().getRentableMovies(found.getUserid());
+        if (movies == null) {
+            movies = getBackend().getAllMovies(false);
+        }
         DefaultTableModel tm = (DefaultTableModel) view.movieTable.getModel();
 
         tm.setRowCount(0);
         for (Movie m : movies) {
             tm.addRow(fillInMovieArrayElement(m));
         }
-
-        clearAllFields();
-        setReadyEnabling();
-
-        view.newUser.setSelected(false);
     }
 
     private Object[] fillInMovieArrayElement(Movie movie) {
@@ -90,6 +105,8 @@ public class RentMovieController extends AbstractController {
     }
 
     void handleClearAll() {
+        found = null;
+        fillMovies();
         view.newUser.setSelected(false);
         setReadyEnabling();
         clearAllFields();
@@ -111,7 +128,9 @@ public class RentMovieController extends AbstractController {
         found = getBackend().getUserByName(username);
         if (found != null) {
             setFoundUserState(found);
+            fillMovies();
         } else {
+            fillMovies();
             JOptionPane.showMessageDialog(null, "No user found with given id or surname.");
             view.surname.requestFocus();
         }
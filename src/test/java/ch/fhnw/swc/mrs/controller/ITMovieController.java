@@ -0,0 +1,103 @@
+package ch.fhnw.swc.mrs.controller;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import ch.fhnw.swc.mrs.Application;
+import ch.fhnw.swc.mrs.util.StatusCodes;
+
+@Tag("integration")
+class ITMovieController {
+
+    private String baseUrl = "http://localhost:";
+
+    @BeforeAll
+    static void startApplication() throws Exception {
+        Application.main(null);
+    }
+
+    @BeforeEach
+    void setPort() throws Exception {
+        baseUrl = baseUrl + Application.getPort();
+    }
+
+    @DisplayName("Search movie titles, with typos and a limit")
+    @Test
+    void testSearchMovies() {
+        given().when().get(baseUrl + "/movies/search?q=matrx").then().statusCode(StatusCodes.OK)
+                .body("$", hasSize(2)).body("[0].title", equalTo("Matrix"));
+        long id = given().body("{\"id\": 0, \"title\": \"Matrix Revisited\", \"releaseDate\": \"2001-11-20\", "
+                + "\"ageRating\": 0}").when().post(baseUrl + "/movies")
+                .then().statusCode(StatusCodes.CREATED).extract().jsonPath().getLong("id");
+
+        given().when().get(baseUrl + "/movies/search?q=matrix").then().body("$", hasSize(3));
+        given().when().get(baseUrl + "/movies/search?q=matrix&limit=1").then().body("$", hasSize(1));
+        given().queryParam("q", "matrix revis").when().get(baseUrl + "/movies/search").then()
+                .body("$", hasSize(1)).body("[0].id", equalTo((int) id));
+
+        given().when().delete(baseUrl + "/movies/" + id).then().statusCode(StatusCodes.NO_CONTENT);
+        given().when().get(baseUrl + "/movies/search?q=revisited").then().body("$", hasSize(0));
+    }
+
+    @DisplayName("A search needs a query")
+    @Test
+    void testSearchWithoutQuery() {
+        given().when().get(baseUrl + "/movies/search").then().statusCode(StatusCodes.BAD_REQUEST);
+        given().queryParam("q", " ").when().get(baseUrl + "/movies/search").then().statusCode(StatusCodes.BAD_REQUEST);
+        given().when().get(baseUrl + "/movies/search?q=up&limit=x").then().statusCode(StatusCodes.BAD_REQUEST);
+    }
+
+    @DisplayName("Illegal page parameters are rejected")
+    @Test
+    void testIllegalPage() {
+        given().when().get(baseUrl + "/movies?limit=x").then().statusCode(StatusCodes.BAD_REQUEST);
+        given().when().get(baseUrl + "/movies?after=x").then().statusCode(StatusCodes.BAD_REQUEST);
+        given().when().get(baseUrl + "/movies?offset=-1").then().statusCode(StatusCodes.BAD_REQUEST);
+        given().when().get(baseUrl + "/users?offset=x").then().statusCode(StatusCodes.BAD_REQUEST);
+        given().when().get(baseUrl + "/rentals?limit=1x").then().statusCode(StatusCodes.BAD_REQUEST);
+        given().when().get(baseUrl + "/movies?offset=0&limit=2").then().statusCode(StatusCodes.OK);
+    }
+
+    @DisplayName("Query the catalogue by several criteria at once")
+    @Test
+    void testQueryMovies() {
+        given().when().get(baseUrl + "/movies?title=Matrix&sort=-releaseDate").then().statusCode(StatusCodes.OK)
+                .body("$", hasSize(2)).body("[0].title", equalTo("Matrix"));
+        given().when().get(baseUrl + "/movies?minAgeRating=12&releasedFrom=1990-01-01&sort=ageRating&limit=1")
+                .then().statusCode(StatusCodes.OK).body("$", hasSize(1)).body("[0].ageRating", equalTo(12));
+        given().when().get(baseUrl + "/movies?maxAgeRating=6&rented=true").then().statusCode(StatusCodes.OK)
+                .body("ageRating", everyItem(lessThanOrEqualTo(6))).body("rented", everyItem(equalTo(true)));
+
+        given().when().get(baseUrl + "/movies?sort=popularity").then().statusCode(StatusCodes.BAD_REQUEST);
+        given().when().get(baseUrl + "/movies?releasedFrom=yesterday").then().statusCode(StatusCodes.BAD_REQUEST);
+        given().when().get(baseUrl + "/movies?minAgeRating=x").then().statusCode(StatusCodes.BAD_REQUEST);
+    }
+
+    @DisplayName("Movies are created with and show their price category")
+    @Test
+    void testPriceCategory() {
+        given().when().get(baseUrl + "/movies?title=Juno").then().body("[0].priceCategory", equalTo("Regular"));
+        long id = given().body("{\"id\": 0, \"title\": \"Up\", \"releaseDate\": \"2009-05-29\", "
+                + "\"ageRating\": 0, \"priceCategory\": \"Children\"}").when().post(baseUrl + "/movies")
+                .then().statusCode(StatusCodes.CREATED).body("priceCategory", equalTo("Children"))
+                .extract().jsonPath().getLong("id");
+        given().when().get(baseUrl + "/movies/" + id).then().body("priceCategory", equalTo("Children"));
+        given().when().delete(baseUrl + "/movies/" + id).then().statusCode(StatusCodes.NO_CONTENT);
+    }
+
+    @AfterAll
+    static void stopSpark() throws Exception {
+        Application.stop();
+        Thread.sleep(1000);
+    }
+}
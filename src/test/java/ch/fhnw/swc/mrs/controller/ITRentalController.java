@@ -0,0 +1,213 @@
+package ch.fhnw.swc.mrs.controller;
+
+import static io.restassured.RestAssured.get;
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import ch.fhnw.swc.mrs.Application;
+import ch.fhnw.swc.mrs.util.StatusCodes;
+import io.restassured.path.json.JsonPath;
+
+@Tag("integration")
+class ITRentalController {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private String baseUrl = "http://localhost:";
+
+    @BeforeAll
+    static void startApplication() throws Exception {
+        Application.main(null);
+    }
+
+    @BeforeEach
+    void setPort() throws Exception {
+        baseUrl = baseUrl + Application.getPort();
+    }
+
+    @DisplayName("Create, list, look up by user and delete a rental")
+    @Test
+    void testRentalRoutes() {
+        int before = new JsonPath(get(baseUrl + "/rentals").asString()).getInt("size()");
+        long id = given().body("{\"userId\": 13, \"movieId\": 18}").when().post(baseUrl + "/rentals")
+                .then().statusCode(StatusCodes.CREATED)
+                .body("movieId", equalTo(18))
+                .body("rentalDate", equalTo(LocalDate.now().toString()))
+                .extract().jsonPath().getLong("id");
+
+        assertEquals(before + 1, new JsonPath(get(baseUrl + "/rentals").asString()).getInt("size()"));
+        given().when().get(baseUrl + "/users/13/rentals").then().statusCode(StatusCodes.OK)
+                .body("$", hasSize(1)).body("[0].id", equalTo((int) id));
+        given().when().get(baseUrl + "/rentals?limit=2").then().statusCode(StatusCodes.OK)
+                .body("items", hasSize(2));
+        given().body("{\"userId\": 7, \"movieId\": 18}").when().post(baseUrl + "/rentals")
+                .then().statusCode(StatusCodes.CONFLICT);
+
+        given().when().delete(baseUrl + "/rentals/" + id).then().statusCode(StatusCodes.NO_CONTENT);
+        given().when().delete(baseUrl + "/rentals/" + id).then().statusCode(StatusCodes.NOT_FOUND);
+        given().when().get(baseUrl + "/users/13/rentals").then().body("$", hasSize(0));
+        given().when().get(baseUrl + "/users/4711/rentals").then().statusCode(StatusCodes.NOT_FOUND);
+    }
+
+    @DisplayName("List the movies a user may rent")
+    @Test
+    void testRentableMovies() {
+        List<Integer> ratings = given().when().get(baseUrl + "/users/13/rentable-movies")
+                .then().statusCode(StatusCodes.OK).extract().jsonPath().getList("ageRating", Integer.class);
+        assertEquals(new JsonPath(get(baseUrl + "/movies?rented=false").asString()).getInt("size()"), ratings.size());
+        given().when().get(baseUrl + "/users/13/rentable-movies").then().body("rented", everyItem(equalTo(false)));
+        // user 14 was born on 2017-08-01
+        int age = Period.between(LocalDate.of(2017, 8, 1), LocalDate.now()).getYears();
+        given().when().get(baseUrl + "/users/14/rentable-movies").then()
+                .body("ageRating", everyItem(lessThanOrEqualTo(age))).body("id", hasItem(8));
+        given().when().get(baseUrl + "/users/4711/rentable-movies").then().statusCode(StatusCodes.NOT_FOUND);
+    }
+
+    /**
+     * Concurrent requests to the rental routes of the in-memory back-end. Every thread rents and returns
+     * a movie of its own and looks up the rentals of its user and of a seed user in between.
+     */
+    @DisplayName("Rental routes serve concurrent requests")
+    @Test
+    void testConcurrentRentals() throws Exception {
+        int threads = 8;
+        int rounds = 20;
+        List<Long> userIds = new ArrayList<>();
+        List<Long> movieIds = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            userIds.add(given().body("{\"name\": \"Load\", \"firstname\": \"No" + t
+                    + "\", \"birthDate\": \"1980-01-01\"}").when().post(baseUrl + "/users")
+                    .then().statusCode(StatusCodes.CREATED).extract().jsonPath().getLong("id"));
+            movieIds.add(given().body("{\"id\": 0, \"title\": \"Load " + t
+                    + "\", \"releaseDate\": \"2020-01-01\", \"ageRating\": 0}").when().post(baseUrl + "/movies")
+                    .then().statusCode(StatusCodes.CREATED).extract().jsonPath().getLong("id"));
+        }
+
+        HttpClient client = HttpClient.newHttpClient();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long user = userIds.get(t);
+            long movie = movieIds.get(t);
+            tasks.add(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    HttpResponse<String> created = send(client, HttpRequest.newBuilder(uri("/rentals"))
+                            .POST(BodyPublishers.ofString("{\"userId\": " + user + ", \"movieId\": " + movie + "}")),
+                            StatusCodes.CREATED);
+                    long id = MAPPER.readTree(created.body()).get("id").asLong();
+                    HttpResponse<String> own = send(client, HttpRequest.newBuilder(uri("/users/" + user + "/rentals")),
+                            StatusCodes.OK);
+                    assertEquals(1, MAPPER.readTree(own.body()).size());
+                    send(client, HttpRequest.newBuilder(uri("/users/" + (i % 14 + 1) + "/rentals")), StatusCodes.OK);
+                    send(client, HttpRequest.newBuilder(uri("/rentals/" + id)).DELETE(), StatusCodes.NO_CONTENT);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        for (long user : userIds) {
+            given().when().get(baseUrl + "/users/" + user + "/rentals").then().body("$", hasSize(0));
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static HttpResponse<String> send(HttpClient client, HttpRequest.Builder request, int status)
+            throws Exception {
+        HttpResponse<String> response = client.send(request.build(), BodyHandlers.ofString());
+        assertEquals(status, response.statusCode(), response.body());
+        return response;
+    }
+
+    @DisplayName("Rent and return several movies in one call each")
+    @Test
+    void testRentAndReturnBatch() {
+        JsonPath rentals = given().body("{\"userId\": 7, \"movieIds\": [14, 16], \"rentalDate\": \"2024-01-15\"}")
+                .when().post(baseUrl + "/rentals/batch")
+                .then().statusCode(StatusCodes.CREATED)
+                .body("$", hasSize(2))
+                .body("[0].userId", equalTo(7))
+                .body("[1].movieId", equalTo(16))
+                .body("[0].rentalDate", equalTo("2024-01-15"))
+                .extract().jsonPath();
+        given().when().get(baseUrl + "/movies/14").then().body("rented", equalTo(true));
+
+        List<Long> ids = rentals.getList("id", Long.class);
+        given().body("{\"rentalIds\": " + ids + "}").when().post(baseUrl + "/rentals/batch/return")
+                .then().statusCode(StatusCodes.NO_CONTENT);
+        given().when().get(baseUrl + "/movies/16").then().body("rented", equalTo(false));
+    }
+
+    @DisplayName("A batch that cannot be rented completely rents nothing")
+    @Test
+    void testRentBatchRefused() {
+        int available = new JsonPath(get(baseUrl + "/movies?rented=false").asString()).getInt("size()");
+
+        // movie 2 is rented already
+        given().body("{\"userId\": 8, \"movieIds\": [15, 2]}").when().post(baseUrl + "/rentals/batch")
+                .then().statusCode(StatusCodes.CONFLICT);
+        // user 14 is too young for movie 7
+        given().body("{\"userId\": 14, \"movieIds\": [8, 7]}").when().post(baseUrl + "/rentals/batch")
+                .then().statusCode(StatusCodes.CONFLICT);
+        // more than the maximum number of movies
+        given().body("{\"userId\": 9, \"movieIds\": [4, 11, 12, 17]}").when().post(baseUrl + "/rentals/batch")
+                .then().statusCode(StatusCodes.CONFLICT);
+
+        assertEquals(available, new JsonPath(get(baseUrl + "/movies?rented=false").asString()).getInt("size()"));
+    }
+
+    @DisplayName("Malformed batches and unknown rentals are refused")
+    @Test
+    void testBadBatches() {
+        given().body("{\"movieIds\": [4]}").when().post(baseUrl + "/rentals/batch")
+                .then().statusCode(StatusCodes.BAD_REQUEST);
+        given().body("[4]").when().post(baseUrl + "/rentals/batch")
+                .then().statusCode(StatusCodes.BAD_REQUEST);
+        given().body("{\"rentalIds\": [1, 4711]}").when().post(baseUrl + "/rentals/batch/return")
+                .then().statusCode(StatusCodes.NOT_FOUND);
+        given().when().get(baseUrl + "/movies/1").then().body("rented", equalTo(true));
+    }
+
+    @AfterAll
+    static void stopSpark() throws Exception {
+        Application.stop();
+        Thread.sleep(1000);
+    }
+}
@@ -1,6 +1,7 @@
 package ch.fhnw.swc.mrs.controller;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -11,12 +12,16 @@ import org.junit.jupiter.api.Test;
 
 import ch.fhnw.swc.mrs.Application;
 import ch.fhnw.swc.mrs.util.StatusCodes;
+import io.restassured.config.DecoderConfig;
+import io.restassured.config.RestAssuredConfig;
 import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.RestAssured.get;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.startsWith;
 
 @Tag("integration")
 class ITUserController {
@@ -25,6 +30,7 @@ class ITUserController {
 
     @BeforeAll
     static void startApplication() throws Exception {
+        System.setProperty("mrs.compression.threshold", "256");
         Application.main(null);
     }
 
@@ -98,6 +104,95 @@ class ITUserController {
         assertEquals(elementsBefore, elementsAfter);
     }
 
+    @DisplayName("Get users page by page")
+    @Test
+    void testGetUsersPaginated() {
+        String json = get(baseUrl + "/users").asString();
+        int total = new JsonPath(json).getInt("size()");
+
+        JsonPath page = new JsonPath(get(baseUrl + "/users?limit=5").asString());
+        int seen = page.getInt("items.size()");
+        assertEquals(5, seen);
+        while (page.get("nextCursor") != null) {
+            page = new JsonPath(get(baseUrl + "/users?limit=5&after=" + page.getLong("nextCursor")).asString());
+            seen += page.getInt("items.size()");
+        }
+        assertEquals(total, seen);
+    }
+
+    @DisplayName("Large bodies are compressed as negotiated")
+    @Test
+    void testGetUsersCompressed() {
+        Response gzipped = given().header("Accept-Encoding", "gzip").when().get(baseUrl + "/users");
+        gzipped.then().statusCode(StatusCodes.OK)
+                .header("Content-Type", "application/json")
+                .header("Content-Encoding", "gzip")
+                .header("Vary", "Accept-Encoding");
+        int total = new JsonPath(gzipped.asString()).getInt("size()");
+
+        Response deflated = given().header("Accept-Encoding", "gzip;q=0.5, deflate").when().get(baseUrl + "/users");
+        deflated.then().statusCode(StatusCodes.OK).header("Content-Encoding", "deflate");
+        assertEquals(total, new JsonPath(deflated.asString()).getInt("size()"));
+
+        Response plain = given().config(RestAssuredConfig.config()
+                .decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .header("Accept-Encoding", "identity").when().get(baseUrl + "/users");
+        plain.then().statusCode(StatusCodes.OK);
+        assertNull(plain.getHeader("Content-Encoding"));
+        assertEquals(total, new JsonPath(plain.asString()).getInt("size()"));
+    }
+
+    @DisplayName("Small bodies are not compressed")
+    @Test
+    void testGetUserNotCompressed() {
+        Response small = given().config(RestAssuredConfig.config()
+                .decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .header("Accept-Encoding", "gzip").when().get(baseUrl + "/users/4");
+        small.then().statusCode(StatusCodes.OK)
+                .header("Content-Type", "application/json")
+                .body("name", equalTo("Müller"));
+        assertNull(small.getHeader("Content-Encoding"));
+    }
+
+    @DisplayName("Conditional get of an unchanged user is answered with 304")
+    @Test
+    void testGetUserNotModified() {
+        Response first = get(baseUrl + "/users/7");
+        String etag = first.getHeader("ETag");
+        String lastModified = first.getHeader("Last-Modified");
+
+        given().header("If-None-Match", etag).when().get(baseUrl + "/users/7").then()
+                .statusCode(StatusCodes.NOT_MODIFIED).header("ETag", etag);
+        given().header("If-Modified-Since", lastModified).when().get(baseUrl + "/users/7").then()
+                .statusCode(StatusCodes.NOT_MODIFIED);
+        given().header("If-None-Match", etag).when().get(baseUrl + "/users").then()
+                .statusCode(StatusCodes.OK);
+
+        String body = first.asString().replace("\"firstname\":\"", "\"firstname\":\"X");
+        given().body(body).when().put(baseUrl + "/users/7").then().statusCode(StatusCodes.OK);
+        given().header("If-None-Match", etag).when().get(baseUrl + "/users/7").then()
+                .statusCode(StatusCodes.OK).body("firstname", startsWith("X"));
+    }
+
+    @DisplayName("Repeated gets are answered from the response cache until the data changes")
+    @Test
+    void testGetUserCached() {
+        ResponseCache cache = Application.getResponseCache();
+        String json = get(baseUrl + "/users/8").asString();
+        long hits = cache.getHits();
+
+        assertEquals(json, get(baseUrl + "/users/8").asString());
+        given().header("Accept-Encoding", "identity").when().get(baseUrl + "/users/8").then()
+                .statusCode(StatusCodes.OK).body("name", equalTo("Senderos"));
+        assertEquals(hits + 2, cache.getHits());
+
+        String body = json.replace("\"Albin\"", "\"Alba\"");
+        given().body(body).when().put(baseUrl + "/users/8").then().statusCode(StatusCodes.OK);
+        long misses = cache.getMisses();
+        given().when().get(baseUrl + "/users/8").then().body("firstname", equalTo("Alba"));
+        assertEquals(misses + 1, cache.getMisses());
+    }
+
     @AfterAll
     static void stopSpark() throws Exception {
         Application.stop();
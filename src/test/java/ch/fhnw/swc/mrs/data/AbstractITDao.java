@@ -1,6 +1,8 @@
 package ch.fhnw.swc.mrs.data;
 
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 
 import jakarta.persistence.EntityManagerFactory;
@@ -18,6 +20,14 @@ public class AbstractITDao {
         emf = Persistence.createEntityManagerFactory("MRS.Test");
     }
     
+    /**
+     * The tests clean up their tables with plain JDBC, around the second-level cache.
+     */
+    @AfterEach
+    void evictCaches() {
+        emf.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
     @AfterAll
     static void closeDB() throws Exception {
         emf.close();
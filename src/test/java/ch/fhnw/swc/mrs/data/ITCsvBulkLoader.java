@@ -0,0 +1,122 @@
+package ch.fhnw.swc.mrs.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.hsqldb.jdbc.JDBCDataSourceFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import ch.fhnw.swc.mrs.data.CsvBulkLoader.Result;
+import ch.fhnw.swc.mrs.data.CsvBulkLoader.Table;
+
+@Tag("integration")
+public class ITCsvBulkLoader {
+
+    private DataSource ds;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("url", "jdbc:hsqldb:mem:bulk");
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+        ds = JDBCDataSourceFactory.createDataSource(props);
+        try (Connection conn = ds.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE movies (MovieId bigint PRIMARY KEY, Title varchar(255) NOT NULL, "
+                    + "Rented boolean NOT NULL, ReleaseDate date NOT NULL, AgeRating integer NOT NULL)");
+            stmt.execute("CREATE TABLE users (UserId bigint PRIMARY KEY, Name varchar(255) NOT NULL, "
+                    + "FirstName varchar(255) NOT NULL, Birthdate date NOT NULL)");
+            stmt.execute("CREATE TABLE rentals (RentalId bigint PRIMARY KEY, MovieId bigint NOT NULL, "
+                    + "UserId bigint NOT NULL, RentalDate date NOT NULL, "
+                    + "FOREIGN KEY (MovieId) REFERENCES movies (MovieId), "
+                    + "FOREIGN KEY (UserId) REFERENCES users (UserId))");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Connection conn = ds.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP SCHEMA PUBLIC CASCADE");
+        }
+    }
+
+    @Test
+    void testLoadCatalogue() throws Exception {
+        CsvBulkLoader loader = new CsvBulkLoader(ds, 4, 8, true);
+        assertEquals(18, load(loader, Table.MOVIES, "/data/movies.csv").getLoaded());
+        assertEquals(14, load(loader, Table.USERS, "/data/users.csv").getLoaded());
+        Result rentals = load(loader, Table.RENTALS, "/data/rentals.csv");
+        assertEquals(7, rentals.getLoaded());
+        assertTrue(rentals.getRejected().isEmpty());
+
+        assertEquals(18, count("movies"));
+        assertEquals(7, count("rentals"));
+        // ids are stored negated
+        assertEquals(1, count("movies WHERE MovieId = -1 AND Title = 'Lord of the Rings'"));
+    }
+
+    @Test
+    void testRejectedRows() throws Exception {
+        String csv = "ID;Title;ReleaseDate;AgeRating\n"
+                + "1;Matrix;1999-03-11;12\n"
+                + "2;Juno;2007-13-01;12\n"      // invalid date
+                + "3;Rambo;2008-01-25;x\n"      // invalid age rating
+                + "1;Titanic;1997-12-19;12\n"   // duplicate key
+                + "4;Alien\n"                   // incomplete
+                + "5;Heat;1995-12-15;16\n"
+                + "6;Up;2009-05-29;0\n";
+        Result result = new CsvBulkLoader(ds, 2, 2, true).load(Table.MOVIES, new StringReader(csv));
+
+        assertEquals(3, result.getLoaded());
+        assertEquals(4, result.getRejected().size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i + 2, result.getRejected().get(i).getRecord());
+        }
+        assertEquals(3, count("movies"));
+        assertTrue(result.getRowsPerSecond() > 0);
+    }
+
+    @Test
+    void testRentalOfUnknownMovieRejected() throws Exception {
+        CsvBulkLoader loader = new CsvBulkLoader(ds);
+        load(loader, Table.MOVIES, "/data/movies.csv");
+        load(loader, Table.USERS, "/data/users.csv");
+        String csv = "ID;RentalDate;UserID;MovieID\n"
+                + "1;2007-06-09;1;1\n"
+                + "2;2007-06-09;1;99\n"
+                + "3;2008-02-11;3;5\n";
+        Result result = loader.load(Table.RENTALS, new StringReader(csv));
+
+        assertEquals(2, result.getLoaded());
+        assertEquals(1, result.getRejected().size());
+        assertEquals(2, result.getRejected().get(0).getRecord());
+    }
+
+    private Result load(CsvBulkLoader loader, Table table, String resource) throws Exception {
+        try (Reader in = new InputStreamReader(getClass().getResourceAsStream(resource), StandardCharsets.UTF_8)) {
+            return loader.load(table, in);
+        }
+    }
+
+    private long count(String from) throws Exception {
+        try (Connection conn = ds.getConnection(); Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + from)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
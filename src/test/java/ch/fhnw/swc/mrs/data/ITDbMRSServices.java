@@ -0,0 +1,390 @@
+package ch.fhnw.swc.mrs.data;
+
+import static org.assertj.db.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.assertj.db.type.Source;
+import org.assertj.db.type.Table;
+import org.hsqldb.jdbc.JDBCDataSourceFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import ch.fhnw.swc.mrs.api.MovieQuery;
+import ch.fhnw.swc.mrs.api.MovieRentalException;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.User;
+
+@Tag("integration")
+public class ITDbMRSServices {
+
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final LocalDate ADULT = LocalDate.of(1980, 1, 1);
+
+    private DbMRSServices services;
+
+    private Source src;
+
+    private Properties props = new Properties();
+
+    ITDbMRSServices() {
+        props.setProperty("url", "jdbc:hsqldb:mem:mrs");
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+        props.setProperty("jdbc.driver", "org.hsqldb.jdbcDriver");
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        services = new DbMRSServices("MRS.Test");
+        src = new Source("jdbc:hsqldb:mem:mrs", "sa", "");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        DataSource ds = JDBCDataSourceFactory.createDataSource(props);
+        Connection conn = ds.getConnection();
+        conn.createStatement().executeUpdate("delete from rentals");
+        conn.createStatement().executeUpdate("delete from users");
+        conn.createStatement().executeUpdate("delete from movies");
+        conn.close();
+        services.close();
+    }
+
+    @Test
+    void testCreateRental() {
+        User donald = services.createUser("Duck", "Donald", ADULT);
+        Movie matrix = services.createMovie("Matrix", LocalDate.of(1999, 3, 11), 12);
+
+        Rental r = services.createRental(donald.getUserid(), matrix.getMovieid(), TODAY);
+        assertNotNull(r);
+
+        assertThat(new Table(src, "rentals")).hasNumberOfRows(1)
+                .column("movieid").value().isEqualTo(matrix.getMovieid());
+        assertThat(new Table(src, "movies")).column("rented").value().isTrue();
+    }
+
+    @Test
+    void testCreateRentalOfRentedMovie() {
+        User donald = services.createUser("Duck", "Donald", ADULT);
+        User mickey = services.createUser("Mouse", "Mickey", ADULT);
+        Movie matrix = services.createMovie("Matrix", LocalDate.of(1999, 3, 11), 12);
+
+        assertNotNull(services.createRental(donald.getUserid(), matrix.getMovieid(), TODAY));
+        assertNull(services.createRental(mickey.getUserid(), matrix.getMovieid(), TODAY));
+        assertThat(new Table(src, "rentals")).hasNumberOfRows(1);
+    }
+
+    @Test
+    void testCreateRentalUnderAgeRollsBack() {
+        User kid = services.createUser("Duck", "Tick", TODAY.minusYears(6));
+        Movie rambo = services.createMovie("Rambo", LocalDate.of(2008, 1, 25), 16);
+
+        assertThrows(MovieRentalException.class,
+            () -> services.createRental(kid.getUserid(), rambo.getMovieid(), TODAY));
+        assertThat(new Table(src, "rentals")).hasNumberOfRows(0);
+        assertThat(new Table(src, "movies")).column("rented").value().isFalse();
+    }
+
+    @Test
+    void testCreateRentals() {
+        User donald = services.createUser("Duck", "Donald", ADULT);
+        Movie matrix = services.createMovie("Matrix", LocalDate.of(1999, 3, 11), 12);
+        Movie heat = services.createMovie("Heat", LocalDate.of(1995, 12, 15), 16);
+        Movie up = services.createMovie("Up", LocalDate.of(2009, 5, 29), 0);
+
+        List<Rental> rentals = services.createRentals(donald.getUserid(),
+                List.of(matrix.getMovieid(), heat.getMovieid()), TODAY);
+        assertEquals(2, rentals.size());
+        assertEquals(heat.getMovieid(), rentals.get(1).getMovie().getMovieid());
+        assertNull(services.createRentals(donald.getUserid(), List.of(up.getMovieid(), heat.getMovieid()), TODAY));
+        assertThat(new Table(src, "rentals")).hasNumberOfRows(2);
+        assertThat(new Table(src, "movies")).column("rented").hasValues(true, true, false);
+    }
+
+    @Test
+    void testCreateRentalsOverLimitRollsBack() {
+        User donald = services.createUser("Duck", "Donald", ADULT);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i <= User.MAX_RENTABLE_MOVIES; i++) {
+            ids.add(services.createMovie("Movie " + i, TODAY, 0).getMovieid());
+        }
+
+        assertThrows(MovieRentalException.class, () -> services.createRentals(donald.getUserid(), ids, TODAY));
+        assertThat(new Table(src, "rentals")).hasNumberOfRows(0);
+        assertTrue(services.getAllMovies(true).isEmpty());
+    }
+
+    @Test
+    void testDeleteRentals() {
+        User donald = services.createUser("Duck", "Donald", ADULT);
+        Movie matrix = services.createMovie("Matrix", LocalDate.of(1999, 3, 11), 12);
+        Movie heat = services.createMovie("Heat", LocalDate.of(1995, 12, 15), 16);
+        List<Long> ids = services.createRentals(donald.getUserid(), List.of(matrix.getMovieid(), heat.getMovieid()),
+                TODAY).stream().map(Rental::getRentalId).toList();
+
+        assertFalse(services.deleteRentals(List.of(ids.get(0), 4711L)));
+        assertThat(new Table(src, "rentals")).hasNumberOfRows(2);
+        assertTrue(services.deleteRentals(ids));
+        assertThat(new Table(src, "rentals")).hasNumberOfRows(0);
+        assertThat(new Table(src, "movies")).column("rented").hasValues(false, false);
+    }
+
+    @Test
+    void testSecondLevelCache() {
+        User donald = services.createUser("Duck", "Donald", ADULT);
+        Movie matrix = services.createMovie("Matrix", LocalDate.of(1999, 3, 11), 12);
+        services.createMovie("Heat", LocalDate.of(1995, 12, 15), 16);
+
+        CacheStatistics before = services.getCacheStatistics();
+        assertEquals("Matrix", services.getMovieById(matrix.getMovieid()).getTitle());
+        assertEquals(2, services.getAllMovies(false).size());
+        assertEquals(2, services.getAllMovies(false).size());
+        CacheStatistics after = services.getCacheStatistics();
+        assertTrue(after.getEntities().getHits() > before.getEntities().getHits());
+        assertEquals(before.getQueries().getHits() + 1, after.getQueries().getHits());
+        assertTrue(after.getRegions().get("movies").getHits() > 0);
+
+        // writes invalidate the cached query results
+        Rental r = services.createRental(donald.getUserid(), matrix.getMovieid(), TODAY);
+        assertEquals(1, services.getAllMovies(false).size());
+        assertTrue(services.getMovieById(matrix.getMovieid()).isRented());
+        assertEquals(1, services.getRentalsByUser(donald.getUserid()).size());
+        assertTrue(services.deleteRental(r.getRentalId()));
+        assertEquals(2, services.getAllMovies(false).size());
+        assertEquals(0, services.getRentalsByUser(donald.getUserid()).size());
+        assertTrue(services.getCacheStatistics().getQueries().getMisses() > after.getQueries().getMisses());
+
+        User changed = services.getUserById(donald.getUserid());
+        changed.setFirstName("Mickey");
+        assertTrue(services.updateUser(changed));
+        assertEquals("Mickey", services.getUserByName("Duck").getFirstName());
+    }
+
+    @Test
+    void testUpdateUserKeepsRentals() {
+        User donald = services.createUser("Duck", "Donald", LocalDate.of(1990, 1, 1));
+        Movie matrix = services.createMovie("The Matrix", LocalDate.of(1999, 3, 11), 12);
+        services.createRental(donald.getUserid(), matrix.getMovieid(), TODAY);
+
+        User update = new User("Drake", "Donald", LocalDate.of(1990, 1, 1));
+        update.setId(donald.getUserid());
+        assertTrue(services.updateUser(update));
+        assertEquals(1, services.getRentalsByUser(donald.getUserid()).size());
+        User stored = services.getUserById(donald.getUserid());
+        assertEquals("Drake", stored.getName());
+        assertEquals(1, stored.getRentalCount());
+    }
+
+    @Test
+    void testGetCharges() {
+        User donald = services.createUser("Duck", "Donald", LocalDate.of(1990, 1, 1));
+        Movie matrix = services.createMovie("The Matrix", LocalDate.of(1999, 3, 11), 12);
+        Movie heat = services.createMovie("Heat", LocalDate.of(1995, 12, 15), 16);
+        Rental r1 = services.createRental(donald.getUserid(), matrix.getMovieid(), TODAY.minusDays(4));
+        Rental r2 = services.createRental(donald.getUserid(), heat.getMovieid(), TODAY);
+
+        Map<Long, Double> charges = services.getCharges(TODAY);
+        assertEquals(r1.getRentalFee(TODAY) + r2.getRentalFee(TODAY), charges.get(donald.getUserid()), 0.001);
+        assertTrue(services.deleteRental(r1.getRentalId()));
+        assertEquals(r2.getRentalFee(TODAY), services.getCharges(TODAY).get(donald.getUserid()), 0.001);
+    }
+
+    @Test
+    void testSearchMovies() {
+        Movie matrix = services.createMovie("The Matrix", LocalDate.of(1999, 3, 11), 12);
+        Movie reloaded = services.createMovie("The Matrix Reloaded", LocalDate.of(2003, 5, 15), 12);
+        services.createMovie("Heat", LocalDate.of(1995, 12, 15), 16);
+
+        assertEquals(List.of(matrix, reloaded), services.searchMovies("matrx", 10));
+        assertEquals(List.of(reloaded), services.searchMovies("matrix relo", 10));
+
+        reloaded.setTitle("Revolutions");
+        assertTrue(services.updateMovie(reloaded));
+        assertEquals(List.of(matrix), services.searchMovies("matrix", 10));
+        assertTrue(services.deleteMovie(matrix.getMovieid()));
+        assertTrue(services.searchMovies("matrix", 10).isEmpty());
+        assertEquals(List.of(reloaded), services.searchMovies("revolution", 10));
+    }
+
+    @Test
+    void testFindMovies() {
+        User donald = services.createUser("Duck", "Donald", ADULT);
+        Movie matrix = services.createMovie("Matrix", LocalDate.of(1999, 3, 11), 12);
+        Movie reloaded = services.createMovie("Matrix Reloaded", LocalDate.of(2003, 5, 15), 12);
+        Movie heat = services.createMovie("Heat", LocalDate.of(1995, 12, 15), 16);
+        Movie pure = services.createMovie("100% Pure", LocalDate.of(2009, 5, 29), 0);
+        services.createMovie("1000 Days", LocalDate.of(2011, 1, 1), 0);
+        services.createRental(donald.getUserid(), reloaded.getMovieid(), TODAY);
+
+        assertEquals(List.of(matrix, reloaded), services.findMovies(MovieQuery.all().titleStartingWith("Mat")));
+        assertEquals(List.of(matrix), services.findMovies(MovieQuery.all().titleStartingWith("Mat").rented(false)));
+        assertEquals(List.of(pure), services.findMovies(MovieQuery.all().titleStartingWith("100%")));
+        assertEquals(List.of(pure, reloaded), services.findMovies(MovieQuery.all()
+                .releasedBetween(LocalDate.of(2000, 1, 1), LocalDate.of(2010, 1, 1))
+                .orderBy(MovieQuery.Order.RELEASE_DATE, true)));
+        assertEquals(List.of(heat, reloaded), services.findMovies(MovieQuery.all().ageRating(6, null)
+                .orderBy(MovieQuery.Order.AGE_RATING, true).limit(2)));
+    }
+
+    @Test
+    void testGetRentableMovies() {
+        User kid = services.createUser("Duck", "Tick", TODAY.minusYears(12));
+        User donald = services.createUser("Duck", "Donald", ADULT);
+        Movie up = services.createMovie("Up", TODAY, 0);
+        Movie matrix = services.createMovie("Matrix", TODAY, 12);
+        Movie heat = services.createMovie("Heat", TODAY, 16);
+        assertEquals(List.of(up, matrix), services.getRentableMovies(kid.getUserid()));
+        assertNull(services.getRentableMovies(4711));
+
+        services.createRental(donald.getUserid(), matrix.getMovieid(), TODAY);
+        assertEquals(List.of(up), services.getRentableMovies(kid.getUserid()));
+        services.createRentals(donald.getUserid(), List.of(up.getMovieid(), heat.getMovieid()), TODAY);
+        assertTrue(services.getRentableMovies(donald.getUserid()).isEmpty());
+        assertTrue(services.getRentableMovies(kid.getUserid()).isEmpty());
+    }
+
+    @Test
+    void testStreamMovies() {
+        User donald = services.createUser("Duck", "Donald", ADULT);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            ids.add(services.createMovie("Movie " + i, TODAY, 0).getMovieid());
+        }
+        services.createRental(donald.getUserid(), ids.get(0), TODAY);
+
+        try (Stream<Movie> movies = services.streamMovies()) {
+            assertEquals(ids, movies.map(Movie::getMovieid).collect(Collectors.toList()));
+        }
+        try (Stream<Movie> movies = services.streamMovies(false)) {
+            assertEquals(ids.subList(1, ids.size()), movies.map(Movie::getMovieid).collect(Collectors.toList()));
+        }
+        try (Stream<User> users = services.streamUsers()) {
+            assertEquals(1, users.count());
+        }
+    }
+
+    /**
+     * Every user rents the maximum number of movies one by one, each rental in a transaction of its own.
+     * The throughput is measured by DbRentalBenchmark.
+     */
+    @Test
+    void testRentalsUpToLimit() {
+        int userCount = 5;
+        List<Long> userIds = new ArrayList<>();
+        List<Long> movieIds = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            userIds.add(services.createUser("User", "No" + i, ADULT).getUserid());
+        }
+        for (int i = 0; i < userCount * User.MAX_RENTABLE_MOVIES + 1; i++) {
+            movieIds.add(services.createMovie("Movie " + i, TODAY, 0).getMovieid());
+        }
+
+        for (int i = 0; i < userCount * User.MAX_RENTABLE_MOVIES; i++) {
+            long user = userIds.get(i / User.MAX_RENTABLE_MOVIES);
+            assertNotNull(services.createRental(user, movieIds.get(i), TODAY));
+        }
+        long last = movieIds.get(movieIds.size() - 1);
+        assertThrows(MovieRentalException.class, () -> services.createRental(userIds.get(0), last, TODAY));
+        assertEquals(List.of(last), services.getAllMovies(false).stream().map(Movie::getMovieid).toList());
+        assertEquals(User.MAX_RENTABLE_MOVIES, services.getUserById(userIds.get(0)).getRentalCount());
+    }
+
+    /**
+     * Like {@link #testRentalsUpToLimit()}, but every user rents all movies in one batch, i.e. one
+     * transaction per user.
+     */
+    @Test
+    void testBatchRentalsUpToLimit() {
+        int userCount = 5;
+        List<Long> userIds = new ArrayList<>();
+        List<Long> movieIds = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            userIds.add(services.createUser("User", "No" + i, ADULT).getUserid());
+        }
+        for (int i = 0; i < userCount * User.MAX_RENTABLE_MOVIES; i++) {
+            movieIds.add(services.createMovie("Movie " + i, TODAY, 0).getMovieid());
+        }
+
+        for (int i = 0; i < userCount; i++) {
+            List<Long> batch = movieIds.subList(i * User.MAX_RENTABLE_MOVIES, (i + 1) * User.MAX_RENTABLE_MOVIES);
+            List<Rental> rentals = services.createRentals(userIds.get(i), batch, TODAY);
+            assertEquals(batch, rentals.stream().map(r -> r.getMovie().getMovieid()).toList());
+        }
+        assertTrue(services.getAllMovies(false).isEmpty());
+        for (long user : userIds) {
+            assertEquals(User.MAX_RENTABLE_MOVIES, services.getUserById(user).getRentalCount());
+        }
+    }
+
+    /**
+     * Several threads share the facade, each renting and returning movies of its own and reading shared
+     * data meanwhile. The throughput is measured by DbRentalBenchmark.
+     */
+    @Test
+    void testConcurrentRentals() throws Exception {
+        int threads = 8;
+        int rounds = 20;
+        List<Long> userIds = new ArrayList<>();
+        List<Long> movieIds = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            userIds.add(services.createUser("User", "No" + i, ADULT).getUserid());
+            for (int j = 0; j < User.MAX_RENTABLE_MOVIES; j++) {
+                movieIds.add(services.createMovie("Movie " + i + "/" + j, TODAY, 0).getMovieid());
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long user = userIds.get(t);
+            List<Long> own = movieIds.subList(t * User.MAX_RENTABLE_MOVIES, (t + 1) * User.MAX_RENTABLE_MOVIES);
+            tasks.add(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    long movie = own.get(i % own.size());
+                    Rental r = services.createRental(user, movie, TODAY);
+                    assertNotNull(r);
+                    assertTrue(services.getMovieById(movie).isRented());
+                    assertEquals(1, services.getUserById(user).getRentalCount());
+                    assertTrue(services.deleteRental(r.getRentalId()));
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertTrue(services.getAllRentals().isEmpty());
+        assertEquals(movieIds.size(), services.getAllMovies(false).size());
+        for (long user : userIds) {
+            assertEquals(0, services.getUserById(user).getRentalCount());
+        }
+    }
+}
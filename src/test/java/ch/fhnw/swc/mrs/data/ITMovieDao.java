@@ -1,5 +1,6 @@
 package ch.fhnw.swc.mrs.data;
 
+import ch.fhnw.swc.mrs.api.PageRequest;
 import ch.fhnw.swc.mrs.model.Movie;
 import org.assertj.db.type.Changes;
 import org.assertj.db.type.Source;
@@ -164,5 +165,19 @@ public class ITMovieDao extends AbstractITDao {
                 .rowAtStartPoint().value("agerating").isEqualTo(12)
                 .rowAtEndPoint().value("agerating").isEqualTo(16);
     }
-}
 
+    @Test
+    void testGetPage() {
+        List<Movie> first = dao.getPage(PageRequest.first(2));
+        assertEquals(3, first.size());
+        assertEquals(juno.getMovieid(), first.get(0).getMovieid());
+
+        List<Movie> next = dao.getPage(PageRequest.after(first.get(1).getMovieid(), 2));
+        assertEquals(1, next.size());
+        assertEquals(rambo.getMovieid(), next.get(0).getMovieid());
+
+        assertEquals(1, dao.getPage(PageRequest.offset(2, 2)).size());
+        assertEquals(3, dao.getPage(false, PageRequest.first(5)).size());
+        assertEquals(0, dao.getPage(true, PageRequest.first(5)).size());
+    }
+}
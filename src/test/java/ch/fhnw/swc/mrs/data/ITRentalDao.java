@@ -1,11 +1,14 @@
 package ch.fhnw.swc.mrs.data;
 
+import ch.fhnw.swc.mrs.model.ChildrenPriceCategory;
 import ch.fhnw.swc.mrs.model.Movie;
 import ch.fhnw.swc.mrs.model.Rental;
 import ch.fhnw.swc.mrs.model.User;
 import org.assertj.db.type.Changes;
 import org.assertj.db.type.Source;
 import org.assertj.db.type.Table;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.hsqldb.jdbc.JDBCDataSourceFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,11 +19,13 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import static org.assertj.db.api.Assertions.assertThat;
 import static org.assertj.db.output.Outputs.output;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Tag("integration")
 public class ITRentalDao extends AbstractITDao {
@@ -58,7 +63,7 @@ public class ITRentalDao extends AbstractITDao {
         dagobert = new User("Duck", "Dagobert", LocalDate.of(1945, 9, 9));
         mickey = new User("Mouse", "Mickey", LocalDate.of(1935, 11, 3));
 
-        juno = new Movie("Titanic", LocalDate.of(2007, 12, 23), 0);
+        juno = new Movie("Titanic", LocalDate.of(2007, 12, 23), 0, ChildrenPriceCategory.getInstance());
         matrix = new Movie("Matrix", LocalDate.of(1997, 3,  11), 12);
         rambo = new Movie("Rambo", LocalDate.of(2008, 1, 25), 14);
         hello = new Movie("Hello", LocalDate.of(2010, 1, 25), 0);
@@ -122,6 +127,18 @@ public class ITRentalDao extends AbstractITDao {
         output(table).toConsole();
     }
 
+    @Test
+    void testUserTotals() {
+        Table table = new Table(src, "users", new Table.Order[] {Table.Order.asc("birthdate")});
+        // Mickey, Dagobert, Donald
+        assertThat(table).column("rentalcount").value().isEqualTo(1).value().isEqualTo(1).value().isEqualTo(2);
+
+        assertTrue(new RentalDAO(getEMF().createEntityManager()).deleteAll(List.of(rental4.getRentalId())) != null);
+        User user = new UserDAO(getEMF().createEntityManager()).getById(donald.getUserid());
+        assertEquals(1, user.getRentalCount());
+        assertThat(new Table(src, "users")).column("rentalcount").containsValues(1, 1, 1);
+    }
+
     @Test
     void testDeleteNoneExisting() throws Exception {
 
@@ -148,7 +165,8 @@ public class ITRentalDao extends AbstractITDao {
         daoRental.delete(rentals.get(0));
         changes.setEndPointNow();
 
-        assertThat(changes).hasNumberOfChanges(2);
+        // the rental is deleted, the movie is returned and the user's rental count is reduced
+        assertThat(changes).hasNumberOfChanges(3);
 
         assertThat(changes).change()
                 .changeOfDeletionOnTable("RENTALS")
@@ -156,6 +174,14 @@ public class ITRentalDao extends AbstractITDao {
                 .rowAtEndPoint().doesNotExist();
     }
 
+    @Test
+    void testPriceCategory() {
+        assertThat(new Table(src, "movies")).column("pricecategory").containsValues("Children", "Regular",
+                "Regular", "Regular");
+        Movie m = new MovieDAO(getEMF().createEntityManager()).getById(juno.getMovieid());
+        assertEquals(ChildrenPriceCategory.getInstance(), m.getPriceCategory());
+    }
+
     @Test
     void testGetById() {
         List<Rental> rentals = daoRental.getAll();
@@ -168,6 +194,61 @@ public class ITRentalDao extends AbstractITDao {
         assertEquals(r, rental);
     }
 
+    @Test
+    void testGetAllWithMovieAndUser() {
+        Statistics stats = startCounting();
+        List<Rental> rentals = new RentalDAO(getEMF().createEntityManager()).getAll();
+        rentals.forEach(r -> r.getMovie().getTitle());
+        // one statement for the rentals, one for every movie and user
+        assertTrue(stats.getPrepareStatementCount() > 1);
+
+        stats = startCounting();
+        rentals = new RentalDAO(getEMF().createEntityManager()).getAllWithMovieAndUser();
+        assertEquals(4, rentals.size());
+        assertTrue(rentals.stream().anyMatch(r -> r.getMovie().getTitle().equals("Rambo")
+                && r.getUser().getFirstName().equals("Mickey")));
+        assertEquals(1, stats.getPrepareStatementCount());
+    }
+
+    @Test
+    void testGetByIdWithRentals() {
+        Statistics stats = startCounting();
+        User user;
+        try (var em = getEMF().createEntityManager()) {
+            user = new UserDAO(em).getByIdWithRentals(donald.getUserid());
+        }
+        // the rentals and their movies are loaded, no lazy loading once detached
+        assertEquals(2, user.getRentals().size());
+        assertTrue(user.getRentals().stream().anyMatch(r -> r.getMovie().getTitle().equals("Hello")));
+        assertEquals(rental1.getRentalFee() + rental4.getRentalFee(), user.getCharge(), 0.001);
+        assertEquals(1, stats.getPrepareStatementCount());
+    }
+
+    @Test
+    void testGetCharges() {
+        LocalDate day = LocalDate.of(2020, 6, 1);
+        Statistics stats = startCounting();
+        Map<Long, Double> charges = new RentalDAO(getEMF().createEntityManager()).getCharges(day);
+        // one aggregate statement, no rental is loaded
+        assertEquals(1, stats.getPrepareStatementCount());
+        assertEquals(0, stats.getEntityLoadCount());
+        assertEquals(3, charges.size());
+        assertEquals(rental1.getRentalFee(day) + rental4.getRentalFee(day), charges.get(donald.getUserid()), 0.001);
+        assertEquals(rental3.getRentalFee(day), charges.get(mickey.getUserid()), 0.001);
+        assertEquals(donald.getCharge(day), charges.get(donald.getUserid()), 0.001);
+    }
+
+    /**
+     * Empty the second-level cache, so every entity has to be read from the database, and reset the
+     * statistics.
+     */
+    private static Statistics startCounting() {
+        SessionFactory sf = getEMF().unwrap(SessionFactory.class);
+        sf.getCache().evictAllRegions();
+        sf.getStatistics().clear();
+        return sf.getStatistics();
+    }
+
     @Test
     void testGetByName() {
         List<Rental> rentals = daoRental.getAll();
@@ -0,0 +1,865 @@
+package ch.fhnw.swc.mrs.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.fhnw.swc.mrs.api.MovieQuery;
+import ch.fhnw.swc.mrs.api.MovieRentalException;
+import ch.fhnw.swc.mrs.api.Page;
+import ch.fhnw.swc.mrs.api.PageRequest;
+import ch.fhnw.swc.mrs.api.ResourceVersion;
+import ch.fhnw.swc.mrs.model.ChildrenPriceCategory;
+import ch.fhnw.swc.mrs.model.Movie;
+import ch.fhnw.swc.mrs.model.NewReleasePriceCategory;
+import ch.fhnw.swc.mrs.model.Rental;
+import ch.fhnw.swc.mrs.model.User;
+
+/**
+ * Unit and stress tests for the in-memory back-end.
+ */
+@DisplayName("Tests for class SimpleMRSServices")
+class SimpleMRSServicesTest {
+
+    private static final int THREADS = 8;
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final LocalDate BIRTHDATE = LocalDate.of(1980, 1, 1);
+
+    private SimpleMRSServices services;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        services = new SimpleMRSServices();
+        pool = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pool.shutdownNow();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @DisplayName("A movie can be rented only once")
+    @Test
+    void testRentRentedMovie() {
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        User mickey = services.createUser("Mouse", "Mickey", BIRTHDATE);
+        Movie m = services.createMovie("Matrix", TODAY, 12);
+
+        assertNotNull(services.createRental(donald.getUserid(), m.getMovieid(), TODAY));
+        assertNull(services.createRental(mickey.getUserid(), m.getMovieid(), TODAY));
+    }
+
+    @DisplayName("Name index follows created, renamed and deleted users")
+    @Test
+    void testGetUserByNameIndex() {
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        User daisy = services.createUser("Duck", "Daisy", BIRTHDATE);
+        assertEquals(donald, services.getUserByName("Duck"));
+
+        donald.setName("Drake");
+        services.updateUser(donald);
+        assertEquals(donald, services.getUserByName("Drake"));
+        assertEquals(daisy, services.getUserByName("Duck"));
+
+        services.deleteUser(daisy.getUserid());
+        assertNull(services.getUserByName("Duck"));
+    }
+
+    @DisplayName("Rented index follows rentals, returns, updates and deletes")
+    @Test
+    void testGetAllMoviesRentedIndex() {
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        Movie matrix = services.createMovie("Matrix", TODAY, 12);
+        Movie rambo = services.createMovie("Rambo", TODAY, 16);
+        assertEquals(2, services.getAllMovies(false).size());
+        assertTrue(services.getAllMovies(true).isEmpty());
+
+        Rental r = services.createRental(donald.getUserid(), matrix.getMovieid(), TODAY);
+        assertTrue(services.getAllMovies(true).contains(matrix));
+        assertFalse(services.getAllMovies(false).contains(matrix));
+
+        services.deleteRental(r.getRentalId());
+        assertFalse(services.getAllMovies(true).contains(matrix));
+
+        rambo.setRented(true);
+        services.updateMovie(rambo);
+        assertTrue(services.getAllMovies(true).contains(rambo));
+
+        services.deleteMovie(rambo.getMovieid());
+        assertTrue(services.getAllMovies(true).isEmpty());
+        assertEquals(1, services.getAllMovies(false).size());
+    }
+
+    @DisplayName("Title search follows created, renamed and deleted movies")
+    @Test
+    void testSearchMovies() {
+        Movie matrix = services.createMovie("The Matrix", TODAY, 12);
+        Movie heat = services.createMovie("Heat", TODAY, 16);
+        assertEquals(List.of(matrix), services.searchMovies("matrx", 10));
+
+        heat.setTitle("Matrix Heat");
+        services.updateMovie(heat);
+        assertEquals(List.of(heat), services.searchMovies("matrix heat", 10));
+        assertEquals(List.of(matrix, heat), services.searchMovies("matrix", 10));
+
+        services.deleteMovie(matrix.getMovieid());
+        assertEquals(List.of(heat), services.searchMovies("matrix", 10));
+        assertTrue(services.searchMovies("", 10).isEmpty());
+    }
+
+    @DisplayName("A catalogue query combines its criteria, order and limit")
+    @Test
+    void testFindMovies() {
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        Movie matrix = services.createMovie("Matrix", LocalDate.of(1999, 3, 11), 12);
+        Movie reloaded = services.createMovie("Matrix Reloaded", LocalDate.of(2003, 5, 15), 12);
+        Movie heat = services.createMovie("Heat", LocalDate.of(1995, 12, 15), 16);
+        Movie up = services.createMovie("Up", LocalDate.of(2009, 5, 29), 0);
+        services.createRental(donald.getUserid(), reloaded.getMovieid(), TODAY);
+
+        assertEquals(List.of(matrix, reloaded), services.findMovies(MovieQuery.all().titleStartingWith("Mat")));
+        assertEquals(List.of(matrix), services.findMovies(MovieQuery.all().titleStartingWith("Mat").rented(false)));
+        assertEquals(List.of(up, reloaded), services.findMovies(MovieQuery.all()
+                .releasedBetween(LocalDate.of(2000, 1, 1), null).orderBy(MovieQuery.Order.RELEASE_DATE, true)));
+        assertEquals(List.of(heat, reloaded), services.findMovies(MovieQuery.all().ageRating(6, null)
+                .orderBy(MovieQuery.Order.AGE_RATING, true).limit(2)));
+        assertEquals(List.of(up), services.findMovies(MovieQuery.all().ageRating(null, 6)));
+
+        heat.setTitle("Matrix Heat");
+        services.updateMovie(heat);
+        services.deleteMovie(matrix.getMovieid());
+        assertEquals(List.of(heat, reloaded), services.findMovies(MovieQuery.all().titleStartingWith("Matrix")
+                .orderBy(MovieQuery.Order.TITLE, false)));
+    }
+
+    @DisplayName("Catalogue queries return the same movies as filtering and sorting all movies")
+    @Test
+    void testFindMoviesRandomized() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        for (int i = 0; i < 500; i++) {
+            Movie m = services.createMovie("T" + random.nextInt(100), LocalDate.of(1990 + random.nextInt(30), 1, 1),
+                    random.nextInt(19));
+            if (random.nextInt(3) == 0) {
+                m.setRented(true);
+                services.updateMovie(m);
+            }
+        }
+        services.createRental(donald.getUserid(), services.createMovie("T1", TODAY, 0).getMovieid(), TODAY);
+
+        for (int i = 0; i < 500; i++) {
+            MovieQuery query = MovieQuery.all().limit(1 + random.nextInt(50))
+                    .orderBy(MovieQuery.Order.values()[random.nextInt(4)], random.nextBoolean());
+            if (random.nextBoolean()) {
+                query = query.rented(random.nextBoolean());
+            }
+            if (random.nextBoolean()) {
+                query = query.titleStartingWith("T" + random.nextInt(10));
+            }
+            if (random.nextBoolean()) {
+                query = query.ageRating(random.nextInt(10), random.nextBoolean() ? null : 8 + random.nextInt(10));
+            }
+            if (random.nextBoolean()) {
+                LocalDate from = LocalDate.of(1990 + random.nextInt(30), 1, 1);
+                query = query.releasedBetween(random.nextBoolean() ? null : from, from.plusYears(random.nextInt(10)));
+            }
+            assertEquals(expected(query), services.findMovies(query), "query " + i);
+        }
+    }
+
+    private List<Movie> expected(MovieQuery query) {
+        Comparator<Movie> order;
+        switch (query.getOrder()) {
+        case TITLE:
+            order = Comparator.comparing(Movie::getTitle);
+            break;
+        case RELEASE_DATE:
+            order = Comparator.comparing(Movie::getReleaseDate);
+            break;
+        case AGE_RATING:
+            order = Comparator.comparingInt(Movie::getAgeRating);
+            break;
+        default:
+            order = (a, b) -> 0;
+        }
+        order = order.thenComparingLong(Movie::getMovieid);
+        return services.getAllMovies().stream().filter(query::matches)
+                .sorted(query.isDescending() ? order.reversed() : order).limit(query.getLimit())
+                .collect(Collectors.toList());
+    }
+
+    @DisplayName("Rentable movies follow age ratings, rentals and the rental limit")
+    @Test
+    void testGetRentableMovies() {
+        User kid = services.createUser("Duck", "Tick", TODAY.minusYears(12));
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        Movie up = services.createMovie("Up", TODAY, 0);
+        Movie matrix = services.createMovie("Matrix", TODAY, 12);
+        Movie heat = services.createMovie("Heat", TODAY, 16);
+        Movie alien = services.createMovie("Alien", TODAY, 18);
+        assertEquals(List.of(up, matrix), services.getRentableMovies(kid.getUserid()));
+        assertEquals(List.of(up, matrix, heat, alien), services.getRentableMovies(donald.getUserid()));
+        assertNull(services.getRentableMovies(4711));
+
+        Rental r = services.createRental(donald.getUserid(), matrix.getMovieid(), TODAY);
+        assertEquals(List.of(up), services.getRentableMovies(kid.getUserid()));
+        matrix.setAgeRating(6);
+        services.updateMovie(matrix);
+        services.deleteRental(r.getRentalId());
+        heat.setAgeRating(12);
+        services.updateMovie(heat);
+        assertEquals(List.of(up, matrix, heat), services.getRentableMovies(kid.getUserid()));
+
+        services.createRentals(donald.getUserid(), List.of(up.getMovieid(), matrix.getMovieid(),
+                alien.getMovieid()), TODAY);
+        assertTrue(services.getRentableMovies(donald.getUserid()).isEmpty());
+        assertEquals(List.of(heat), services.getRentableMovies(kid.getUserid()));
+        services.deleteMovie(heat.getMovieid());
+        assertTrue(services.getRentableMovies(kid.getUserid()).isEmpty());
+    }
+
+    @DisplayName("Bundled data is loaded with its rentals")
+    @Test
+    void testCreateDB() {
+        services.createDB();
+        assertEquals(18, services.getAllMovies().size());
+        assertEquals(14, services.getAllUsers().size());
+        assertEquals(7, services.getAllRentals().size());
+        assertEquals(7, services.getAllMovies(true).size());
+        assertEquals("Meier", services.getUserById(1).getName());
+        assertEquals(LocalDate.of(2001, 12, 19), services.getMovieById(1).getReleaseDate());
+    }
+
+    @DisplayName("Data is loaded from a directory and new ids follow the largest id read")
+    @Test
+    void testCreateDBFromDirectory(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("movies.csv"), "ID;Title;ReleaseDate;AgeRating\n1;Matrix;1999-03-11;12\n"
+                + "5000;Heat;1995-12-15;16\n");
+        Files.writeString(dir.resolve("users.csv"), "ID;Surname;FirstName;Birthdate\n7;Duck;Donald;1934-06-09\n");
+        Files.writeString(dir.resolve("rentals.csv"), "ID;RentalDate;UserID;MovieID\n3;2020-01-31;7;5000\n");
+
+        services.createDB(dir);
+        assertEquals(2, services.getAllMovies().size());
+        assertTrue(services.getMovieById(5000).isRented());
+        assertEquals(1, services.getUserById(7).getRentals().size());
+        assertEquals(5001, services.createMovie("Up", TODAY, 0).getMovieid());
+    }
+
+    @DisplayName("A snapshot restores movies, users, rentals and the id counter")
+    @Test
+    void testSnapshotRoundTrip(@TempDir Path dir) throws IOException {
+        services.createDB();
+        Movie up = services.createMovie("Up", TODAY, 0, ChildrenPriceCategory.getInstance());
+        Path file = dir.resolve("mrs.snapshot");
+        services.writeSnapshot(file);
+
+        SimpleMRSServices restored = new SimpleMRSServices();
+        assertTrue(restored.loadSnapshot(file));
+        assertEquals(19, restored.getAllMovies().size());
+        assertEquals(14, restored.getAllUsers().size());
+        assertEquals(7, restored.getAllRentals().size());
+        assertEquals(7, restored.getAllMovies(true).size());
+        assertEquals(up, restored.getMovieById(up.getMovieid()));
+        assertEquals(ChildrenPriceCategory.getInstance(), restored.getMovieById(up.getMovieid()).getPriceCategory());
+        assertEquals(services.getUserById(1), restored.getUserByName("Meier"));
+        assertEquals(up.getMovieid() + 1, restored.createMovie("Heat", TODAY, 16).getMovieid());
+        assertFalse(restored.loadSnapshot(dir.resolve("missing")));
+    }
+
+    @DisplayName("A corrupt snapshot is not loaded")
+    @Test
+    void testSnapshotCorrupt(@TempDir Path dir) throws IOException {
+        services.createDB();
+        Path file = dir.resolve("mrs.snapshot");
+        services.writeSnapshot(file);
+        byte[] content = Files.readAllBytes(file);
+        content[content.length / 2] ^= 1;
+        Files.write(file, content);
+
+        SimpleMRSServices restored = new SimpleMRSServices();
+        assertThrows(IOException.class, () -> restored.loadSnapshot(file));
+    }
+
+    @DisplayName("Conflicting rentals in a snapshot are skipped")
+    @Test
+    void testSnapshotConflictingRentals(@TempDir Path dir) throws IOException {
+        User u = services.createUser("Meier", "Hans", BIRTHDATE);
+        User other = services.createUser("Huber", "Anna", BIRTHDATE);
+        List<Long> ids = createMovies(User.MAX_RENTABLE_MOVIES + 2);
+        List<Rental> rows = new ArrayList<>();
+        rows.add(rentalRow(100, other.getUserid(), ids.get(0)));
+        for (int i = 0; i < ids.size(); i++) {
+            rows.add(rentalRow(101 + i, u.getUserid(), ids.get(i)));
+        }
+        Path file = dir.resolve("mrs.snapshot");
+        SnapshotFile.write(file, 200, services.getAllMovies(), services.getAllUsers(), rows);
+
+        SimpleMRSServices restored = new SimpleMRSServices();
+        assertTrue(restored.loadSnapshot(file));
+        assertEquals(User.MAX_RENTABLE_MOVIES + 1, restored.getAllRentals().size());
+        assertEquals(1, restored.getUserById(other.getUserid()).getRentalCount());
+        assertEquals(User.MAX_RENTABLE_MOVIES, restored.getUserById(u.getUserid()).getRentalCount());
+        assertFalse(restored.getMovieById(ids.get(ids.size() - 1)).isRented());
+        assertTrue(restored.getMovieById(ids.get(0)).isRented());
+        assertTrue(restored.deleteRental(100));
+        assertFalse(restored.getMovieById(ids.get(0)).isRented());
+    }
+
+    /**
+     * @return a rental of detached copies of the given user and movie, as written by an inconsistent snapshot.
+     */
+    private static Rental rentalRow(long id, long userId, long movieId) {
+        User u = new User("Copy", "Of", BIRTHDATE);
+        u.setUserId(userId);
+        Movie m = new Movie("Copy", TODAY, 0);
+        m.setMovieId(movieId);
+        Rental r = new Rental(u, m, TODAY);
+        r.setId(id);
+        return r;
+    }
+
+    @DisplayName("Snapshots are written in the background and when stopped")
+    @Test
+    void testPeriodicSnapshots(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("mrs.snapshot");
+        services.createMovie("Up", TODAY, 0);
+        services.startSnapshots(file, 10, TimeUnit.MILLISECONDS);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Files.exists(file) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(Files.exists(file));
+
+        services.createMovie("Heat", TODAY, 16);
+        services.stopSnapshots();
+        SimpleMRSServices restored = new SimpleMRSServices();
+        restored.loadSnapshot(file);
+        assertEquals(2, restored.getAllMovies().size());
+    }
+
+    @DisplayName("Replaying the journal repeats all changes")
+    @Test
+    void testJournalReplay(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("mrs.journal");
+        assertEquals(0, services.openJournal(file, 0));
+        Movie up = services.createMovie("Up", TODAY, 0);
+        Movie heat = services.createMovie("Heat", TODAY, 16, NewReleasePriceCategory.getInstance());
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        Rental r = services.createRental(donald.getUserid(), up.getMovieid(), TODAY);
+        services.createRental(donald.getUserid(), heat.getMovieid(), TODAY);
+        services.deleteRental(r.getRentalId());
+        donald.setName("Drake");
+        services.updateUser(donald);
+        services.deleteMovie(up.getMovieid());
+        services.closeJournal();
+
+        SimpleMRSServices restored = new SimpleMRSServices();
+        assertEquals(8, restored.openJournal(file, 0));
+        assertEquals(1, restored.getAllMovies().size());
+        assertTrue(restored.getMovieById(heat.getMovieid()).isRented());
+        assertEquals(NewReleasePriceCategory.getInstance(),
+                restored.getMovieById(heat.getMovieid()).getPriceCategory());
+        assertEquals(1, restored.getAllRentals().size());
+        assertEquals(donald, restored.getUserByName("Drake"));
+        assertEquals(1, restored.getUserById(donald.getUserid()).getRentals().size());
+        assertTrue(restored.createMovie("Alien", TODAY, 16).getMovieid() > r.getRentalId());
+        restored.closeJournal();
+    }
+
+    @DisplayName("The journal holds the changes since the last snapshot")
+    @Test
+    void testJournalWithSnapshot(@TempDir Path dir) throws IOException {
+        Path snapshot = dir.resolve("mrs.snapshot");
+        Path journal = dir.resolve("mrs.journal");
+        services.createDB();
+        services.openJournal(journal, 10);
+        Movie up = services.createMovie("Up", TODAY, 0);
+        services.writeSnapshot(snapshot);
+        Movie heat = services.createMovie("Heat", TODAY, 16);
+        services.createRental(1, up.getMovieid(), TODAY);
+        services.closeJournal();
+
+        SimpleMRSServices restored = new SimpleMRSServices();
+        restored.loadSnapshot(snapshot);
+        assertEquals(2, restored.openJournal(journal, 10));
+        assertEquals(20, restored.getAllMovies().size());
+        assertEquals(heat, restored.getMovieById(heat.getMovieid()));
+        assertTrue(restored.getMovieById(up.getMovieid()).isRented());
+        restored.closeJournal();
+    }
+
+    @DisplayName("A failed checkpoint keeps the rotated journal")
+    @Test
+    void testJournalFailedCheckpoint(@TempDir Path dir) throws IOException {
+        Path missing = dir.resolve("missing").resolve("mrs.snapshot");
+        Path journal = dir.resolve("mrs.journal");
+        services.openJournal(journal, 0);
+        Movie up = services.createMovie("Up", TODAY, 0);
+        assertThrows(IOException.class, () -> services.writeSnapshot(missing));
+        Movie heat = services.createMovie("Heat", TODAY, 16);
+        assertThrows(IOException.class, () -> services.writeSnapshot(missing));
+        Movie alien = services.createMovie("Alien", TODAY, 16);
+        services.closeJournal();
+
+        SimpleMRSServices restored = new SimpleMRSServices();
+        assertEquals(3, restored.openJournal(journal, 0));
+        assertEquals(List.of(up, heat, alien), new ArrayList<>(restored.getAllMovies()));
+        restored.closeJournal();
+    }
+
+    @DisplayName("A torn record at the end of the journal is dropped")
+    @Test
+    void testJournalTornRecord(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("mrs.journal");
+        services.openJournal(file, 0);
+        services.createMovie("Up", TODAY, 0);
+        services.closeJournal();
+        long size = Files.size(file);
+        Files.write(file, new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        SimpleMRSServices restored = new SimpleMRSServices();
+        assertEquals(1, restored.openJournal(file, 0));
+        assertEquals(size, Files.size(file));
+        restored.createMovie("Heat", TODAY, 16);
+        restored.closeJournal();
+        assertEquals(2, new SimpleMRSServices().openJournal(file, 0));
+    }
+
+    @DisplayName("Concurrent changes are all journaled with group commit")
+    @Test
+    void testJournalConcurrent(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("mrs.journal");
+        services.openJournal(file, 0);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                start.await();
+                for (int i = 0; i < 50; i++) {
+                    services.createMovie("Movie " + i, TODAY, 0);
+                }
+                return null;
+            });
+        }
+        for (Future<Void> f : startAll(tasks, start)) {
+            f.get();
+        }
+        services.closeJournal();
+
+        SimpleMRSServices restored = new SimpleMRSServices();
+        assertEquals(THREADS * 50, restored.openJournal(file, 0));
+        assertEquals(services.getAllMovies().size(), restored.getAllMovies().size());
+    }
+
+    @DisplayName("Dates are parsed like LocalDate.parse does")
+    @Test
+    void testParseDate() {
+        assertEquals(LocalDate.of(1999, 3, 11), SimpleMRSServices.parseDate("1999-03-11"));
+        assertEquals(LocalDate.of(2024, 2, 29), SimpleMRSServices.parseDate("2024-02-29"));
+        assertEquals(LocalDate.of(12345, 1, 1), SimpleMRSServices.parseDate("+12345-01-01"));
+        assertThrows(DateTimeException.class, () -> SimpleMRSServices.parseDate("2023-02-29"));
+        assertThrows(DateTimeException.class, () -> SimpleMRSServices.parseDate("1999-3-111"));
+        assertThrows(DateTimeException.class, () -> SimpleMRSServices.parseDate("1999/03/11"));
+    }
+
+    @DisplayName("Versions change with every change of a movie or user")
+    @Test
+    void testVersions() {
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        Movie matrix = services.createMovie("Matrix", TODAY, 12);
+        Movie rambo = services.createMovie("Rambo", TODAY, 16);
+        ResourceVersion movies = services.getMoviesVersion();
+        ResourceVersion movie = services.getMovieVersion(matrix.getMovieid());
+        ResourceVersion users = services.getUsersVersion();
+
+        Rental r = services.createRental(donald.getUserid(), matrix.getMovieid(), TODAY);
+        assertNotEquals(movie, services.getMovieVersion(matrix.getMovieid()));
+        assertNotEquals(movies, services.getMoviesVersion());
+        assertEquals(users, services.getUsersVersion());
+
+        movie = services.getMovieVersion(matrix.getMovieid());
+        ResourceVersion other = services.getMovieVersion(rambo.getMovieid());
+        services.deleteRental(r.getRentalId());
+        assertNotEquals(movie, services.getMovieVersion(matrix.getMovieid()));
+        assertEquals(other, services.getMovieVersion(rambo.getMovieid()));
+
+        ResourceVersion user = services.getUserVersion(donald.getUserid());
+        donald.setFirstName("Dagobert");
+        services.updateUser(donald);
+        assertNotEquals(user, services.getUserVersion(donald.getUserid()));
+        assertNotEquals(users, services.getUsersVersion());
+
+        movie = services.getMovieVersion(rambo.getMovieid());
+        services.deleteMovie(rambo.getMovieid());
+        assertNotEquals(movie, services.getMovieVersion(rambo.getMovieid()));
+    }
+
+    @DisplayName("Keyset pages follow each other without gaps")
+    @Test
+    void testKeysetPagination() {
+        List<Long> ids = createMovies(25);
+        Page<Movie> page = services.getMovies(PageRequest.first(10));
+        List<Long> seen = new ArrayList<>();
+        while (true) {
+            page.getItems().forEach(m -> seen.add(m.getMovieid()));
+            if (page.getNextCursor() == null) {
+                break;
+            }
+            page = services.getMovies(PageRequest.after(page.getNextCursor(), 10));
+        }
+        assertEquals(ids, seen);
+    }
+
+    @DisplayName("Offset pages and rented filter")
+    @Test
+    void testOffsetPaginationRented() {
+        List<Long> ids = createMovies(12);
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        services.createRental(donald.getUserid(), ids.get(0), TODAY);
+
+        Page<Movie> page = services.getMovies(false, PageRequest.offset(5, 5));
+        assertEquals(5, page.getItems().size());
+        assertEquals(ids.get(6), page.getItems().get(0).getMovieid());
+        assertEquals(10L, page.getNextCursor());
+
+        page = services.getMovies(false, PageRequest.offset(10, 5));
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+
+        assertEquals(1, services.getMovies(true, PageRequest.first(5)).getItems().size());
+        assertEquals(1, services.getUsers(PageRequest.first(5)).getItems().size());
+        assertEquals(1, services.getRentals(PageRequest.first(5)).getItems().size());
+    }
+
+    @DisplayName("Returning an unknown rental fails without exception")
+    @Test
+    void testDeleteUnknownRental() {
+        assertFalse(services.deleteRental(4711));
+    }
+
+    @DisplayName("Rentals are looked up by user")
+    @Test
+    void testGetRentalsByUser() {
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        User daisy = services.createUser("Duck", "Daisy", BIRTHDATE);
+        List<Long> ids = createMovies(3);
+        Rental r1 = services.createRental(donald.getUserid(), ids.get(0), TODAY);
+        Rental r2 = services.createRental(daisy.getUserid(), ids.get(1), TODAY);
+        Rental r3 = services.createRental(donald.getUserid(), ids.get(2), TODAY);
+
+        assertEquals(List.of(r1, r3), services.getRentalsByUser(donald.getUserid()));
+        assertEquals(List.of(r2), services.getRentalsByUser(daisy.getUserid()));
+        services.deleteRental(r1.getRentalId());
+        assertEquals(List.of(r3), services.getRentalsByUser(donald.getUserid()));
+        assertNull(services.getRentalsByUser(4711));
+    }
+
+    @DisplayName("An updated user keeps its rentals")
+    @Test
+    void testGetRentalsByUpdatedUser() {
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        List<Long> ids = createMovies(2);
+        Rental r1 = services.createRental(donald.getUserid(), ids.get(0), TODAY);
+        Rental r2 = services.createRental(donald.getUserid(), ids.get(1), TODAY);
+
+        // as sent by a client: a new object with the same id and no rentals
+        User update = new User("Drake", "Donald", BIRTHDATE);
+        update.setId(donald.getUserid());
+        assertTrue(services.updateUser(update));
+        User stored = services.getUserById(donald.getUserid());
+        assertEquals("Drake", stored.getName());
+        assertEquals(update, services.getUserByName("Drake"));
+        assertEquals(List.of(r1, r2), services.getRentalsByUser(donald.getUserid()));
+        assertEquals(2, stored.getRentalCount());
+
+        assertTrue(services.deleteRental(r1.getRentalId()));
+        assertEquals(List.of(r2), services.getRentalsByUser(donald.getUserid()));
+        assertEquals(1, stored.getRentalCount());
+        assertSame(stored, r2.getUser());
+    }
+
+    @DisplayName("The charges of all users are summed up for a day")
+    @Test
+    void testGetCharges() {
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        User daisy = services.createUser("Duck", "Daisy", BIRTHDATE);
+        services.createUser("Mouse", "Mickey", BIRTHDATE);
+        List<Long> ids = createMovies(3);
+        services.createRental(donald.getUserid(), ids.get(0), TODAY.minusDays(3));
+        services.createRental(donald.getUserid(), ids.get(1), TODAY);
+        Rental r = services.createRental(daisy.getUserid(), ids.get(2), TODAY);
+
+        Map<Long, Double> charges = services.getCharges(TODAY.plusDays(1));
+        assertEquals(2, charges.size());
+        assertEquals(donald.getCharge(TODAY.plusDays(1)), charges.get(donald.getUserid()), 1e-6);
+        assertEquals(r.getRentalFee(TODAY.plusDays(1)), charges.get(daisy.getUserid()), 1e-6);
+    }
+
+    @DisplayName("A batch of movies is rented completely or not at all")
+    @Test
+    void testCreateRentals() {
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        User tick = services.createUser("Duck", "Tick", TODAY.minusYears(10));
+        List<Long> ids = createMovies(4);
+        Movie alien = services.createMovie("Alien", TODAY, 16);
+        services.createRental(tick.getUserid(), ids.get(3), TODAY);
+
+        assertNull(services.createRentals(donald.getUserid(), List.of(ids.get(0), ids.get(3)), TODAY));
+        assertNull(services.createRentals(donald.getUserid(), List.of(ids.get(0), ids.get(0)), TODAY));
+        assertNull(services.createRentals(donald.getUserid(), List.of(ids.get(0), 4711L), TODAY));
+        assertThrows(MovieRentalException.class, () -> services.createRentals(tick.getUserid(),
+                List.of(ids.get(0), alien.getMovieid()), TODAY));
+        assertEquals(1, tick.getRentals().size());
+        assertThrows(MovieRentalException.class, () -> services.createRentals(donald.getUserid(),
+                List.of(ids.get(0), ids.get(1), ids.get(2), alien.getMovieid()), TODAY));
+        assertTrue(donald.getRentals().isEmpty());
+        assertEquals(1, services.getAllMovies(true).size());
+
+        List<Rental> rentals = services.createRentals(donald.getUserid(), ids.subList(0, 3), TODAY);
+        assertEquals(3, rentals.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(ids.get(i), rentals.get(i).getMovie().getMovieid());
+            assertTrue(services.getAllRentals().contains(rentals.get(i)));
+        }
+        assertEquals(4, services.getAllMovies(true).size());
+        assertEquals(3, donald.getRentals().size());
+    }
+
+    @DisplayName("A batch of rentals is returned completely or not at all")
+    @Test
+    void testDeleteRentals() {
+        User donald = services.createUser("Duck", "Donald", BIRTHDATE);
+        User daisy = services.createUser("Duck", "Daisy", BIRTHDATE);
+        List<Long> ids = createMovies(3);
+        long r1 = services.createRental(donald.getUserid(), ids.get(0), TODAY).getRentalId();
+        long r2 = services.createRental(donald.getUserid(), ids.get(1), TODAY).getRentalId();
+        long r3 = services.createRental(daisy.getUserid(), ids.get(2), TODAY).getRentalId();
+
+        assertFalse(services.deleteRentals(List.of(r1, 4711L)));
+        assertEquals(3, services.getAllRentals().size());
+
+        assertTrue(services.deleteRentals(List.of(r1, r3)));
+        assertEquals(List.of(r2), services.getAllRentals().stream().map(Rental::getRentalId).toList());
+        assertEquals(1, donald.getRentals().size());
+        assertTrue(daisy.getRentals().isEmpty());
+        assertEquals(2, services.getAllMovies(false).size());
+    }
+
+    @DisplayName("Concurrent batches of rentals and returns neither deadlock nor rent a movie twice")
+    @Test
+    void testConcurrentBatches() throws Exception {
+        List<Long> movieIds = createMovies(60);
+        List<Long> userIds = createUsers(THREADS * 4);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                start.await();
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < 2000; i++) {
+                    if (rnd.nextBoolean()) {
+                        long user = userIds.get(rnd.nextInt(userIds.size()));
+                        Set<Long> batch = new HashSet<>();
+                        while (batch.size() < 2) {
+                            batch.add(movieIds.get(rnd.nextInt(movieIds.size())));
+                        }
+                        try {
+                            services.createRentals(user, new ArrayList<>(batch), TODAY);
+                        } catch (MovieRentalException e) {
+                            // limit reached
+                        }
+                    } else {
+                        List<Long> batch = services.getAllRentals().stream().limit(3).map(Rental::getRentalId)
+                                .toList();
+                        services.deleteRentals(batch);
+                    }
+                }
+                return null;
+            });
+        }
+        for (Future<Void> f : startAll(tasks, start)) {
+            f.get(1, TimeUnit.MINUTES);
+        }
+
+        Set<Long> rentedMovies = new HashSet<>();
+        int userRentals = 0;
+        for (Rental r : services.getAllRentals()) {
+            assertTrue(rentedMovies.add(r.getMovie().getMovieid()), "movie rented twice");
+            assertTrue(r.getMovie().isRented());
+        }
+        for (User u : services.getAllUsers()) {
+            assertTrue(u.getRentals().size() <= User.MAX_RENTABLE_MOVIES);
+            userRentals += u.getRentals().size();
+        }
+        assertEquals(services.getAllRentals().size(), userRentals);
+        assertEquals(rentedMovies.size(), services.getAllMovies(true).size());
+    }
+
+    @DisplayName("Concurrently created objects get unique ids")
+    @Test
+    void testConcurrentCreateUniqueIds() throws Exception {
+        int perThread = 1000;
+        List<Callable<List<Long>>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(services.createMovie("Movie " + i, TODAY, 0).getMovieid());
+                    ids.add(services.createUser("User", "No" + i, BIRTHDATE).getUserid());
+                }
+                return ids;
+            });
+        }
+        Set<Long> ids = new HashSet<>();
+        for (Future<List<Long>> f : pool.invokeAll(tasks)) {
+            ids.addAll(f.get());
+        }
+        assertEquals(2 * THREADS * perThread, ids.size());
+        assertEquals(THREADS * perThread, services.getAllMovies().size());
+        assertEquals(THREADS * perThread, services.getAllUsers().size());
+    }
+
+    @DisplayName("Concurrent renters never rent the same movie twice")
+    @Test
+    void testNoDoubleRentals() throws Exception {
+        List<Long> movieIds = createMovies(200);
+        List<Long> userIds = createUsers(THREADS * 20);
+        ConcurrentLinkedQueue<Rental> created = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                start.await();
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < 2000; i++) {
+                    long user = userIds.get(rnd.nextInt(userIds.size()));
+                    long movie = movieIds.get(rnd.nextInt(movieIds.size()));
+                    Rental r = services.createRental(user, movie, TODAY);
+                    if (r != null) {
+                        created.add(r);
+                    }
+                }
+                return null;
+            });
+        }
+        List<Future<Void>> results = startAll(tasks, start);
+        for (Future<Void> f : results) {
+            f.get();
+        }
+
+        Set<Long> rentedMovies = new HashSet<>();
+        for (Rental r : created) {
+            assertTrue(rentedMovies.add(r.getMovie().getMovieid()), "movie rented twice");
+        }
+        assertEquals(created.size(), services.getAllRentals().size());
+        for (User u : services.getAllUsers()) {
+            assertTrue(u.getRentals().size() <= User.MAX_RENTABLE_MOVIES);
+        }
+    }
+
+    @DisplayName("Renting and returning concurrently keeps movies and rentals consistent")
+    @Test
+    void testConcurrentRentAndReturn() throws Exception {
+        List<Long> movieIds = createMovies(50);
+        List<Long> userIds = createUsers(THREADS * 4);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                start.await();
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < 5000; i++) {
+                    if (rnd.nextBoolean()) {
+                        long user = userIds.get(rnd.nextInt(userIds.size()));
+                        long movie = movieIds.get(rnd.nextInt(movieIds.size()));
+                        services.createRental(user, movie, TODAY);
+                    } else {
+                        for (Rental r : services.getAllRentals()) {
+                            services.deleteRental(r.getRentalId());
+                            break;
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        for (Future<Void> f : startAll(tasks, start)) {
+            f.get();
+        }
+
+        Set<Long> rentedMovies = new HashSet<>();
+        int userRentals = 0;
+        for (Rental r : services.getAllRentals()) {
+            assertTrue(rentedMovies.add(r.getMovie().getMovieid()), "movie rented twice");
+            assertTrue(r.getMovie().isRented());
+        }
+        for (User u : services.getAllUsers()) {
+            userRentals += u.getRentals().size();
+        }
+        assertEquals(rentedMovies.size(), services.getAllMovies(true).size());
+        assertEquals(rentedMovies.size(), userRentals);
+    }
+
+    private <T> List<Future<T>> startAll(List<Callable<T>> tasks, CountDownLatch start) {
+        List<Future<T>> results = new ArrayList<>();
+        for (Callable<T> task : tasks) {
+            results.add(pool.submit(task));
+        }
+        start.countDown();
+        return results;
+    }
+
+    private List<Long> createMovies(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(services.createMovie("Movie " + i, TODAY, 0).getMovieid());
+        }
+        return ids;
+    }
+
+    private List<Long> createUsers(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(services.createUser("User", "No" + i, BIRTHDATE).getUserid());
+        }
+        return ids;
+    }
+}
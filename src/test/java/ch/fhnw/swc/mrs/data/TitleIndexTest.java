@@ -0,0 +1,97 @@
+package ch.fhnw.swc.mrs.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Tests for class TitleIndex")
+class TitleIndexTest {
+
+    private TitleIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TitleIndex();
+        index.put(1, "The Matrix");
+        index.put(2, "The Matrix Reloaded");
+        index.put(3, "Star Wars: A New Hope");
+        index.put(4, "Amélie");
+        index.put(5, "A New York Story");
+        index.put(6, "Star Trek");
+    }
+
+    @DisplayName("Whole words are found regardless of case")
+    @Test
+    void testExact() {
+        assertEquals(List.of(1L, 2L), index.search("MATRIX", 10));
+        assertEquals(List.of(6L, 3L), index.search("star", 10));
+        assertEquals(List.of(), index.search("alien", 10));
+    }
+
+    @DisplayName("The last word of a query may be the beginning of a word")
+    @Test
+    void testPrefix() {
+        assertEquals(List.of(1L, 2L), index.search("matr", 10));
+        assertEquals(List.of(2L), index.search("matrix rel", 10));
+    }
+
+    @DisplayName("Typos are tolerated depending on the length of a word")
+    @Test
+    void testTypos() {
+        assertEquals(List.of(1L, 2L), index.search("matrx", 10));
+        assertEquals(List.of(1L, 2L), index.search("mtarix", 10));
+        assertEquals(List.of(3L), index.search("star wras", 10));
+        assertEquals(List.of(), index.search("xy", 10));
+        assertEquals(1, TitleIndex.distance("ab", "ba", 2));
+        assertEquals(3, TitleIndex.distance("kitten", "sitting", 2));
+    }
+
+    @DisplayName("Quoted words must follow each other")
+    @Test
+    void testPhrase() {
+        assertEquals(List.of(5L, 3L), index.search("a new", 10));
+        assertEquals(List.of(3L), index.search("\"a new hope\"", 10));
+        assertEquals(List.of(), index.search("\"new a\"", 10));
+    }
+
+    @DisplayName("Exact matches and titles covered best by the query rank first; the limit is respected")
+    @Test
+    void testRanking() {
+        assertEquals(List.of(1L), index.search("the matrix", 1));
+        assertEquals(List.of(1L, 2L), index.search("the matrix", 2));
+        assertEquals(2L, index.search("the matrix reloaded", 10).get(0));
+        assertEquals(List.of(), index.search("matrix", 0));
+    }
+
+    @DisplayName("Accents are ignored")
+    @Test
+    void testAccents() {
+        assertEquals(List.of(4L), index.search("amelie", 10));
+        assertEquals(List.of(4L), index.search("Amélie", 10));
+    }
+
+    @DisplayName("The index follows updated and removed titles")
+    @Test
+    void testUpdate() {
+        index.put(1, "Heat");
+        assertEquals(List.of(2L), index.search("matrix", 10));
+        assertEquals(List.of(1L), index.search("heat", 10));
+        index.remove(2);
+        assertEquals(List.of(), index.search("matrix", 10));
+        assertEquals(5, index.size());
+        index.clear();
+        assertTrue(index.search("star", 10).isEmpty());
+    }
+
+    @DisplayName("Blank queries find nothing")
+    @Test
+    void testBlank() {
+        assertEquals(List.of(), index.search("", 10));
+        assertEquals(List.of(), index.search(" ,; ", 10));
+    }
+}
@@ -88,6 +88,12 @@ public class MovieTest {
         assertEquals("A", m.getTitle());
         assertEquals(anotherDay, m.getReleaseDate());
         assertFalse(m.isRented());
+        assertEquals(PriceCategory.getDefault(), m.getPriceCategory());
+
+        m = new Movie("A", anotherDay, 0, ChildrenPriceCategory.getInstance());
+        assertEquals(ChildrenPriceCategory.getInstance(), m.getPriceCategory());
+        Throwable e = assertThrows(IllegalArgumentException.class, () -> new Movie("A", anotherDay, 0, null));
+        assertEquals(Movie.EXC_MISSING_PRICE_CATEGORY, e.getMessage());
     }
 
     /**
@@ -0,0 +1,69 @@
+package ch.fhnw.swc.mrs.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Unit tests for the price categories.
+ */
+@DisplayName("Tests for class PriceCategory")
+public class PriceCategoryTest {
+
+    private static Stream<Arguments> chargeProvider() {
+        PriceCategory regular = RegularPriceCategory.getInstance();
+        PriceCategory children = ChildrenPriceCategory.getInstance();
+        PriceCategory newRelease = NewReleasePriceCategory.getInstance();
+        return Stream.of(
+                arguments(regular, 0, 2.0d), arguments(regular, 1, 2.0d), arguments(regular, 2, 2.0d),
+                arguments(regular, 3, 3.5d), arguments(regular, 10, 14.0d),
+                arguments(children, 0, 1.5d), arguments(children, 3, 1.5d), arguments(children, 4, 3.0d),
+                arguments(children, 10, 12.0d),
+                arguments(newRelease, 0, 3.0d), arguments(newRelease, 1, 3.0d), arguments(newRelease, 10, 30.0d),
+                // beyond the fee table and negative days
+                arguments(regular, PriceCategory.FEE_TABLE_DAYS, 2.0d + (PriceCategory.FEE_TABLE_DAYS - 2) * 1.5d),
+                arguments(newRelease, 1000, 3000.0d), arguments(children, -5, 1.5d));
+    }
+
+    @DisplayName("Fees depend on price category and days rented")
+    @ParameterizedTest
+    @MethodSource("chargeProvider")
+    public void testGetCharge(PriceCategory category, int days, double expected) {
+        assertEquals(expected, category.getCharge(days), 1e-6);
+    }
+
+    @DisplayName("The configured categories are loaded once and found by name")
+    @Test
+    public void testRegistry() {
+        List<PriceCategory> all = PriceCategory.getAll();
+        assertEquals(List.of(ChildrenPriceCategory.getInstance(), NewReleasePriceCategory.getInstance(),
+                RegularPriceCategory.getInstance()), all);
+        assertSame(all, PriceCategory.getAll());
+        for (PriceCategory c : all) {
+            assertSame(c, PriceCategory.getByName(c.getName()));
+        }
+        assertEquals("New Release", NewReleasePriceCategory.getInstance().toString());
+        assertSame(RegularPriceCategory.getInstance(), PriceCategory.getDefault());
+        Throwable e = assertThrows(IllegalArgumentException.class, () -> PriceCategory.getByName("Premium"));
+        assertEquals(PriceCategory.EXC_UNKNOWN_CATEGORY + "Premium", e.getMessage());
+    }
+
+    @DisplayName("Price categories are stored by name")
+    @Test
+    public void testConverter() {
+        PriceCategoryConverter converter = new PriceCategoryConverter();
+        assertEquals("Children", converter.convertToDatabaseColumn(ChildrenPriceCategory.getInstance()));
+        assertSame(ChildrenPriceCategory.getInstance(), converter.convertToEntityAttribute("Children"));
+        assertSame(PriceCategory.getDefault(), converter.convertToEntityAttribute(null));
+    }
+}
@@ -111,6 +111,21 @@ public class RentalTest {
         assertEquals(6, days);
     }
 
+    @DisplayName("Is the fee calculated from the price category and the rental duration?")
+    @Test
+    public void testGetRentalFee() {
+        Rental r = new Rental(mickey, theKid, today.minusDays(6));
+        // regular: 2.00 for two days, 1.50 for each of the other four
+        assertEquals(8.0d, r.getRentalFee(), 1e-6);
+        assertEquals(2.0d, r.getRentalFee(today.minusDays(5)), 1e-6);
+        assertEquals(2, r.getRentalDays(today.minusDays(4)));
+
+        goldrush.setPriceCategory(NewReleasePriceCategory.getInstance());
+        r = new Rental(donald, goldrush, today);
+        // the first day is charged
+        assertEquals(3.0d, r.getRentalFee(), 1e-6);
+    }
+
     @DisplayName("Do Movie getter and setter work correctly and prevent setting null Movie?")
     @Test
     public void testSetterGetterMovie() {
@@ -161,6 +161,16 @@ public class UserTest {
         assertEquals("Bla", u.getFirstName());
     }
 
+    @Test
+    public void testGetAge() {
+        LocalDate today = LocalDate.now();
+        User u = new User(NAME, FIRSTNAME, today.minusYears(12));
+        assertEquals(12, u.getAge());
+        u.setBirthdate(today.minusYears(12).plusDays(1));
+        assertEquals(11, u.getAge());
+        assertEquals(0, new User(NAME, FIRSTNAME, today).getAge());
+    }
+
     /**
      * Test method for {@link ch.fhnw.edu.rental.model.User#getCharge()}.
      */
@@ -187,6 +197,60 @@ public class UserTest {
         r = new Rental(u, mov, today);
         charge += r.getRentalFee();
         assertEquals(charge, u.getCharge(), delta);
+
+        // returning a rental reduces the charge
+        assertTrue(u.removeRental(r));
+        charge -= r.getRentalFee();
+        assertEquals(charge, u.getCharge(), delta);
+        assertFalse(u.removeRental(r));
+        assertEquals(charge, u.getCharge(), delta);
+    }
+
+    /**
+     * Test method for {@link ch.fhnw.edu.rental.model.User#getCharge(LocalDate)}.
+     */
+    @Test
+    public void testGetChargeAsOfDay() {
+        LocalDate today = LocalDate.now();
+        User u = new User(NAME, FIRSTNAME, today.minusYears(30));
+        new Rental(u, new Movie("A", today, 0, NewReleasePriceCategory.getInstance()), today.minusDays(4));
+        new Rental(u, new Movie("B", today, 0, ChildrenPriceCategory.getInstance()), today.minusDays(1));
+        // 4 days new release and 1 day children
+        assertEquals(12.0d + 1.5d, u.getCharge(), 1e-6);
+        // fees grow with the days rented
+        assertEquals(30.0d + 7.5d, u.getCharge(today.plusDays(6)), 1e-6);
+        assertEquals(12.0d + 1.5d, u.getCharge(), 1e-6);
+    }
+
+    /**
+     * Test method for {@link ch.fhnw.edu.rental.model.User#getRentalCount()}.
+     */
+    @Test
+    public void testGetRentalCount() {
+        LocalDate today = LocalDate.now();
+        User u = new User(NAME, FIRSTNAME, today);
+        assertEquals(0, u.getRentalCount());
+        Rental r = new Rental(u, new Movie("A", today, 0), today);
+        new Rental(u, new Movie("B", today, 0), today);
+        assertEquals(2, u.getRentalCount());
+        u.removeRental(r);
+        assertEquals(1, u.getRentalCount());
+
+        // replacing the rentals recomputes count and charge
+        List<Rental> list = new LinkedList<Rental>(u.getRentals());
+        list.add(r);
+        User other = new User(NAME, FIRSTNAME, today);
+        other.setRentals(list);
+        assertEquals(2, other.getRentalCount());
+        assertEquals(2 * r.getRentalFee(), other.getCharge(), 1e-6);
+        other.setRentals(null);
+        assertEquals(0, other.getRentalCount());
+        assertEquals(0.0d, other.getCharge(), 1e-6);
+
+        // a rental that fails is not counted
+        assertThrows(IllegalArgumentException.class, () -> new Rental(u, new Movie("C", today, 0),
+                today.plusDays(1)));
+        assertEquals(1, u.getRentalCount());
     }
 
     @Test
@@ -0,0 +1,49 @@
+package ch.fhnw.swc.mrs.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Unit tests for the content negotiation of class Compression.
+ */
+@DisplayName("Tests for class Compression")
+class CompressionTest {
+
+    @AfterEach
+    void tearDown() {
+        Compression.configure(Compression.DEFAULT_THRESHOLD, true);
+    }
+
+    @DisplayName("Coding with the highest quality is chosen")
+    @ParameterizedTest(name = "{0} -> {1}")
+    @CsvSource(delimiter = '|', value = {
+        "gzip                        | gzip",
+        "gzip, deflate, br           | gzip",
+        "deflate                     | deflate",
+        "GZIP;q=0.5, deflate         | deflate",
+        "deflate;q=0.5, x-gzip;q=0.8 | gzip",
+        "*                           | gzip",
+        "gzip;q=0, *                 | deflate",
+        "br                          | ",
+        "identity                    | ",
+        "gzip;q=0, deflate;q=0       | ",
+        "                            | "
+    })
+    void testNegotiate(String acceptEncoding, String expected) {
+        assertEquals(expected, Compression.negotiate(acceptEncoding));
+    }
+
+    @DisplayName("Deflate is not used when disabled")
+    @Test
+    void testNegotiateDeflateDisabled() {
+        Compression.configure(0, false);
+        assertNull(Compression.negotiate("deflate"));
+        assertEquals(Compression.GZIP, Compression.negotiate("gzip;q=0.1, deflate"));
+    }
+}